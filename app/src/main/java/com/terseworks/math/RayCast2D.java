@@ -25,7 +25,7 @@ public class RayCast2D
 	public static boolean rayInPlane(Vector2D rayFrom, Vector2D rayTo, Plane2D plane, Vector2D contactPoint)
 	{
 		float directionX = rayTo.x - rayFrom.x;
-		float directionY = rayTo.x - rayFrom.x;
+		float directionY = rayTo.y - rayFrom.y;
 		float distance = (rayFrom.x * plane.normal.x) + (rayFrom.y * plane.normal.y) + plane.offset;
 		float projection = (directionX * plane.normal.x) + (directionY * plane.normal.y);
 
@@ -53,7 +53,7 @@ public class RayCast2D
 	public static boolean rayInHalfspace(Vector2D rayFrom, Vector2D rayTo, Plane2D halfspace, Vector2D contactPoint)
 	{
 		float directionX = rayTo.x - rayFrom.x;
-		float directionY = rayTo.x - rayFrom.x;
+		float directionY = rayTo.y - rayFrom.y;
 		float distance = (rayFrom.x * halfspace.normal.x) + (rayFrom.y * halfspace.normal.y) + halfspace.offset;
 		float projection = (directionX * halfspace.normal.x) + (directionY * halfspace.normal.y);
 
@@ -0,0 +1,105 @@
+package org.librarysimplified.breakout.app;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded, preallocated, lock-free queue of play commands with exactly one producer (the
+ * game thread) and exactly one consumer (the audio thread).
+ *
+ * Commands are stored in primitive arrays, so neither offering nor polling allocates. Each
+ * side keeps a cached copy of the other side's position and only reads the shared counter
+ * when the cache suggests that the queue is full (or empty).
+ */
+
+final class AudioCommandQueue {
+
+  private final int capacity;
+  private final int mask;
+  private final int[] sounds;
+  private final float[] rates;
+  private final float[] gains;
+
+  private final AtomicLong head = new AtomicLong(0L);
+  private final AtomicLong tail = new AtomicLong(0L);
+
+  /* Producer state. */
+  private long producerTail;
+  private long producerHeadCached;
+
+  /* Consumer state. */
+  private long consumerHead;
+  private long consumerTailCached;
+
+  /**
+   * A command taken from the queue. Instances are owned by the consumer and reused.
+   */
+
+  static final class Command {
+    int sound;
+    float rate;
+    float gain;
+  }
+
+  AudioCommandQueue(int capacity) {
+    if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+      throw new IllegalArgumentException("Capacity must be a positive power of two");
+    }
+
+    this.capacity = capacity;
+    this.mask = capacity - 1;
+    this.sounds = new int[capacity];
+    this.rates = new float[capacity];
+    this.gains = new float[capacity];
+  }
+
+  /**
+   * Queue a command. Must only be called from the producer thread.
+   *
+   * @return {@code false} if the queue is full and the command was dropped
+   */
+
+  boolean offer(
+    int sound,
+    float rate,
+    float gain) {
+    final long position = this.producerTail;
+    if (position - this.producerHeadCached >= this.capacity) {
+      this.producerHeadCached = this.head.get();
+      if (position - this.producerHeadCached >= this.capacity) {
+        return false;
+      }
+    }
+
+    final int index = (int) (position & this.mask);
+    this.sounds[index] = sound;
+    this.rates[index] = rate;
+    this.gains[index] = gain;
+    this.producerTail = position + 1L;
+    this.tail.lazySet(position + 1L);
+    return true;
+  }
+
+  /**
+   * Take the oldest command. Must only be called from the consumer thread.
+   *
+   * @return {@code false} if the queue is empty
+   */
+
+  boolean poll(Command into) {
+    final long position = this.consumerHead;
+    if (position == this.consumerTailCached) {
+      this.consumerTailCached = this.tail.get();
+      if (position == this.consumerTailCached) {
+        return false;
+      }
+    }
+
+    final int index = (int) (position & this.mask);
+    into.sound = this.sounds[index];
+    into.rate = this.rates[index];
+    into.gain = this.gains[index];
+    this.consumerHead = position + 1L;
+    this.head.lazySet(position + 1L);
+    return true;
+  }
+}
@@ -0,0 +1,133 @@
+package org.librarysimplified.breakout.app;
+
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+import android.media.MediaCodec;
+import android.media.MediaExtractor;
+import android.media.MediaFormat;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+import java.util.Arrays;
+
+/**
+ * Decodes raw sound resources into mono PCM.
+ */
+
+final class AudioDecoder {
+
+  private static final long TIMEOUT_US = 10_000L;
+
+  private AudioDecoder() {
+    throw new UnsupportedOperationException();
+  }
+
+  /**
+   * Decode the first audio track of a raw resource, mixing all of its channels down to one.
+   *
+   * @throws IOException If the resource cannot be read or decoded
+   */
+
+  static AudioSample decode(
+    Context context,
+    int resource)
+    throws IOException {
+    final MediaExtractor extractor = new MediaExtractor();
+    try {
+      try (AssetFileDescriptor fd = context.getResources().openRawResourceFd(resource)) {
+        extractor.setDataSource(fd.getFileDescriptor(), fd.getStartOffset(), fd.getLength());
+      }
+
+      final int track = findAudioTrack(extractor);
+      if (track < 0) {
+        throw new IOException(String.format("Resource 0x%x contains no audio", resource));
+      }
+      extractor.selectTrack(track);
+
+      final MediaFormat format = extractor.getTrackFormat(track);
+      final MediaCodec codec =
+        MediaCodec.createDecoderByType(format.getString(MediaFormat.KEY_MIME));
+      try {
+        codec.configure(format, null, null, 0);
+        codec.start();
+        return drain(extractor, codec, format);
+      } finally {
+        codec.release();
+      }
+    } finally {
+      extractor.release();
+    }
+  }
+
+  private static int findAudioTrack(MediaExtractor extractor) {
+    for (int track = 0; track < extractor.getTrackCount(); ++track) {
+      final String mime = extractor.getTrackFormat(track).getString(MediaFormat.KEY_MIME);
+      if (mime != null && mime.startsWith("audio/")) {
+        return track;
+      }
+    }
+    return -1;
+  }
+
+  private static AudioSample drain(
+    MediaExtractor extractor,
+    MediaCodec codec,
+    MediaFormat inputFormat) {
+    int channels = inputFormat.getInteger(MediaFormat.KEY_CHANNEL_COUNT);
+    int sampleRate = inputFormat.getInteger(MediaFormat.KEY_SAMPLE_RATE);
+
+    final MediaCodec.BufferInfo info = new MediaCodec.BufferInfo();
+    short[] frames = new short[4096];
+    int frameCount = 0;
+    boolean inputDone = false;
+
+    while (true) {
+      if (!inputDone) {
+        final int inputIndex = codec.dequeueInputBuffer(TIMEOUT_US);
+        if (inputIndex >= 0) {
+          final ByteBuffer input = codec.getInputBuffer(inputIndex);
+          final int size = extractor.readSampleData(input, 0);
+          if (size < 0) {
+            codec.queueInputBuffer(inputIndex, 0, 0, 0L, MediaCodec.BUFFER_FLAG_END_OF_STREAM);
+            inputDone = true;
+          } else {
+            codec.queueInputBuffer(inputIndex, 0, size, extractor.getSampleTime(), 0);
+            extractor.advance();
+          }
+        }
+      }
+
+      final int outputIndex = codec.dequeueOutputBuffer(info, TIMEOUT_US);
+      if (outputIndex == MediaCodec.INFO_OUTPUT_FORMAT_CHANGED) {
+        final MediaFormat outputFormat = codec.getOutputFormat();
+        channels = outputFormat.getInteger(MediaFormat.KEY_CHANNEL_COUNT);
+        sampleRate = outputFormat.getInteger(MediaFormat.KEY_SAMPLE_RATE);
+      } else if (outputIndex >= 0) {
+        final ByteBuffer output = codec.getOutputBuffer(outputIndex);
+        output.position(info.offset);
+        output.limit(info.offset + info.size);
+        final ShortBuffer pcm = output.order(ByteOrder.nativeOrder()).asShortBuffer();
+
+        final int available = pcm.remaining() / channels;
+        if (frameCount + available > frames.length) {
+          frames = Arrays.copyOf(frames, Math.max(frameCount + available, frames.length * 2));
+        }
+        for (int frame = 0; frame < available; ++frame) {
+          int sum = 0;
+          for (int channel = 0; channel < channels; ++channel) {
+            sum += pcm.get();
+          }
+          frames[frameCount + frame] = (short) (sum / channels);
+        }
+        frameCount += available;
+
+        codec.releaseOutputBuffer(outputIndex, false);
+        if ((info.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0) {
+          return new AudioSample(Arrays.copyOf(frames, frameCount), sampleRate);
+        }
+      }
+    }
+  }
+}
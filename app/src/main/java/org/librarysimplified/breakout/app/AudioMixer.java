@@ -0,0 +1,186 @@
+package org.librarysimplified.breakout.app;
+
+/**
+ * A software mixer for a fixed set of decoded sounds.
+ *
+ * The mixer has a fixed number of voices; starting a sound when every voice is busy takes
+ * the voice that has been playing the longest. Each voice is resampled with linear
+ * interpolation, so a playback rate and the difference between a sound's sample rate and
+ * the output rate cost the same as playing it unmodified. The mixer depends on nothing but
+ * the JDK and does not allocate after construction: it mixes at most the number of frames
+ * given when it is created at a time. It is not thread-safe: it is owned by the audio
+ * thread, which receives commands through an {@link AudioCommandQueue}.
+ */
+
+final class AudioMixer {
+
+  private final AudioSample[] samples;
+  private final int outputRate;
+  private final AudioCommandQueue.Command command;
+
+  private final int[] voiceSound;
+  private final double[] voicePosition;
+  private final double[] voiceStep;
+  private final float[] voiceGain;
+  private final long[] voiceStarted;
+  private long started;
+
+  private final float[] accumulator;
+
+  AudioMixer(
+    AudioSample[] samples,
+    int outputRate,
+    int voices,
+    int maxFrames) {
+    if (outputRate <= 0) {
+      throw new IllegalArgumentException("Output rate must be positive");
+    }
+    if (voices <= 0) {
+      throw new IllegalArgumentException("Voice count must be positive");
+    }
+    if (maxFrames <= 0) {
+      throw new IllegalArgumentException("Frame count must be positive");
+    }
+
+    this.samples = samples.clone();
+    this.outputRate = outputRate;
+    this.command = new AudioCommandQueue.Command();
+    this.voiceSound = new int[voices];
+    this.voicePosition = new double[voices];
+    this.voiceStep = new double[voices];
+    this.voiceGain = new float[voices];
+    this.voiceStarted = new long[voices];
+    this.accumulator = new float[maxFrames];
+
+    for (int voice = 0; voice < voices; ++voice) {
+      this.voiceSound[voice] = -1;
+    }
+  }
+
+  /**
+   * Start every command waiting in {@code queue}.
+   */
+
+  void drain(AudioCommandQueue queue) {
+    final AudioCommandQueue.Command next = this.command;
+    while (queue.poll(next)) {
+      this.start(next.sound, next.rate, next.gain);
+    }
+  }
+
+  /**
+   * Start playing a sound. Unknown sounds, and non-positive rates, are ignored.
+   */
+
+  void start(
+    int sound,
+    float rate,
+    float gain) {
+    if (sound < 0 || sound >= this.samples.length || !(rate > 0.0f)) {
+      return;
+    }
+
+    int target = 0;
+    for (int voice = 0; voice < this.voiceSound.length; ++voice) {
+      if (this.voiceSound[voice] < 0) {
+        target = voice;
+        break;
+      }
+      if (this.voiceStarted[voice] < this.voiceStarted[target]) {
+        target = voice;
+      }
+    }
+
+    final AudioSample sample = this.samples[sound];
+    this.voiceSound[target] = sound;
+    this.voicePosition[target] = 0.0;
+    this.voiceStep[target] = (double) rate * sample.sampleRate / this.outputRate;
+    this.voiceGain[target] = gain;
+    this.voiceStarted[target] = this.started;
+    this.started += 1L;
+  }
+
+  /**
+   * @return The number of voices currently playing
+   */
+
+  int active() {
+    int count = 0;
+    for (final int sound : this.voiceSound) {
+      if (sound >= 0) {
+        count += 1;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Mix the next {@code count} frames of all playing voices into {@code output}, starting at
+   * {@code offset}. Voices that reach the end of their sound are stopped.
+   *
+   * @throws IllegalArgumentException If {@code count} exceeds the frame count given when
+   * the mixer was created
+   */
+
+  void mix(
+    short[] output,
+    int offset,
+    int count) {
+    if (count > this.accumulator.length) {
+      throw new IllegalArgumentException(
+        "Frame count " + count + " exceeds the maximum " + this.accumulator.length);
+    }
+
+    final float[] mixed = this.accumulator;
+    for (int index = 0; index < count; ++index) {
+      mixed[index] = 0.0f;
+    }
+
+    for (int voice = 0; voice < this.voiceSound.length; ++voice) {
+      final int sound = this.voiceSound[voice];
+      if (sound >= 0) {
+        this.mixVoice(voice, this.samples[sound].frames, mixed, count);
+      }
+    }
+
+    for (int index = 0; index < count; ++index) {
+      final float value = mixed[index];
+      final int clamped;
+      if (value >= Short.MAX_VALUE) {
+        clamped = Short.MAX_VALUE;
+      } else if (value <= Short.MIN_VALUE) {
+        clamped = Short.MIN_VALUE;
+      } else {
+        clamped = (int) value;
+      }
+      output[offset + index] = (short) clamped;
+    }
+  }
+
+  private void mixVoice(
+    int voice,
+    short[] frames,
+    float[] mixed,
+    int count) {
+    final int last = frames.length - 1;
+    final double step = this.voiceStep[voice];
+    final float gain = this.voiceGain[voice];
+    double position = this.voicePosition[voice];
+
+    for (int index = 0; index < count; ++index) {
+      final int frame = (int) position;
+      if (frame >= last) {
+        this.voiceSound[voice] = -1;
+        return;
+      }
+
+      final float fraction = (float) (position - frame);
+      final float a = frames[frame];
+      final float b = frames[frame + 1];
+      mixed[index] += (a + ((b - a) * fraction)) * gain;
+      position += step;
+    }
+
+    this.voicePosition[voice] = position;
+  }
+}
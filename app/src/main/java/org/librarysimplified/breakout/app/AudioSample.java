@@ -0,0 +1,20 @@
+package org.librarysimplified.breakout.app;
+
+/**
+ * A decoded sound: signed 16-bit mono PCM at a given sample rate.
+ */
+
+final class AudioSample {
+  final short[] frames;
+  final int sampleRate;
+
+  AudioSample(
+    short[] frames,
+    int sampleRate) {
+    if (sampleRate <= 0) {
+      throw new IllegalArgumentException("Sample rate must be positive");
+    }
+    this.frames = frames;
+    this.sampleRate = sampleRate;
+  }
+}
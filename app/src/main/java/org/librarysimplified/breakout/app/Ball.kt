@@ -1,6 +1,5 @@
 package org.librarysimplified.breakout.app
 
-import android.graphics.Bitmap
 import android.graphics.PointF
 
 class Ball(
@@ -8,8 +7,14 @@ class Ball(
   var circle: CircleF,
   var direction: PointF,
   val defaultDirection: PointF,
-  val speedDefault: Float,
+  var speedDefault: Float,
   var speed: Float,
-  val bitmap: Bitmap) {
+  var sprite: Sprite) {
+
+  /**
+   * The speed beyond which block collisions no longer accelerate the ball.
+   */
+
+  var speedMax: Float = 5.0f
 
 }
\ No newline at end of file
@@ -1,10 +1,15 @@
 package org.librarysimplified.breakout.app
 
-import android.graphics.Bitmap
+/**
+ * A block, which breaks once it has been hit `hitPoints` more times.
+ */
 
 class Block(
+  val index: Int,
   var circle: CircleF,
-  val bitmap: Bitmap,
+  var sprite: Sprite,
+  val type: Int,
+  var hitPoints: Int,
   var alive: Boolean) {
 
-}
\ No newline at end of file
+}
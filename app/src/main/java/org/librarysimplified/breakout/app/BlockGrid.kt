@@ -0,0 +1,241 @@
+package org.librarysimplified.breakout.app
+
+/**
+ * A uniform grid spatial index over a list of blocks.
+ *
+ * Each block is stored in the cell that contains its center, and cells are stored
+ * contiguously in a single array. Queries are expanded by the largest block radius so that
+ * blocks overlapping a cell boundary are still found. Blocks are removed from the index when
+ * they are killed with [kill].
+ *
+ * The grid also keeps an append-only log of killed blocks. A reader on another thread that
+ * has been handed a [killCount] value (through some mechanism that provides a happens-before
+ * edge) may safely read the log up to that count, and may use [queryAll], which only reads
+ * data that never changes after construction.
+ */
+
+class BlockGrid private constructor(
+  val blocks: List<Block>,
+  val originX: Float,
+  val originY: Float,
+  val cellSize: Float,
+  val columns: Int,
+  val rows: Int,
+  private val radiusMax: Float) {
+
+  private val cellStart = IntArray((this.columns * this.rows) + 1)
+  private val cellCount = IntArray(this.columns * this.rows)
+  private val cellBlocks = IntArray(this.blocks.size)
+  private val blockCell = IntArray(this.blocks.size)
+  private val results = IntArray(this.blocks.size)
+  private val cellBlocksAll = IntArray(this.blocks.size)
+  private val killLog = IntArray(this.blocks.size)
+
+  /**
+   * The number of entries in the kill log.
+   */
+
+  @Volatile
+  var killCount: Int = 0
+    private set
+
+  /**
+   * The number of blocks that are still alive.
+   */
+
+  var liveCount: Int = 0
+    private set
+
+  companion object {
+
+    /**
+     * Create a grid over the given blocks, using cells of size `cellSize`.
+     */
+
+    fun create(
+      blocks: List<Block>,
+      cellSize: Float
+    ): BlockGrid {
+      require(cellSize > 0.0f) { "Cell size must be positive" }
+
+      var minX = Float.MAX_VALUE
+      var minY = Float.MAX_VALUE
+      var maxX = -Float.MAX_VALUE
+      var maxY = -Float.MAX_VALUE
+      var radiusMax = 0.0f
+      for (index in blocks.indices) {
+        val block = blocks[index]
+        require(block.index == index) { "Block index ${block.index} must match position $index" }
+        val center = block.circle.center
+        minX = Math.min(minX, center.x)
+        minY = Math.min(minY, center.y)
+        maxX = Math.max(maxX, center.x)
+        maxY = Math.max(maxY, center.y)
+        radiusMax = Math.max(radiusMax, block.circle.radius)
+      }
+
+      if (blocks.isEmpty()) {
+        minX = 0.0f
+        minY = 0.0f
+        maxX = 0.0f
+        maxY = 0.0f
+      }
+
+      val originX = minX - (cellSize / 2.0f)
+      val originY = minY - (cellSize / 2.0f)
+      val columns = ((maxX - originX) / cellSize).toInt() + 1
+      val rows = ((maxY - originY) / cellSize).toInt() + 1
+      val grid = BlockGrid(blocks, originX, originY, cellSize, columns, rows, radiusMax)
+      grid.build()
+      return grid
+    }
+  }
+
+  private fun cellColumn(x: Float): Int =
+    Math.max(0, Math.min(this.columns - 1, ((x - this.originX) / this.cellSize).toInt()))
+
+  private fun cellRow(y: Float): Int =
+    Math.max(0, Math.min(this.rows - 1, ((y - this.originY) / this.cellSize).toInt()))
+
+  private fun build() {
+    for (block in this.blocks) {
+      val center = block.circle.center
+      val cell = (this.cellRow(center.y) * this.columns) + this.cellColumn(center.x)
+      this.blockCell[block.index] = cell
+      this.cellStart[cell + 1] += 1
+    }
+
+    for (cell in 0 until this.columns * this.rows) {
+      this.cellStart[cell + 1] += this.cellStart[cell]
+    }
+
+    for (block in this.blocks) {
+      val cell = this.blockCell[block.index]
+      this.cellBlocksAll[this.cellStart[cell] + this.cellCount[cell]] = block.index
+      this.cellCount[cell] += 1
+    }
+    this.cellCount.fill(0)
+
+    this.liveCount = 0
+    for (block in this.blocks) {
+      if (block.alive) {
+        val cell = this.blockCell[block.index]
+        this.cellBlocks[this.cellStart[cell] + this.cellCount[cell]] = block.index
+        this.cellCount[cell] += 1
+        this.liveCount += 1
+      } else {
+        this.killLog[this.killCount] = block.index
+        this.killCount += 1
+      }
+    }
+  }
+
+  /**
+   * @return The index of the block killed at position `index` in the kill log
+   */
+
+  fun killed(index: Int): Int =
+    this.killLog[index]
+
+  /**
+   * Kill the block with the given index and remove it from the index.
+   */
+
+  fun kill(index: Int) {
+    val block = this.blocks[index]
+    if (!block.alive) {
+      return
+    }
+    block.alive = false
+
+    val cell = this.blockCell[index]
+    val start = this.cellStart[cell]
+    val last = start + this.cellCount[cell] - 1
+    for (slot in start..last) {
+      if (this.cellBlocks[slot] == index) {
+        this.cellBlocks[slot] = this.cellBlocks[last]
+        this.cellCount[cell] -= 1
+        this.liveCount -= 1
+        this.killLog[this.killCount] = index
+        this.killCount += 1
+        return
+      }
+    }
+  }
+
+  /**
+   * Find the live blocks that may overlap the given bounds. The indices of the blocks
+   * found are available through [result] until the next query.
+   *
+   * @return The number of blocks found
+   */
+
+  fun query(
+    minX: Float,
+    minY: Float,
+    maxX: Float,
+    maxY: Float
+  ): Int {
+    if (this.liveCount == 0) {
+      return 0
+    }
+
+    val columnMin = this.cellColumn(minX - this.radiusMax)
+    val columnMax = this.cellColumn(maxX + this.radiusMax)
+    val rowMin = this.cellRow(minY - this.radiusMax)
+    val rowMax = this.cellRow(maxY + this.radiusMax)
+
+    var count = 0
+    for (row in rowMin..rowMax) {
+      for (column in columnMin..columnMax) {
+        val cell = (row * this.columns) + column
+        val start = this.cellStart[cell]
+        val end = start + this.cellCount[cell]
+        for (slot in start until end) {
+          this.results[count] = this.cellBlocks[slot]
+          count += 1
+        }
+      }
+    }
+    return count
+  }
+
+  /**
+   * Find all blocks, live or dead, that may overlap the given bounds, writing their indices
+   * to `output`. This may be called from any thread.
+   *
+   * @return The number of blocks found
+   */
+
+  fun queryAll(
+    minX: Float,
+    minY: Float,
+    maxX: Float,
+    maxY: Float,
+    output: IntArray
+  ): Int {
+    val columnMin = this.cellColumn(minX - this.radiusMax)
+    val columnMax = this.cellColumn(maxX + this.radiusMax)
+    val rowMin = this.cellRow(minY - this.radiusMax)
+    val rowMax = this.cellRow(maxY + this.radiusMax)
+
+    var count = 0
+    for (row in rowMin..rowMax) {
+      for (column in columnMin..columnMax) {
+        val cell = (row * this.columns) + column
+        for (slot in this.cellStart[cell] until this.cellStart[cell + 1]) {
+          output[count] = this.cellBlocksAll[slot]
+          count += 1
+        }
+      }
+    }
+    return count
+  }
+
+  /**
+   * @return The index of the block at position `index` in the results of the last query
+   */
+
+  fun result(index: Int): Int =
+    this.results[index]
+}
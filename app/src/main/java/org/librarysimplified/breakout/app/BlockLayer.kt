@@ -0,0 +1,161 @@
+package org.librarysimplified.breakout.app
+
+import android.graphics.Bitmap
+import android.graphics.Canvas
+import android.graphics.Rect
+import android.graphics.RectF
+
+/**
+ * A retained offscreen image of the background and the block field.
+ *
+ * The layer is built once and then kept in sync with a [BlockGrid] by replaying the grid's
+ * kill log: for each block killed since the last update, only the block's bounds are
+ * cleared and the blocks overlapping them redrawn. Drawing the layer onto a frame is then a
+ * single bitmap blit, however many blocks there are.
+ *
+ * The layer never reads the blocks' `alive` flags, so it may be owned by a thread other
+ * than the one running the game logic.
+ */
+
+class BlockLayer {
+
+  private var bitmap: Bitmap? = null
+  private var canvas: Canvas? = null
+  private var grid: BlockGrid? = null
+  private var backgroundColor = 0
+  private var killsApplied = 0
+  private var drawn = BooleanArray(0)
+  private var neighbours = IntArray(0)
+  private val spriteSource = Rect()
+  private val spriteTarget = RectF()
+
+  /**
+   * Bring the layer up to date with the first `killCount` entries of the grid's kill log.
+   */
+
+  fun update(
+    grid: BlockGrid,
+    killCount: Int,
+    width: Int,
+    height: Int,
+    backgroundColor: Int
+  ) {
+    val bitmap = this.bitmap
+    if (bitmap == null
+      || bitmap.width != width
+      || bitmap.height != height
+      || this.grid !== grid
+      || this.backgroundColor != backgroundColor
+      || killCount < this.killsApplied) {
+      this.rebuild(grid, killCount, width, height, backgroundColor)
+      return
+    }
+
+    for (entry in this.killsApplied until killCount) {
+      this.clearBlock(grid, grid.killed(entry))
+    }
+    this.killsApplied = killCount
+  }
+
+  private fun rebuild(
+    grid: BlockGrid,
+    killCount: Int,
+    width: Int,
+    height: Int,
+    backgroundColor: Int
+  ) {
+    val existing = this.bitmap
+    val bitmap =
+      if (existing != null && existing.width == width && existing.height == height) {
+        existing
+      } else {
+        this.release()
+        Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888)
+      }
+
+    val canvas = Canvas(bitmap)
+    this.bitmap = bitmap
+    this.canvas = canvas
+    this.grid = grid
+    this.backgroundColor = backgroundColor
+    this.killsApplied = killCount
+
+    val blocks = grid.blocks
+    this.drawn = BooleanArray(blocks.size) { true }
+    this.neighbours = IntArray(blocks.size)
+    for (entry in 0 until killCount) {
+      this.drawn[grid.killed(entry)] = false
+    }
+
+    canvas.drawColor(backgroundColor)
+    for (index in 0 until blocks.size) {
+      if (this.drawn[index]) {
+        this.drawBlock(canvas, blocks[index])
+      }
+    }
+  }
+
+  private fun drawBlock(
+    canvas: Canvas,
+    block: Block
+  ) {
+    val sprite = block.sprite
+    val circle = block.circle
+    this.spriteSource.set(sprite.left, sprite.top, sprite.right, sprite.bottom)
+    this.spriteTarget.set(
+      circle.center.x - circle.radius,
+      circle.center.y - circle.radius,
+      circle.center.x + circle.radius,
+      circle.center.y + circle.radius)
+    canvas.drawBitmap(sprite.bitmap, this.spriteSource, this.spriteTarget, null)
+  }
+
+  private fun clearBlock(
+    grid: BlockGrid,
+    index: Int
+  ) {
+    val canvas = this.canvas!!
+    val block = grid.blocks[index]
+    this.drawn[index] = false
+
+    val circle = block.circle
+    val left = circle.center.x - circle.radius
+    val top = circle.center.y - circle.radius
+    val right = circle.center.x + circle.radius
+    val bottom = circle.center.y + circle.radius
+
+    canvas.save()
+    try {
+      canvas.clipRect(left, top, right, bottom)
+      canvas.drawColor(this.backgroundColor)
+
+      val count = grid.queryAll(left, top, right, bottom, this.neighbours)
+      for (neighbour in 0 until count) {
+        val neighbourIndex = this.neighbours[neighbour]
+        if (this.drawn[neighbourIndex]) {
+          this.drawBlock(canvas, grid.blocks[neighbourIndex])
+        }
+      }
+    } finally {
+      canvas.restore()
+    }
+  }
+
+  fun draw(canvas: Canvas) {
+    val bitmap = this.bitmap
+    if (bitmap != null) {
+      canvas.drawBitmap(bitmap, 0.0f, 0.0f, null)
+    }
+  }
+
+  /**
+   * Free the offscreen image. The layer is rebuilt by the next [update].
+   */
+
+  fun release() {
+    this.bitmap?.recycle()
+    this.bitmap = null
+    this.canvas = null
+    this.grid = null
+  }
+}
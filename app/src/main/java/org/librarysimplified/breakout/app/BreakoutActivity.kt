@@ -9,10 +9,27 @@ class BreakoutActivity : AppCompatActivity() {
 
   override fun onCreate(savedInstanceState: Bundle?) {
     super.onCreate(savedInstanceState)
+    val settings = DebugSettings(this)
+    settings.update(this.intent)
+    Tracing.enabled = settings.tracing
 
     this.setTheme(R.style.Blank)
     this.setContentView(R.layout.main)
 
     this.breakoutView = this.findViewById(R.id.breakoutView)
   }
+
+  /*
+   * Metrics are only written while the game is visible.
+   */
+
+  override fun onStart() {
+    super.onStart()
+    (this.application as BreakoutApplication).metricsWriter.start()
+  }
+
+  override fun onStop() {
+    (this.application as BreakoutApplication).metricsWriter.stop()
+    super.onStop()
+  }
 }
\ No newline at end of file
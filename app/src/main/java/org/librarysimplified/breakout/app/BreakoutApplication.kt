@@ -2,14 +2,26 @@ package org.librarysimplified.breakout.app
 
 import android.app.Application
 import org.slf4j.LoggerFactory
+import java.io.File
 
 class BreakoutApplication : Application() {
 
   private val logger = LoggerFactory.getLogger(BreakoutApplication::class.java)
 
+  /**
+   * The writer for the game's metrics. It is started and stopped by whichever activities
+   * are visible.
+   */
+
+  lateinit var metricsWriter: MetricsWriter
+    private set
+
   override fun onCreate() {
     super.onCreate()
     this.logger.debug("starting")
+
+    this.metricsWriter =
+      MetricsWriter(Metrics.registry, File(this.filesDir, "metrics/metrics.jsonl"))
   }
 
 }
\ No newline at end of file
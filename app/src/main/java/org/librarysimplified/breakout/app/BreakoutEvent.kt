@@ -3,18 +3,18 @@ package org.librarysimplified.breakout.app
 import android.graphics.PointF
 import android.util.Size
 
-sealed class BreakoutEvent {
-
-  data class ScreenSizeChanged(
-    val screenSize: Size)
-    : BreakoutEvent()
+/**
+ * The type of game events.
+ *
+ * Events that carry data are mutable records: publishers fill in an instance that they own,
+ * and the [EventRing] copies the contents into preallocated storage. Consumers must not
+ * retain references to event instances or their fields beyond the call that receives them.
+ */
 
-  data class CursorMoved(
-    val position: PointF)
-    : BreakoutEvent()
+sealed class BreakoutEvent {
 
-  data class CursorReleased(
-    val position: PointF)
+  class ScreenSizeChanged(
+    var screenSize: Size = Size(0, 0))
     : BreakoutEvent()
 
   object GetReady
@@ -23,22 +23,24 @@ sealed class BreakoutEvent {
   object Go
     : BreakoutEvent()
 
-  data class BallBrokeBlock(
-    val block: Block,
-    val collisionPoint: PointF,
-    val collisionNormal: PointF,
-    val collisionReflect: PointF)
-    : BreakoutEvent()
+  class BallBrokeBlock
+    : BreakoutEvent() {
+    lateinit var block: Block
+    val collisionPoint = PointF()
+    val collisionNormal = PointF()
+    val collisionReflect = PointF()
+  }
 
-  data class BallBouncedPaddle(
-    val collisionPoint: PointF,
-    val collisionNormal: PointF,
-    val collisionReflect: PointF)
-    : BreakoutEvent()
+  class BallBouncedPaddle
+    : BreakoutEvent() {
+    val collisionPoint = PointF()
+    val collisionNormal = PointF()
+    val collisionReflect = PointF()
+  }
 
   object BallBouncedWall
     : BreakoutEvent()
 
   object BallFellOut
     : BreakoutEvent()
-}
\ No newline at end of file
+}
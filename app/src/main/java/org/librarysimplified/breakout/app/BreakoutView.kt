@@ -1,59 +1,172 @@
 package org.librarysimplified.breakout.app
 
 import android.content.Context
-import android.graphics.PointF
+import android.graphics.Canvas
+import android.os.Process
 import android.util.AttributeSet
 import android.util.Size
 import android.view.MotionEvent
 import android.view.SurfaceHolder
 import android.view.SurfaceView
 import org.slf4j.LoggerFactory
-import java.util.concurrent.ConcurrentLinkedQueue
+import java.io.File
+import java.io.IOException
 import java.util.concurrent.ExecutorService
 import java.util.concurrent.Executors
+import java.util.concurrent.LinkedBlockingQueue
+import java.util.concurrent.ThreadPoolExecutor
+import java.util.concurrent.TimeUnit
 import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.locks.LockSupport
 
 class BreakoutView(
   context: Context,
   attributes: AttributeSet)
   : SurfaceView(context, attributes) {
 
-  private val events: ConcurrentLinkedQueue<BreakoutEvent> = ConcurrentLinkedQueue()
-  private val sounds = Sounds(context)
+  private val settings = DebugSettings(context)
+  private val eventBatchMax = 256
+  private val events = EventRing(this.eventBatchMax)
+  private val sounds: SoundsType =
+    if (this.settings.audioMixer) MixerSounds(context) else Sounds(context)
+  private val levels = LevelPack(context, "levels.pack")
   private val fps = 60.0
-  private val deltaMs = 1000.0 / this.fps
+  private val scheduler =
+    FrameScheduler(
+      clock = SystemFrameClock,
+      stepNanos = (1_000_000_000.0 / this.fps).toLong(),
+      maxStepsPerFrame = 5)
+  private val deltaMs = this.scheduler.stepMs
+  private val statistics = FrameStatistics(deadlineNanos = this.scheduler.stepNanos)
+  private val statisticsOverlay =
+    FrameStatisticsOverlay(this.statistics, this.scheduler.stepNanos)
+
+  /**
+   * If `true`, a graph of recent frame times is drawn over the game. Initially taken from
+   * [DebugSettings.frameStatisticsOverlay].
+   */
+
+  @Volatile
+  var frameStatisticsOverlay: Boolean = this.settings.frameStatisticsOverlay
+    set(value) {
+      field = value
+      this.damageFullPending = true
+    }
+
+  /**
+   * If set to `true` before the surface is created, logic and rendering run on separate
+   * threads: the game thread publishes a [RenderSnapshot] after each frame's logic, and a
+   * render thread draws the most recent snapshot. The logic for one frame then overlaps with
+   * the (frequently blocking) canvas post of the previous frame. Initially taken from
+   * [DebugSettings.pipelined].
+   */
+
+  @Volatile
+  var pipelined: Boolean = this.settings.pipelined
+
+  /*
+   * If set, only the regions of the surface that the current state reports as changed are
+   * locked and redrawn each frame, and frames in which nothing changed are not posted at
+   * all. The states compute damage relative to the previous frame they were asked about, so
+   * this is fixed for the lifetime of the view, and they are not asked at all otherwise.
+   */
+
+  private val damageTracking = this.settings.damageTracking
+
+  /**
+   * If `true`, the game loop stops running frames while the current state reports that
+   * nothing is animating, and resumes as soon as an event arrives.
+   */
+
+  @Volatile
+  var idleWhenStatic: Boolean = true
+
+  private val damage = DamageTracker()
+  private var snapshotSequence = 0L
+
+  @Volatile
+  private var damageFullPending = true
+
+  private val snapshots =
+    TripleBuffer(RenderSnapshot(), RenderSnapshot(), RenderSnapshot())
+  private val displayList = DisplayList()
+  private val displayListBackend = CanvasDisplayListBackend()
+
+  @Volatile
+  private var renderThread: Thread? = null
 
   @Volatile
   private var frame = 0
 
+  private val input = InputLatch()
+  private val workers = this.createWorkers()
+  private val seed = System.nanoTime()
+  private val random = GameRandom(this.seed)
+
+  private val sequencer =
+    LevelSequencer(
+      context = context,
+      workers = this.workers,
+      sounds = this.sounds,
+      levels = this.levels,
+      publishEvent = this::publishEvent,
+      input = this.input,
+      random = this.random.split())
+
   @Volatile
   private var state: GameStateType =
     GameInitializingState(
       publishEvent = this::publishEvent,
       framesPerSecond = this.fps.toInt(),
       sounds = this.sounds,
-      context = context)
+      random = this.random.split(),
+      sequencer = this.sequencer)
+
+  private val logger = LoggerFactory.getLogger(BreakoutView::class.java)
 
   private fun publishEvent(event: BreakoutEvent) {
-    this.events.add(event)
+    if (!this.events.offer(event)) {
+      Metrics.eventsDropped.increment()
+      this.logger.warn("event queue full: dropped {}", event.javaClass.simpleName)
+    }
   }
 
-  private val logger = LoggerFactory.getLogger(BreakoutView::class.java)
 
   private val done: AtomicBoolean = AtomicBoolean(false)
   private var executor: ExecutorService? = null
 
-  private fun createExecutor(): ExecutorService {
-    return Executors.newFixedThreadPool(1) { runnable ->
+  private fun createExecutor(threads: Int): ExecutorService {
+    return Executors.newFixedThreadPool(threads) { runnable ->
       val thread = Thread(runnable)
       thread.name = "org.librarysimplified.breakout[${thread.id}]"
       thread
     }
   }
 
-  private fun recreateExecutor() {
+  /**
+   * Create the pool used for loading. Threads run at background priority so that they do
+   * not compete with the game and render threads, and exit when idle.
+   */
+
+  private fun createWorkers(): ExecutorService {
+    val threads = Math.max(1, Math.min(2, Runtime.getRuntime().availableProcessors() - 1))
+    val queue = LinkedBlockingQueue<Runnable>()
+    val pool = ThreadPoolExecutor(threads, threads, 5L, TimeUnit.SECONDS, queue) { runnable ->
+      val thread = Thread {
+        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND)
+        runnable.run()
+      }
+      thread.name = "org.librarysimplified.breakout.worker[${thread.id}]"
+      thread.isDaemon = true
+      thread
+    }
+    pool.allowCoreThreadTimeOut(true)
+    return pool
+  }
+
+  private fun recreateExecutor(threads: Int) {
     this.executor?.shutdown()
-    this.executor = this.createExecutor()
+    this.executor = this.createExecutor(threads)
   }
 
   init {
@@ -72,48 +185,153 @@ class BreakoutView(
         format.toString(16),
         width,
         height)
-      this@BreakoutView.events.add(BreakoutEvent.ScreenSizeChanged(Size(width, height)))
+      this@BreakoutView.damageFullPending = true
+      this@BreakoutView.publishEvent(BreakoutEvent.ScreenSizeChanged(Size(width, height)))
     }
 
     override fun surfaceDestroyed(holder: SurfaceHolder?) {
       this@BreakoutView.logger.debug("surface destroyed")
       this@BreakoutView.done.set(true)
-      this@BreakoutView.executor?.shutdown()
+      this@BreakoutView.events.wake()
+
+      /*
+       * Wait for the game and render tasks to finish, so that they no longer touch the
+       * surface, and so that the sounds have been released before the next surface loads
+       * them again.
+       */
+
+      val executor = this@BreakoutView.executor
       this@BreakoutView.executor = null
+      if (executor != null) {
+        executor.shutdown()
+        try {
+          if (!executor.awaitTermination(1L, TimeUnit.SECONDS)) {
+            this@BreakoutView.logger.warn("game tasks did not finish in time")
+          }
+        } catch (e: InterruptedException) {
+          Thread.currentThread().interrupt()
+        }
+      }
+
+      if (Tracing.enabled) {
+        this@BreakoutView.workers.execute { this@BreakoutView.exportTraceQuietly() }
+      }
     }
 
     override fun surfaceCreated(holder: SurfaceHolder?) {
       this@BreakoutView.logger.debug("surface created")
       this@BreakoutView.done.set(false)
-      this@BreakoutView.recreateExecutor()
-      this@BreakoutView.executor?.execute { this@BreakoutView.run() }
+      this@BreakoutView.damageFullPending = true
+
+      /*
+       * The sounds are released whenever the game task finishes, and so are loaded again
+       * for each new surface rather than only when a level is loaded.
+       */
+
+      this@BreakoutView.workers.execute { this@BreakoutView.sounds.load() }
+
+      val pipelined = this@BreakoutView.pipelined
+      if (pipelined) {
+        this@BreakoutView.recreateExecutor(2)
+        this@BreakoutView.executor?.execute { this@BreakoutView.runRenderer() }
+      } else {
+        this@BreakoutView.recreateExecutor(1)
+      }
+      this@BreakoutView.executor?.execute { this@BreakoutView.run(pipelined) }
     }
   }
 
-  private fun run() {
-    this.logger.debug("game task started")
+  private fun run(pipelined: Boolean) {
+    this.logger.debug("game task started (pipelined: {}, seed: {})", pipelined, this.seed)
 
+    Tracing.nameThread("game")
+
+    val statistics = this.statistics
+    this.scheduler.reset()
     while (!this.done.get()) {
-      this.frame += 1
+      val timeStart = System.nanoTime()
+      Tracing.begin(Tracing.SPAN_FRAME)
+      val steps = this.scheduler.beginFrame()
+
+      Tracing.begin(Tracing.SPAN_EVENTS)
       this.handleEvents()
-      this.logic(this.deltaMs)
-      this.render(this.deltaMs)
-      this.pause(this.deltaMs)
+      Tracing.end(Tracing.SPAN_EVENTS)
+      val timeEvents = System.nanoTime()
+
+      Tracing.begin(Tracing.SPAN_LOGIC)
+      for (step in 0 until steps) {
+        this.frame += 1
+        this.logic(this.deltaMs)
+      }
+      Tracing.end(Tracing.SPAN_LOGIC)
+      val timeLogic = System.nanoTime()
+
+      Tracing.begin(Tracing.SPAN_RENDER)
+      if (pipelined) {
+        this.publishSnapshot()
+      } else {
+        this.render(this.deltaMs)
+      }
+      Tracing.end(Tracing.SPAN_RENDER)
+      Tracing.end(Tracing.SPAN_FRAME)
+      val timeRender = System.nanoTime()
+
+      statistics.record(FrameStatistics.PHASE_EVENTS, timeEvents - timeStart)
+      statistics.record(FrameStatistics.PHASE_LOGIC, timeLogic - timeEvents)
+      statistics.record(FrameStatistics.PHASE_RENDER, timeRender - timeLogic)
+      statistics.frameEnd(timeStart, timeRender)
+      Metrics.frameTime.record(timeRender - timeStart)
+
+      this.scheduler.endFrame()
+      statistics.record(FrameStatistics.PHASE_OVERSLEEP, this.scheduler.oversleepNanos)
+
+      if (this.idleWhenStatic && !this.state.isAnimating) {
+        this.idle()
+      }
     }
 
+    if (!pipelined) {
+      this.displayListBackend.release()
+    }
     this.sounds.release()
     this.logger.debug("game task finished")
   }
 
+  /**
+   * Wait, without running frames, until an event or a touch arrives. The time spent waiting
+   * is not simulated afterwards. Touches and [done] are checked by the ring after it has
+   * registered the game thread as waiting, and both are followed by a [EventRing.wake], so
+   * neither can be missed; the timeout is only a safeguard.
+   */
+
+  private fun idle() {
+    this.logger.debug("idle in state {}", this.state.name)
+    val inputWrites = this.input.writes
+    val ready = { this.done.get() || this.input.writes != inputWrites }
+    while (this.events.poll() == null && !ready.invoke()) {
+      this.events.await(1_000_000_000L, ready)
+    }
+    this.scheduler.reset()
+    this.logger.debug("idle ended")
+  }
+
   private fun handleEvents() {
-    while (true) {
+    var handled = 0L
+    for (index in 0 until this.eventBatchMax) {
       val event = this.events.poll() ?: break
-      val newState = this.state.onEvent(this.frame, this.deltaMs, event)
-      if (newState != null) {
-        this.logger.debug("game state changed to {}", newState.name)
-        this.state = newState
+      handled += 1
+      try {
+        val newState = this.state.onEvent(this.frame, this.deltaMs, event)
+        if (newState != null) {
+          this.logger.debug("game state changed to {}", newState.name)
+          this.state = newState
+          this.damageFullPending = true
+        }
+      } finally {
+        this.events.release()
       }
     }
+    Metrics.eventsPerFrame.record(handled)
   }
 
   private fun logic(deltaMs: Double) {
@@ -121,43 +339,178 @@ class BreakoutView(
     if (newState != null) {
       this.logger.debug("game state changed to {}", newState.name)
       this.state = newState
+      this.damageFullPending = true
+    }
+  }
+
+  /**
+   * Collect the damage for the frame about to be drawn. Everything is damaged if tracking is
+   * disabled, in which case the state is not consulted, or if the surface or the state
+   * changed.
+   */
+
+  private fun collectDamage(): DamageTracker {
+    Tracing.begin(Tracing.SPAN_DAMAGE)
+    val damage = this.damage
+    damage.reset()
+    if (!this.damageTracking) {
+      damage.addFull()
+      Tracing.end(Tracing.SPAN_DAMAGE)
+      return damage
+    }
+
+    if (this.damageFullPending) {
+      this.damageFullPending = false
+      damage.addFull()
+    }
+    this.state.onDamage(this.frame, damage)
+    if (this.frameStatisticsOverlay) {
+      this.statisticsOverlay.damage(damage)
+    }
+    Tracing.end(Tracing.SPAN_DAMAGE)
+    return damage
+  }
+
+  /**
+   * Record the current state, and the frame time overlay if it is enabled, into `list`.
+   */
+
+  private fun draw(
+    deltaMs: Double,
+    list: DisplayList
+  ) {
+    Tracing.begin(Tracing.SPAN_RECORD)
+    this.state.onDraw(this.frame, deltaMs, list)
+    if (this.frameStatisticsOverlay) {
+      this.statisticsOverlay.draw(list)
+    }
+    Tracing.end(Tracing.SPAN_RECORD)
+  }
+
+  /**
+   * Write the spans recorded so far (see [Tracing]) to a new Chrome trace-event JSON file
+   * in the application's storage, and return the file. This does I/O on the calling thread.
+   */
+
+  fun exportTrace(): File {
+    val directory = File(this.context.filesDir, "traces")
+    directory.mkdirs()
+    val file = File(directory, "trace-${System.currentTimeMillis()}.json")
+    Tracing.export(file)
+    this.logger.info("wrote trace {}", file)
+    return file
+  }
+
+  /*
+   * The ring is cleared afterwards so that each trace covers one surface.
+   */
+
+  private fun exportTraceQuietly() {
+    try {
+      this.exportTrace()
+      Tracing.clear()
+    } catch (e: IOException) {
+      this.logger.error("could not write trace: ", e)
+    }
+  }
+
+  private fun lockCanvas(damage: DamageTracker): Canvas? {
+    return if (damage.full) {
+      this.holder.lockCanvas()
+    } else {
+      this.holder.lockCanvas(damage.rect)
     }
   }
 
   private fun render(deltaMs: Double) {
-    val canvas = this.holder.lockCanvas()
+    val damage = this.collectDamage()
+    if (damage.isEmpty) {
+      return
+    }
+
+    val list = this.displayList
+    list.reset()
+    this.draw(deltaMs, list)
+
+    this.post(list, damage)
+  }
+
+  /**
+   * Lock the damaged region of the surface, replay `list` onto it, and post it.
+   */
+
+  private fun post(
+    list: DisplayList,
+    damage: DamageTracker
+  ) {
+    Tracing.begin(Tracing.SPAN_POST)
+    val canvas = this.lockCanvas(damage)
     if (canvas != null) {
       try {
-        this.state.onRender(this.frame, deltaMs, canvas)
+        this.displayListBackend.render(list, canvas)
       } finally {
         this.holder.unlockCanvasAndPost(canvas)
       }
     }
+    Tracing.end(Tracing.SPAN_POST)
   }
 
-  private fun pause(deltaMs: Double) {
-    try {
-      Thread.sleep(deltaMs.toLong())
-    } catch (e: InterruptedException) {
-      Thread.currentThread().interrupt()
+  private fun publishSnapshot() {
+    val snapshot = this.snapshots.back
+    snapshot.reset(this.frame)
+    snapshot.damage.set(this.collectDamage())
+    snapshot.sequence = this.snapshotSequence
+    this.snapshotSequence += 1
+    this.draw(this.deltaMs, snapshot.displayList)
+    this.snapshots.publish()
+
+    val thread = this.renderThread
+    if (thread != null) {
+      LockSupport.unpark(thread)
     }
   }
 
-  override fun onTouchEvent(event: MotionEvent): Boolean {
-    this.logger.debug("onTouchEvent: {}", event)
+  private fun runRenderer() {
+    this.logger.debug("render task started")
+    this.renderThread = Thread.currentThread()
+    Tracing.nameThread("render")
 
-    return when (event.action) {
-      MotionEvent.ACTION_UP -> {
-        this.events.add(BreakoutEvent.CursorReleased(PointF(event.x, event.y)))
-        true
-      }
-      MotionEvent.ACTION_MOVE -> {
-        this.events.add(BreakoutEvent.CursorMoved(PointF(event.x, event.y)))
-        true
-      }
-      else -> {
-        true
+    var sequenceExpected = -1L
+    try {
+      while (!this.done.get()) {
+        val snapshot = this.snapshots.consume()
+        if (snapshot == null) {
+          LockSupport.parkNanos(this.scheduler.stepNanos)
+          continue
+        }
+
+        /*
+         * The damage in a snapshot is relative to the previous snapshot; if any snapshots
+         * were skipped, their damage is lost and everything must be redrawn.
+         */
+
+        val damage = snapshot.damage
+        if (snapshot.sequence != sequenceExpected) {
+          damage.addFull()
+        }
+        sequenceExpected = snapshot.sequence + 1
+        if (damage.isEmpty) {
+          continue
+        }
+
+        this.post(snapshot.displayList, damage)
       }
+    } finally {
+      this.displayListBackend.release()
+      this.renderThread = null
     }
+
+    this.logger.debug("render task finished")
+  }
+
+  override fun onTouchEvent(event: MotionEvent): Boolean {
+    this.input.write(event)
+    this.events.wake()
+    return true
   }
 }
\ No newline at end of file
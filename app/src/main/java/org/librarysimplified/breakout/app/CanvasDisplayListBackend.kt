@@ -0,0 +1,149 @@
+package org.librarysimplified.breakout.app
+
+import android.graphics.Bitmap
+import android.graphics.Canvas
+import android.graphics.Color
+import android.graphics.Paint
+import android.graphics.Rect
+import android.graphics.RectF
+import android.graphics.Typeface
+
+/**
+ * Replays display lists onto a [Canvas]. Instances are confined to the thread that draws
+ * the frames.
+ */
+
+class CanvasDisplayListBackend : DisplayListBackendType {
+
+  private val shapePaint = Paint()
+  private val textPaint = Paint(Paint.ANTI_ALIAS_FLAG)
+  private val blockLayer = BlockLayer()
+  private val spriteSource = Rect()
+  private val spriteTarget = RectF()
+  private var canvas: Canvas? = null
+
+  init {
+    this.textPaint.typeface = Typeface.create(Typeface.SANS_SERIF, Typeface.BOLD)
+    this.textPaint.color = Color.WHITE
+    this.textPaint.style = Paint.Style.FILL
+  }
+
+  fun render(
+    list: DisplayList,
+    canvas: Canvas
+  ) {
+    this.canvas = canvas
+    try {
+      list.replay(this)
+    } finally {
+      this.canvas = null
+    }
+  }
+
+  /**
+   * Free the offscreen images held by the backend. Must be called from the thread that
+   * draws the frames, once it has stopped drawing them.
+   */
+
+  fun release() {
+    this.blockLayer.release()
+  }
+
+  override fun onClear(color: Int) {
+    this.canvas!!.drawColor(color)
+  }
+
+  override fun onBlocks(
+    grid: BlockGrid,
+    killCount: Int,
+    width: Int,
+    height: Int,
+    backgroundColor: Int
+  ) {
+    this.blockLayer.update(
+      grid = grid,
+      killCount = killCount,
+      width = width,
+      height = height,
+      backgroundColor = backgroundColor)
+    this.blockLayer.draw(this.canvas!!)
+  }
+
+  override fun onSprite(
+    bitmap: Bitmap,
+    sourceLeft: Int,
+    sourceTop: Int,
+    sourceRight: Int,
+    sourceBottom: Int,
+    left: Float,
+    top: Float,
+    right: Float,
+    bottom: Float
+  ) {
+    this.spriteSource.set(sourceLeft, sourceTop, sourceRight, sourceBottom)
+    this.spriteTarget.set(left, top, right, bottom)
+    this.canvas!!.drawBitmap(bitmap, this.spriteSource, this.spriteTarget, null)
+  }
+
+  override fun onStyle(
+    color: Int,
+    flags: Int,
+    width: Float
+  ) {
+    val paint = this.shapePaint
+    paint.color = color
+    paint.strokeWidth = width
+    paint.style =
+      if (flags and DisplayList.STYLE_STROKE != 0) Paint.Style.STROKE else Paint.Style.FILL
+    paint.strokeCap =
+      if (flags and DisplayList.STYLE_ROUND_CAP != 0) Paint.Cap.ROUND else Paint.Cap.BUTT
+    this.textPaint.color = color
+  }
+
+  override fun onCircle(
+    x: Float,
+    y: Float,
+    radius: Float
+  ) {
+    this.canvas!!.drawCircle(x, y, radius, this.shapePaint)
+  }
+
+  override fun onRect(
+    left: Float,
+    top: Float,
+    right: Float,
+    bottom: Float
+  ) {
+    this.canvas!!.drawRect(left, top, right, bottom, this.shapePaint)
+  }
+
+  override fun onLine(
+    x0: Float,
+    y0: Float,
+    x1: Float,
+    y1: Float
+  ) {
+    this.canvas!!.drawLine(x0, y0, x1, y1, this.shapePaint)
+  }
+
+  override fun onText(
+    text: String,
+    x: Float,
+    y: Float,
+    size: Float,
+    centered: Boolean
+  ) {
+    val paint = this.textPaint
+    paint.textSize = size
+    val left = if (centered) x - (paint.measureText(text) / 2.0f) else x
+    this.canvas!!.drawText(text, left, y, paint)
+  }
+
+  override fun onPoints(
+    points: FloatArray,
+    offset: Int,
+    count: Int
+  ) {
+    this.canvas!!.drawPoints(points, offset, count * 2, this.shapePaint)
+  }
+}
@@ -0,0 +1,65 @@
+package org.librarysimplified.breakout.app
+
+import android.graphics.RectF
+
+/**
+ * The bounds that a single moving element drew in the previous frame.
+ *
+ * An element reports its current bounds (and a `key` identifying its content) each frame; if
+ * either changed, both the old and the new bounds are added to the damage.
+ */
+
+class DamageRegion {
+
+  private val previous = RectF()
+  private var previousKey = 0
+  private var present = false
+
+  /**
+   * @return `true` if the element was present in the previous frame with the given key
+   */
+
+  fun hasKey(key: Int): Boolean =
+    this.present && this.previousKey == key
+
+  fun report(
+    damage: DamageTracker,
+    left: Float,
+    top: Float,
+    right: Float,
+    bottom: Float,
+    key: Int
+  ) {
+    val previous = this.previous
+    val unchanged =
+      this.present
+        && this.previousKey == key
+        && previous.left == left
+        && previous.top == top
+        && previous.right == right
+        && previous.bottom == bottom
+
+    if (!unchanged) {
+      if (this.present) {
+        damage.add(previous.left, previous.top, previous.right, previous.bottom)
+      }
+      damage.add(left, top, right, bottom)
+    }
+
+    previous.set(left, top, right, bottom)
+    this.previousKey = key
+    this.present = true
+  }
+
+  /**
+   * The element is no longer drawn.
+   */
+
+  fun clear(damage: DamageTracker) {
+    if (this.present) {
+      val previous = this.previous
+      damage.add(previous.left, previous.top, previous.right, previous.bottom)
+      this.present = false
+    }
+  }
+}
@@ -0,0 +1,57 @@
+package org.librarysimplified.breakout.app
+
+import android.graphics.Rect
+
+/**
+ * The region of the surface that has changed since the previous frame.
+ *
+ * Entities add the bounds that they drew in the previous frame and the bounds that they
+ * will draw in the current frame; the union of everything added is the only region that
+ * needs to be redrawn.
+ */
+
+class DamageTracker {
+
+  val rect = Rect()
+
+  var full: Boolean = false
+    private set
+
+  val isEmpty: Boolean
+    get() = !this.full && this.rect.isEmpty
+
+  fun reset() {
+    this.full = false
+    this.rect.setEmpty()
+  }
+
+  /**
+   * Mark the entire surface as damaged.
+   */
+
+  fun addFull() {
+    this.full = true
+  }
+
+  /**
+   * Add the given bounds, rounded outwards by a pixel to cover antialiased edges.
+   */
+
+  fun add(
+    left: Float,
+    top: Float,
+    right: Float,
+    bottom: Float
+  ) {
+    this.rect.union(
+      Math.floor(left.toDouble()).toInt() - 1,
+      Math.floor(top.toDouble()).toInt() - 1,
+      Math.ceil(right.toDouble()).toInt() + 1,
+      Math.ceil(bottom.toDouble()).toInt() + 1)
+  }
+
+  fun set(other: DamageTracker) {
+    this.full = other.full
+    this.rect.set(other.rect)
+  }
+}
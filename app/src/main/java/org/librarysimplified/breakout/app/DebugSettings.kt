@@ -0,0 +1,103 @@
+package org.librarysimplified.breakout.app
+
+import android.content.Context
+import android.content.Intent
+
+/**
+ * Settings for trying out alternative implementations, kept in shared preferences.
+ *
+ * Settings can be changed from the command line by passing them as extras when starting
+ * the activity, and persist until changed again:
+ *
+ * `adb shell am start -n org.librarysimplified.breakout.app/.BreakoutActivity --ez audioMixer true`
+ */
+
+class DebugSettings(context: Context) {
+
+  private companion object {
+    const val PREFERENCES = "debug"
+    const val AUDIO_MIXER = "audioMixer"
+    const val PIPELINED = "pipelined"
+    const val DAMAGE_TRACKING = "damageTracking"
+    const val FRAME_STATISTICS_OVERLAY = "frameStatisticsOverlay"
+    const val TRACING = "tracing"
+
+    val BOOLEANS =
+      listOf(AUDIO_MIXER, PIPELINED, DAMAGE_TRACKING, FRAME_STATISTICS_OVERLAY, TRACING)
+  }
+
+  private val preferences =
+    context.getSharedPreferences(PREFERENCES, Context.MODE_PRIVATE)
+
+  /**
+   * If `true`, sounds are mixed in software onto a low-latency audio track rather than
+   * played through a `SoundPool`. Takes effect when the game view is next created.
+   */
+
+  var audioMixer: Boolean
+    get() = this.preferences.getBoolean(AUDIO_MIXER, false)
+    set(value) {
+      this.preferences.edit().putBoolean(AUDIO_MIXER, value).apply()
+    }
+
+  /**
+   * If `true`, logic and rendering run on separate threads. Takes effect when the game
+   * surface is next created.
+   */
+
+  var pipelined: Boolean
+    get() = this.preferences.getBoolean(PIPELINED, false)
+    set(value) {
+      this.preferences.edit().putBoolean(PIPELINED, value).apply()
+    }
+
+  /**
+   * If `true`, only the regions of the surface that changed are redrawn. Takes effect when
+   * the game view is next created.
+   */
+
+  var damageTracking: Boolean
+    get() = this.preferences.getBoolean(DAMAGE_TRACKING, false)
+    set(value) {
+      this.preferences.edit().putBoolean(DAMAGE_TRACKING, value).apply()
+    }
+
+  /**
+   * If `true`, a graph of recent frame times is drawn over the game. Takes effect when the
+   * game view is next created.
+   */
+
+  var frameStatisticsOverlay: Boolean
+    get() = this.preferences.getBoolean(FRAME_STATISTICS_OVERLAY, false)
+    set(value) {
+      this.preferences.edit().putBoolean(FRAME_STATISTICS_OVERLAY, value).apply()
+    }
+
+  /**
+   * If `true`, spans are recorded by [Tracing], and written to a trace file in the
+   * application's storage each time the game surface is destroyed.
+   */
+
+  var tracing: Boolean
+    get() = this.preferences.getBoolean(TRACING, false)
+    set(value) {
+      this.preferences.edit().putBoolean(TRACING, value).apply()
+    }
+
+  /**
+   * Apply any settings passed as extras in `intent`.
+   */
+
+  fun update(intent: Intent?) {
+    if (intent == null) {
+      return
+    }
+    val editor = this.preferences.edit()
+    for (name in BOOLEANS) {
+      if (intent.hasExtra(name)) {
+        editor.putBoolean(name, intent.getBooleanExtra(name, false))
+      }
+    }
+    editor.apply()
+  }
+}
@@ -0,0 +1,379 @@
+package org.librarysimplified.breakout.app
+
+import android.graphics.Bitmap
+import androidx.annotation.ColorInt
+import java.util.Arrays
+
+/**
+ * A reusable buffer of draw commands.
+ *
+ * Commands are stored in primitive arrays, and paint styles are interned by value, so once
+ * the buffers have grown to the size of a typical frame, recording a frame does not
+ * allocate. Commands are assigned to the current layer; layers are replayed in order, but
+ * commands within a layer are assumed not to overlap, and are replayed grouped by bitmap
+ * and style so that a backend changes state as rarely as possible.
+ */
+
+class DisplayList {
+
+  companion object {
+    const val STYLE_FILL = 0
+    const val STYLE_STROKE = 1
+    const val STYLE_ROUND_CAP = 2
+
+    private const val OP_CLEAR = 0
+    private const val OP_BLOCKS = 1
+    private const val OP_SPRITE = 2
+    private const val OP_CIRCLE = 3
+    private const val OP_RECT = 4
+    private const val OP_LINE = 5
+    private const val OP_TEXT = 6
+    private const val OP_POINTS = 7
+
+    private const val FIELD_OP = 0
+    private const val FIELD_LAYER = 1
+    private const val FIELD_STATE = 2
+    private const val FIELD_FLOATS = 3
+    private const val FIELD_OBJECT = 4
+    private const val FIELD_ARGUMENT = 5
+    private const val FIELDS = 6
+
+    private const val INDEX_BITS = 20
+    private const val INDEX_MASK = (1 shl INDEX_BITS) - 1
+    private const val STATE_SPRITE = 1 shl (INDEX_BITS - 1)
+  }
+
+  private var commands = IntArray(FIELDS * 64)
+  private var floats = FloatArray(256)
+  private var floatCount = 0
+  private var objects = arrayOfNulls<Any>(16)
+  private var objectCount = 0
+  private var order = LongArray(64)
+  private var layer = 0
+
+  private var styleColor = IntArray(16)
+  private var styleFlags = IntArray(16)
+  private var styleWidth = FloatArray(16)
+  private var styleCount = 0
+
+  var commandCount = 0
+    private set
+
+  fun reset() {
+    for (index in 0 until this.objectCount) {
+      this.objects[index] = null
+    }
+    this.objectCount = 0
+    this.commandCount = 0
+    this.floatCount = 0
+    this.styleCount = 0
+    this.layer = 0
+  }
+
+  /**
+   * Start a new layer. Everything recorded after this call is drawn over everything
+   * recorded before it.
+   */
+
+  fun nextLayer() {
+    this.layer += 1
+  }
+
+  /**
+   * @return The index of a style with the given color, flags, and stroke width
+   */
+
+  fun style(
+    @ColorInt color: Int,
+    flags: Int,
+    width: Float
+  ): Int {
+    for (index in 0 until this.styleCount) {
+      if (this.styleColor[index] == color
+        && this.styleFlags[index] == flags
+        && this.styleWidth[index] == width) {
+        return index
+      }
+    }
+
+    if (this.styleCount == this.styleColor.size) {
+      val size = this.styleCount * 2
+      this.styleColor = this.styleColor.copyOf(size)
+      this.styleFlags = this.styleFlags.copyOf(size)
+      this.styleWidth = this.styleWidth.copyOf(size)
+    }
+
+    val index = this.styleCount
+    this.styleColor[index] = color
+    this.styleFlags[index] = flags
+    this.styleWidth[index] = width
+    this.styleCount += 1
+    return index
+  }
+
+  fun clear(@ColorInt color: Int) {
+    this.command(OP_CLEAR, this.style(color, STYLE_FILL, 0.0f), 0, -1, 0)
+  }
+
+  /**
+   * Draw the background and the blocks of `grid` that are not among the first `killCount`
+   * entries of its kill log.
+   */
+
+  fun blocks(
+    grid: BlockGrid,
+    killCount: Int,
+    width: Int,
+    height: Int,
+    @ColorInt backgroundColor: Int
+  ) {
+    val floats = this.floats(2)
+    this.floats[floats] = width.toFloat()
+    this.floats[floats + 1] = height.toFloat()
+    val style = this.style(backgroundColor, STYLE_FILL, 0.0f)
+    this.command(OP_BLOCKS, style, floats, this.intern(grid), killCount)
+  }
+
+  /**
+   * Draw `sprite`, unscaled, with its top left corner at `x, y`.
+   */
+
+  fun sprite(
+    sprite: Sprite,
+    x: Float,
+    y: Float
+  ) {
+    this.sprite(sprite, x, y, sprite.width.toFloat(), sprite.height.toFloat())
+  }
+
+  /**
+   * Draw `sprite` scaled to `width × height`, with its top left corner at `x, y`.
+   */
+
+  fun sprite(
+    sprite: Sprite,
+    x: Float,
+    y: Float,
+    width: Float,
+    height: Float
+  ) {
+    val floats = this.floats(8)
+    this.floats[floats] = sprite.left.toFloat()
+    this.floats[floats + 1] = sprite.top.toFloat()
+    this.floats[floats + 2] = sprite.right.toFloat()
+    this.floats[floats + 3] = sprite.bottom.toFloat()
+    this.floats[floats + 4] = x
+    this.floats[floats + 5] = y
+    this.floats[floats + 6] = x + width
+    this.floats[floats + 7] = y + height
+    val obj = this.intern(sprite.bitmap)
+    this.command(OP_SPRITE, STATE_SPRITE or obj, floats, obj, 0)
+  }
+
+  fun circle(
+    x: Float,
+    y: Float,
+    radius: Float,
+    style: Int
+  ) {
+    val floats = this.floats(3)
+    this.floats[floats] = x
+    this.floats[floats + 1] = y
+    this.floats[floats + 2] = radius
+    this.command(OP_CIRCLE, style, floats, -1, 0)
+  }
+
+  fun rect(
+    left: Float,
+    top: Float,
+    right: Float,
+    bottom: Float,
+    style: Int
+  ) {
+    val floats = this.floats(4)
+    this.floats[floats] = left
+    this.floats[floats + 1] = top
+    this.floats[floats + 2] = right
+    this.floats[floats + 3] = bottom
+    this.command(OP_RECT, style, floats, -1, 0)
+  }
+
+  fun line(
+    x0: Float,
+    y0: Float,
+    x1: Float,
+    y1: Float,
+    style: Int
+  ) {
+    val floats = this.floats(4)
+    this.floats[floats] = x0
+    this.floats[floats + 1] = y0
+    this.floats[floats + 2] = x1
+    this.floats[floats + 3] = y1
+    this.command(OP_LINE, style, floats, -1, 0)
+  }
+
+  /**
+   * Draw a line of text. If `centered` is true, the text is horizontally centered on `x`.
+   */
+
+  fun text(
+    text: String,
+    x: Float,
+    y: Float,
+    size: Float,
+    centered: Boolean,
+    style: Int
+  ) {
+    val floats = this.floats(3)
+    this.floats[floats] = x
+    this.floats[floats + 1] = y
+    this.floats[floats + 2] = size
+    this.command(OP_TEXT, style, floats, this.intern(text), if (centered) 1 else 0)
+  }
+
+  /**
+   * Draw `count` points, given as `x, y` pairs in `points` starting at `offset`. The points
+   * are copied.
+   */
+
+  fun points(
+    points: FloatArray,
+    offset: Int,
+    count: Int,
+    style: Int
+  ) {
+    val floats = this.floats(count * 2)
+    System.arraycopy(points, offset * 2, this.floats, floats, count * 2)
+    this.command(OP_POINTS, style, floats, -1, count)
+  }
+
+  private fun floats(count: Int): Int {
+    val required = this.floatCount + count
+    if (required > this.floats.size) {
+      this.floats = this.floats.copyOf(Math.max(required, this.floats.size * 2))
+    }
+    val offset = this.floatCount
+    this.floatCount = required
+    return offset
+  }
+
+  private fun intern(value: Any): Int {
+    for (index in 0 until this.objectCount) {
+      if (this.objects[index] === value) {
+        return index
+      }
+    }
+
+    if (this.objectCount == this.objects.size) {
+      this.objects = this.objects.copyOf(this.objectCount * 2)
+    }
+    val index = this.objectCount
+    this.objects[index] = value
+    this.objectCount += 1
+    return index
+  }
+
+  private fun command(
+    op: Int,
+    state: Int,
+    floats: Int,
+    obj: Int,
+    argument: Int
+  ) {
+    check(this.commandCount < INDEX_MASK) { "Too many commands in display list" }
+
+    val base = this.commandCount * FIELDS
+    if (base + FIELDS > this.commands.size) {
+      this.commands = this.commands.copyOf(this.commands.size * 2)
+    }
+
+    val commands = this.commands
+    commands[base + FIELD_OP] = op
+    commands[base + FIELD_LAYER] = this.layer
+    commands[base + FIELD_STATE] = state
+    commands[base + FIELD_FLOATS] = floats
+    commands[base + FIELD_OBJECT] = obj
+    commands[base + FIELD_ARGUMENT] = argument
+    this.commandCount += 1
+  }
+
+  /**
+   * Replay all commands onto `backend`, layer by layer, with the commands in each layer
+   * grouped by bitmap and style. [DisplayListBackendType.onStyle] is only called when the
+   * style actually changes.
+   */
+
+  fun replay(backend: DisplayListBackendType) {
+    val count = this.commandCount
+    if (this.order.size < count) {
+      this.order = LongArray(Math.max(count, this.order.size * 2))
+    }
+
+    val commands = this.commands
+    val order = this.order
+    for (index in 0 until count) {
+      val base = index * FIELDS
+      order[index] =
+        (commands[base + FIELD_LAYER].toLong() shl (INDEX_BITS * 2)) or
+          (commands[base + FIELD_STATE].toLong() shl INDEX_BITS) or
+          index.toLong()
+    }
+    Arrays.sort(order, 0, count)
+
+    val floats = this.floats
+    var styleCurrent = -1
+    for (position in 0 until count) {
+      val base = (order[position] and INDEX_MASK.toLong()).toInt() * FIELDS
+      val op = commands[base + FIELD_OP]
+      val state = commands[base + FIELD_STATE]
+      val f = commands[base + FIELD_FLOATS]
+      val obj = commands[base + FIELD_OBJECT]
+      val argument = commands[base + FIELD_ARGUMENT]
+
+      when (op) {
+        OP_CLEAR ->
+          backend.onClear(this.styleColor[state])
+        OP_BLOCKS ->
+          backend.onBlocks(
+            this.objects[obj] as BlockGrid,
+            argument,
+            floats[f].toInt(),
+            floats[f + 1].toInt(),
+            this.styleColor[state])
+        OP_SPRITE ->
+          backend.onSprite(
+            this.objects[obj] as Bitmap,
+            floats[f].toInt(),
+            floats[f + 1].toInt(),
+            floats[f + 2].toInt(),
+            floats[f + 3].toInt(),
+            floats[f + 4],
+            floats[f + 5],
+            floats[f + 6],
+            floats[f + 7])
+
+        else -> {
+          if (state != styleCurrent) {
+            backend.onStyle(this.styleColor[state], this.styleFlags[state], this.styleWidth[state])
+            styleCurrent = state
+          }
+
+          when (op) {
+            OP_CIRCLE ->
+              backend.onCircle(floats[f], floats[f + 1], floats[f + 2])
+            OP_RECT ->
+              backend.onRect(floats[f], floats[f + 1], floats[f + 2], floats[f + 3])
+            OP_LINE ->
+              backend.onLine(floats[f], floats[f + 1], floats[f + 2], floats[f + 3])
+            OP_TEXT ->
+              backend.onText(
+                this.objects[obj] as String, floats[f], floats[f + 1], floats[f + 2], argument == 1)
+            OP_POINTS ->
+              backend.onPoints(floats, f, argument)
+          }
+        }
+      }
+    }
+  }
+}
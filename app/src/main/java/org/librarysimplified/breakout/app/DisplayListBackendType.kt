@@ -0,0 +1,87 @@
+package org.librarysimplified.breakout.app
+
+import android.graphics.Bitmap
+import androidx.annotation.ColorInt
+
+/**
+ * A target onto which a [DisplayList] is replayed.
+ *
+ * Shapes, text, and points are drawn with the style most recently passed to [onStyle].
+ */
+
+interface DisplayListBackendType {
+
+  fun onClear(@ColorInt color: Int)
+
+  fun onBlocks(
+    grid: BlockGrid,
+    killCount: Int,
+    width: Int,
+    height: Int,
+    @ColorInt backgroundColor: Int
+  )
+
+  /**
+   * Draw the given region of `bitmap`, scaled to fill the given target rectangle.
+   */
+
+  fun onSprite(
+    bitmap: Bitmap,
+    sourceLeft: Int,
+    sourceTop: Int,
+    sourceRight: Int,
+    sourceBottom: Int,
+    left: Float,
+    top: Float,
+    right: Float,
+    bottom: Float
+  )
+
+  /**
+   * @param flags A combination of [DisplayList.STYLE_STROKE] and [DisplayList.STYLE_ROUND_CAP]
+   */
+
+  fun onStyle(
+    @ColorInt color: Int,
+    flags: Int,
+    width: Float
+  )
+
+  fun onCircle(
+    x: Float,
+    y: Float,
+    radius: Float
+  )
+
+  fun onRect(
+    left: Float,
+    top: Float,
+    right: Float,
+    bottom: Float
+  )
+
+  fun onLine(
+    x0: Float,
+    y0: Float,
+    x1: Float,
+    y1: Float
+  )
+
+  fun onText(
+    text: String,
+    x: Float,
+    y: Float,
+    size: Float,
+    centered: Boolean
+  )
+
+  /**
+   * Draw `count` points, given as `x, y` pairs in `points` starting at `offset`.
+   */
+
+  fun onPoints(
+    points: FloatArray,
+    offset: Int,
+    count: Int
+  )
+}
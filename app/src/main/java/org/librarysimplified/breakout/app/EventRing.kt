@@ -0,0 +1,167 @@
+package org.librarysimplified.breakout.app
+
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.atomic.AtomicLongArray
+import java.util.concurrent.locks.LockSupport
+
+/**
+ * A bounded, preallocated, lock-free event queue with any number of producers and a single
+ * consumer.
+ *
+ * Publishing an event copies it into storage owned by the ring, so neither publishing nor
+ * consuming allocates. The consumer calls [poll] to look at the oldest event, and [release]
+ * once it has finished with it; the event instance returned by [poll] is reused afterwards.
+ * A consumer with nothing else to do may block in [await] until an event is published.
+ */
+
+class EventRing(capacity: Int) {
+
+  private val capacity: Int
+  private val mask: Long
+  private val slots: Array<Slot>
+  private val sequences: AtomicLongArray
+  private val tail = AtomicLong(0L)
+  private var head = 0L
+
+  @Volatile
+  private var waiter: Thread? = null
+
+  init {
+    require(capacity > 0) { "Capacity must be positive" }
+    require(Integer.bitCount(capacity) == 1) { "Capacity must be a power of two" }
+
+    this.capacity = capacity
+    this.mask = (capacity - 1).toLong()
+    this.slots = Array(capacity) { Slot() }
+    this.sequences = AtomicLongArray(capacity)
+    for (index in 0 until capacity) {
+      this.sequences.set(index, index.toLong())
+    }
+  }
+
+  private class Slot {
+    var event: BreakoutEvent? = null
+    val screenSizeChanged = BreakoutEvent.ScreenSizeChanged()
+    val ballBrokeBlock = BreakoutEvent.BallBrokeBlock()
+    val ballBouncedPaddle = BreakoutEvent.BallBouncedPaddle()
+
+    fun copy(source: BreakoutEvent) {
+      this.event = when (source) {
+        is BreakoutEvent.ScreenSizeChanged -> {
+          this.screenSizeChanged.screenSize = source.screenSize
+          this.screenSizeChanged
+        }
+        is BreakoutEvent.BallBrokeBlock -> {
+          this.ballBrokeBlock.block = source.block
+          this.ballBrokeBlock.collisionPoint.set(source.collisionPoint)
+          this.ballBrokeBlock.collisionNormal.set(source.collisionNormal)
+          this.ballBrokeBlock.collisionReflect.set(source.collisionReflect)
+          this.ballBrokeBlock
+        }
+        is BreakoutEvent.BallBouncedPaddle -> {
+          this.ballBouncedPaddle.collisionPoint.set(source.collisionPoint)
+          this.ballBouncedPaddle.collisionNormal.set(source.collisionNormal)
+          this.ballBouncedPaddle.collisionReflect.set(source.collisionReflect)
+          this.ballBouncedPaddle
+        }
+        BreakoutEvent.GetReady,
+        BreakoutEvent.Go,
+        BreakoutEvent.BallBouncedWall,
+        BreakoutEvent.BallFellOut ->
+          source
+      }
+    }
+  }
+
+  /**
+   * Publish an event. May be called from any thread.
+   *
+   * @return `false` if the ring is full and the event was dropped
+   */
+
+  fun offer(event: BreakoutEvent): Boolean {
+    var position = this.tail.get()
+    while (true) {
+      val index = (position and this.mask).toInt()
+      val difference = this.sequences.get(index) - position
+      if (difference == 0L) {
+        if (this.tail.compareAndSet(position, position + 1)) {
+          this.slots[index].copy(event)
+
+          /*
+           * A full volatile write, rather than a lazy one, so that a consumer that has just
+           * registered itself in [await] either sees this event or is seen (and woken) here.
+           */
+
+          this.sequences.set(index, position + 1)
+          this.wake()
+          return true
+        }
+        position = this.tail.get()
+      } else if (difference < 0L) {
+        return false
+      } else {
+        position = this.tail.get()
+      }
+    }
+  }
+
+  /**
+   * Wake the consumer if it is blocked in [await]. May be called from any thread.
+   */
+
+  fun wake() {
+    val thread = this.waiter
+    if (thread != null) {
+      LockSupport.unpark(thread)
+    }
+  }
+
+  /**
+   * Block until an event is available, [wake] is called, `ready` returns `true`, or
+   * `timeoutNanos` elapses. May return early for no reason. Must only be called from the
+   * consumer thread.
+   *
+   * `ready` is evaluated after the consumer has registered itself as waiting, so a thread
+   * that makes it true and then calls [wake] either is seen by `ready` or wakes the consumer.
+   */
+
+  fun await(
+    timeoutNanos: Long,
+    ready: () -> Boolean
+  ) {
+    this.waiter = Thread.currentThread()
+    try {
+      if (this.poll() == null && !ready.invoke()) {
+        LockSupport.parkNanos(this, timeoutNanos)
+      }
+    } finally {
+      this.waiter = null
+    }
+  }
+
+  /**
+   * Look at the oldest published event. Must only be called from the consumer thread.
+   *
+   * @return The oldest event, or `null` if the ring is empty
+   */
+
+  fun poll(): BreakoutEvent? {
+    val index = (this.head and this.mask).toInt()
+    if (this.sequences.get(index) != this.head + 1) {
+      return null
+    }
+    return this.slots[index].event
+  }
+
+  /**
+   * Release the event most recently returned by [poll], making its storage available to
+   * producers again. Must only be called from the consumer thread.
+   */
+
+  fun release() {
+    val index = (this.head and this.mask).toInt()
+    this.sequences.lazySet(index, this.head + this.capacity)
+    this.head += 1
+  }
+}
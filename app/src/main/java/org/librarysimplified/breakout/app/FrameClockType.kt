@@ -0,0 +1,20 @@
+package org.librarysimplified.breakout.app
+
+/**
+ * A monotonic clock used to pace the game loop.
+ */
+
+interface FrameClockType {
+
+  /**
+   * @return The current time in nanoseconds, relative to an arbitrary fixed origin
+   */
+
+  fun nanoTime(): Long
+
+  /**
+   * Sleep for (approximately) the given number of nanoseconds.
+   */
+
+  fun sleepNanos(nanos: Long)
+}
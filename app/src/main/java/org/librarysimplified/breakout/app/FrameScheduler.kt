@@ -0,0 +1,101 @@
+package org.librarysimplified.breakout.app
+
+/**
+ * A fixed timestep frame scheduler.
+ *
+ * Each frame, [beginFrame] returns the number of fixed simulation steps that should be run
+ * to catch up with the clock, and [endFrame] sleeps for whatever is left of the frame. Frame
+ * deadlines are advanced by a fixed period rather than measured from the end of the previous
+ * sleep, so the loop does not drift when frames take a variable amount of time.
+ */
+
+class FrameScheduler(
+  private val clock: FrameClockType,
+  val stepNanos: Long,
+  val maxStepsPerFrame: Int) {
+
+  init {
+    require(this.stepNanos > 0L) { "Step time must be positive" }
+    require(this.maxStepsPerFrame > 0) { "Maximum steps per frame must be positive" }
+  }
+
+  private var started = false
+  private var timeLast = 0L
+  private var accumulator = 0L
+  private var deadline = 0L
+
+  val stepMs: Double =
+    this.stepNanos / 1_000_000.0
+
+  /**
+   * The number of simulation steps that have been discarded because the loop could not
+   * keep up with the clock.
+   */
+
+  var stepsDropped: Long = 0L
+    private set
+
+  /**
+   * The time by which the most recent sleep in [endFrame] overran its deadline, or `0` if
+   * the frame did not sleep.
+   */
+
+  var oversleepNanos: Long = 0L
+    private set
+
+  /**
+   * Start a new frame.
+   *
+   * @return The number of simulation steps to run in this frame
+   */
+
+  fun beginFrame(): Int {
+    val now = this.clock.nanoTime()
+    if (!this.started) {
+      this.started = true
+      this.timeLast = now - this.stepNanos
+      this.deadline = now
+    }
+
+    this.accumulator += now - this.timeLast
+    this.timeLast = now
+
+    var steps = this.accumulator / this.stepNanos
+    if (steps > this.maxStepsPerFrame) {
+      this.stepsDropped += steps - this.maxStepsPerFrame
+      steps = this.maxStepsPerFrame.toLong()
+      this.accumulator = this.stepNanos * steps
+    }
+
+    this.accumulator -= this.stepNanos * steps
+    return steps.toInt()
+  }
+
+  /**
+   * Finish the current frame, sleeping until the start of the next frame if there is any
+   * time left.
+   */
+
+  fun endFrame() {
+    this.deadline += this.stepNanos
+
+    val now = this.clock.nanoTime()
+    val remaining = this.deadline - now
+    this.oversleepNanos = 0L
+    if (remaining > 0L) {
+      this.clock.sleepNanos(remaining)
+      this.oversleepNanos = Math.max(0L, this.clock.nanoTime() - this.deadline)
+    } else if (-remaining > this.stepNanos * this.maxStepsPerFrame) {
+      this.deadline = now
+    }
+  }
+
+  /**
+   * Forget all accumulated time, as if the scheduler had just been created.
+   */
+
+  fun reset() {
+    this.started = false
+    this.accumulator = 0L
+  }
+}
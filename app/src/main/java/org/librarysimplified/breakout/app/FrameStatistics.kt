@@ -0,0 +1,201 @@
+package org.librarysimplified.breakout.app
+
+import org.slf4j.LoggerFactory
+import java.lang.ref.WeakReference
+
+/**
+ * Frame timing statistics for the game loop.
+ *
+ * The game thread reports the duration of each phase of each frame, and whether the frame
+ * missed its deadline. Durations are collected in [LatencyHistogram]s over a fixed window;
+ * at the end of each window an immutable [Summary] is published (and may be read from any
+ * thread with [latest]), a summary line is logged, and the histograms are cleared.
+ *
+ * Garbage collections are detected with a weakly referenced sentinel object, which is
+ * checked once per frame and replaced whenever it has been collected. A frame during which
+ * the sentinel was collected is counted as a GC frame, so that missed deadlines can be
+ * correlated with collections.
+ *
+ * Apart from [latest], all methods must be called from the game thread.
+ */
+
+class FrameStatistics(
+  private val deadlineNanos: Long,
+  private val windowNanos: Long = 5_000_000_000L,
+  historySize: Int = 120) {
+
+  companion object {
+    const val PHASE_EVENTS = 0
+    const val PHASE_LOGIC = 1
+    const val PHASE_RENDER = 2
+    const val PHASE_OVERSLEEP = 3
+    const val PHASE_FRAME = 4
+    const val PHASE_COUNT = 5
+
+    val PHASE_NAMES =
+      listOf("events", "logic", "render", "oversleep", "frame")
+  }
+
+  private val logger = LoggerFactory.getLogger(FrameStatistics::class.java)
+
+  private val histograms = Array(PHASE_COUNT) { LatencyHistogram() }
+  private var windowStart = 0L
+  private var frames = 0L
+  private var deadlinesMissed = 0L
+  private var gcFrames = 0L
+  private var gcFramesMissed = 0L
+  private var sentinel = WeakReference(Any())
+
+  /**
+   * The durations of the most recent frames in nanoseconds, oldest first starting at
+   * [historyNext].
+   */
+
+  val history = LongArray(historySize)
+
+  var historyNext = 0
+    private set
+
+  @Volatile
+  private var summary: Summary? = null
+
+  /**
+   * Percentiles for a single phase, in nanoseconds.
+   */
+
+  data class PhaseSummary(
+    val name: String,
+    val count: Long,
+    val p50Nanos: Long,
+    val p90Nanos: Long,
+    val p99Nanos: Long,
+    val maxNanos: Long)
+
+  /**
+   * The statistics for one window.
+   */
+
+  data class Summary(
+    val windowNanos: Long,
+    val frames: Long,
+    val deadlinesMissed: Long,
+    val gcFrames: Long,
+    val gcFramesMissed: Long,
+    val phases: List<PhaseSummary>)
+
+  /**
+   * @return The summary of the most recently completed window, if any. May be called from
+   * any thread.
+   */
+
+  fun latest(): Summary? =
+    this.summary
+
+  fun record(
+    phase: Int,
+    nanos: Long
+  ) {
+    this.histograms[phase].record(nanos)
+  }
+
+  /**
+   * Finish a frame that started at `startNanos` and ended at `endNanos`.
+   */
+
+  fun frameEnd(
+    startNanos: Long,
+    endNanos: Long
+  ) {
+    val duration = endNanos - startNanos
+    val missed = duration > this.deadlineNanos
+    this.histograms[PHASE_FRAME].record(duration)
+    this.history[this.historyNext] = duration
+    this.historyNext = (this.historyNext + 1) % this.history.size
+
+    this.frames += 1L
+    if (missed) {
+      this.deadlinesMissed += 1L
+    }
+    if (this.sentinel.get() == null) {
+      this.sentinel = WeakReference(Any())
+      this.gcFrames += 1L
+      if (missed) {
+        this.gcFramesMissed += 1L
+      }
+    }
+
+    if (this.windowStart == 0L) {
+      this.windowStart = startNanos
+    } else if (endNanos - this.windowStart >= this.windowNanos) {
+      this.publish(endNanos - this.windowStart)
+      this.windowStart = endNanos
+    }
+  }
+
+  /**
+   * Discard the current window, for example after the loop has been idle.
+   */
+
+  fun resetWindow() {
+    for (histogram in this.histograms) {
+      histogram.reset()
+    }
+    this.windowStart = 0L
+    this.frames = 0L
+    this.deadlinesMissed = 0L
+    this.gcFrames = 0L
+    this.gcFramesMissed = 0L
+  }
+
+  private fun publish(windowNanos: Long) {
+    val phases = List(PHASE_COUNT) { phase ->
+      val histogram = this.histograms[phase]
+      PhaseSummary(
+        name = PHASE_NAMES[phase],
+        count = histogram.count,
+        p50Nanos = histogram.percentileNanos(0.50),
+        p90Nanos = histogram.percentileNanos(0.90),
+        p99Nanos = histogram.percentileNanos(0.99),
+        maxNanos = histogram.maxNanos)
+    }
+
+    val published =
+      Summary(
+        windowNanos = windowNanos,
+        frames = this.frames,
+        deadlinesMissed = this.deadlinesMissed,
+        gcFrames = this.gcFrames,
+        gcFramesMissed = this.gcFramesMissed,
+        phases = phases)
+
+    this.summary = published
+    if (this.logger.isInfoEnabled) {
+      this.logger.info(summaryLine(published))
+    }
+    this.resetWindow()
+  }
+
+  private fun summaryLine(summary: Summary): String {
+    val text = StringBuilder(256)
+    text.append("frames ")
+    text.append(summary.frames)
+    text.append(" missed ")
+    text.append(summary.deadlinesMissed)
+    text.append(" gc ")
+    text.append(summary.gcFrames)
+    text.append(" gc+missed ")
+    text.append(summary.gcFramesMissed)
+    for (phase in summary.phases) {
+      text.append(" | ")
+      text.append(phase.name)
+      text.append(String.format(
+        " p50 %.2f p90 %.2f p99 %.2f max %.2f",
+        phase.p50Nanos / 1_000_000.0,
+        phase.p90Nanos / 1_000_000.0,
+        phase.p99Nanos / 1_000_000.0,
+        phase.maxNanos / 1_000_000.0))
+    }
+    text.append(" (ms)")
+    return text.toString()
+  }
+}
@@ -0,0 +1,68 @@
+package org.librarysimplified.breakout.app
+
+import android.graphics.Color
+
+/**
+ * A graph of recent frame times, drawn over the game.
+ *
+ * Each frame is a vertical bar, scaled so that the deadline is a horizontal line at half
+ * the height of the graph; frames that missed their deadline are drawn in red. The
+ * background, the bars, and the deadline line overlap, and so are each recorded in their
+ * own layer.
+ */
+
+class FrameStatisticsOverlay(
+  private val statistics: FrameStatistics,
+  private val deadlineNanos: Long) {
+
+  private val left = 8.0f
+  private val top = 8.0f
+  private val barWidth = 3.0f
+  private val height = 96.0f
+
+  private val width: Float
+    get() = this.statistics.history.size * this.barWidth
+
+  fun damage(damage: DamageTracker) {
+    damage.add(this.left, this.top, this.left + this.width, this.top + this.height)
+  }
+
+  fun draw(list: DisplayList) {
+    val history = this.statistics.history
+    val size = history.size
+    val bottom = this.top + this.height
+    val deadlineY = bottom - (this.height / 2.0f)
+
+    list.nextLayer()
+    list.rect(
+      this.left,
+      this.top,
+      this.left + this.width,
+      bottom,
+      list.style(Color.argb(0xa0, 0, 0, 0), DisplayList.STYLE_FILL, 0.0f))
+
+    list.nextLayer()
+    val good = list.style(Color.GREEN, DisplayList.STYLE_FILL, 0.0f)
+    val bad = list.style(Color.RED, DisplayList.STYLE_FILL, 0.0f)
+    for (index in 0 until size) {
+      val nanos = history[(this.statistics.historyNext + index) % size]
+      val scaled = (nanos.toDouble() / this.deadlineNanos.toDouble()) * (this.height / 2.0f)
+      val barHeight = Math.min(this.height, scaled.toFloat())
+      val x = this.left + (index * this.barWidth)
+      list.rect(
+        x,
+        bottom - barHeight,
+        x + this.barWidth - 1.0f,
+        bottom,
+        if (nanos > this.deadlineNanos) bad else good)
+    }
+
+    list.nextLayer()
+    list.line(
+      this.left,
+      deadlineY,
+      this.left + this.width,
+      deadlineY,
+      list.style(Color.WHITE, DisplayList.STYLE_STROKE, 0.0f))
+  }
+}
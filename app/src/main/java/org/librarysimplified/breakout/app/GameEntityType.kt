@@ -1,11 +1,9 @@
 package org.librarysimplified.breakout.app
 
-import android.graphics.Canvas
-
 interface GameEntityType {
 
-  fun onRender(
-    canvas: Canvas,
+  fun onDraw(
+    list: DisplayList,
     deltaMs: Double
   ) {
 
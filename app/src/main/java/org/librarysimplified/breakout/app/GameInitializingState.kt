@@ -1,17 +1,20 @@
 package org.librarysimplified.breakout.app
 
-import android.content.Context
-import android.graphics.Canvas
+import android.graphics.Color
 
 class GameInitializingState(
   private val publishEvent: (BreakoutEvent) -> Unit,
   private val framesPerSecond: Int,
-  private val sounds: Sounds,
-  private val context: Context)
+  private val sounds: SoundsType,
+  private val random: GameRandom,
+  private val sequencer: LevelSequencer)
   : GameStateType {
 
   override val name: String = "initializing"
 
+  override val isAnimating: Boolean
+    get() = false
+
   override fun onLogic(
     frame: Int,
     deltaMs: Double
@@ -30,11 +33,11 @@ class GameInitializingState(
           publishEvent = this.publishEvent,
           framesPerSecond = this.framesPerSecond,
           sounds = this.sounds,
-          context = this.context,
+          random = this.random,
+          sequencer = this.sequencer,
+          levelIndex = 0,
           screenSize = event.screenSize
         )
-      is BreakoutEvent.CursorMoved -> null
-      is BreakoutEvent.CursorReleased -> null
       is BreakoutEvent.BallBrokeBlock -> null
       is BreakoutEvent.BallBouncedPaddle -> null
       BreakoutEvent.BallBouncedWall -> null
@@ -44,11 +47,18 @@ class GameInitializingState(
     }
   }
 
-  override fun onRender(
+  override fun onDraw(
     frame: Int,
     deltaMs: Double,
-    canvas: Canvas
+    list: DisplayList
+  ) {
+    list.clear(Color.argb(0xff, 0x0, 0x30, 0x30))
+  }
+
+  override fun onDamage(
+    frame: Int,
+    damage: DamageTracker
   ) {
-    canvas.drawARGB(0xff, 0x0, 0x30, 0x30)
+    // The state is drawn as a single flat color, so nothing changes between frames.
   }
 }
\ No newline at end of file
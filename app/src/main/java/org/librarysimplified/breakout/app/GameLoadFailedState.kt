@@ -0,0 +1,122 @@
+package org.librarysimplified.breakout.app
+
+import android.graphics.Color
+import android.util.Size
+
+/**
+ * Shown when a level could not be loaded. A tap starts loading the level again.
+ *
+ * The state never animates, so the game loop idles until the screen is touched.
+ */
+
+class GameLoadFailedState(
+  private val publishEvent: (BreakoutEvent) -> Unit,
+  private val framesPerSecond: Int,
+  private val sounds: SoundsType,
+  private val random: GameRandom,
+  private val sequencer: LevelSequencer,
+  private val levelIndex: Int,
+  private val screenSize: Size,
+  private val failure: Throwable)
+  : GameStateType {
+
+  private companion object {
+    const val HUD_KEY_TITLE = 1
+    const val HUD_KEY_RETRY = 2
+  }
+
+  private val hud = Hud(Color.WHITE)
+  private val hudTitle = Hud.Line()
+  private val hudRetry = Hud.Line()
+  private val inputSample = InputLatch.Sample()
+  private val inputVersion: Int
+
+  init {
+    this.sequencer.input.sample(this.inputSample)
+    this.inputVersion = this.inputSample.version
+  }
+
+  override val name: String = "load-failed"
+
+  override val isAnimating: Boolean
+    get() = false
+
+  /*
+   * Retry once a touch has been released since the failure was shown, so that a tap is
+   * seen even if it began and ended between two frames.
+   */
+
+  override fun onLogic(
+    frame: Int,
+    deltaMs: Double
+  ): GameStateType? {
+    this.sequencer.input.sample(this.inputSample)
+    if (this.inputSample.version == this.inputVersion || this.inputSample.down) {
+      return null
+    }
+
+    return GameLoadingState(
+      publishEvent = this.publishEvent,
+      framesPerSecond = this.framesPerSecond,
+      sounds = this.sounds,
+      random = this.random,
+      sequencer = this.sequencer,
+      levelIndex = this.levelIndex,
+      screenSize = this.screenSize)
+  }
+
+  override fun onEvent(
+    frame: Int,
+    deltaMs: Double,
+    event: BreakoutEvent
+  ): GameStateType? {
+    return when (event) {
+      is BreakoutEvent.ScreenSizeChanged -> {
+        if (event.screenSize == this.screenSize) {
+          null
+        } else {
+          GameLoadFailedState(
+            publishEvent = this.publishEvent,
+            framesPerSecond = this.framesPerSecond,
+            sounds = this.sounds,
+            random = this.random,
+            sequencer = this.sequencer,
+            levelIndex = this.levelIndex,
+            screenSize = event.screenSize,
+            failure = this.failure)
+        }
+      }
+      else -> null
+    }
+  }
+
+  override fun onDraw(
+    frame: Int,
+    deltaMs: Double,
+    list: DisplayList
+  ) {
+    list.clear(Color.argb(0xff, 0x80, 0x0, 0x0))
+    list.nextLayer()
+    this.hudTitle.draw(list)
+    this.hudRetry.draw(list)
+  }
+
+  override fun onDamage(
+    frame: Int,
+    damage: DamageTracker
+  ) {
+    if (!this.hudTitle.hasKey(HUD_KEY_TITLE)) {
+      this.hudTitle.show(this.hud.text("LOADING FAILED", 64.0f), HUD_KEY_TITLE)
+    }
+    if (!this.hudRetry.hasKey(HUD_KEY_RETRY)) {
+      this.hudRetry.show(this.hud.text("Tap to try again", 24.0f), HUD_KEY_RETRY)
+    }
+
+    val centerX = this.screenSize.width / 2.0f
+    val centerY = this.screenSize.height / 2.0f
+    this.hudTitle.moveTo(centerX, centerY, true)
+    this.hudRetry.moveTo(centerX, centerY + 64.0f, true)
+    this.hudTitle.damage(damage)
+    this.hudRetry.damage(damage)
+  }
+}
@@ -1,110 +1,75 @@
 package org.librarysimplified.breakout.app
 
-import android.content.Context
-import android.graphics.Bitmap
-import android.graphics.BitmapFactory
-import android.graphics.Canvas
-import android.graphics.PointF
+import android.graphics.Color
 import android.util.Size
+import org.slf4j.LoggerFactory
 
 class GameLoadingState(
   private val publishEvent: (BreakoutEvent) -> Unit,
   private val framesPerSecond: Int,
-  private val sounds: Sounds,
-  private val context: Context,
+  private val sounds: SoundsType,
+  private val random: GameRandom,
+  private val sequencer: LevelSequencer,
+  private val levelIndex: Int,
   private val screenSize: Size)
   : GameStateType {
 
-  private val playField: PlayField
-
-  init {
-    val blockSize = this.screenSize.width / 13
-    val ballSize = this.screenSize.width / 16
-    val paddleWidth = ballSize * 2
-    val paddleHeight = ballSize / 2.0f
-
-    val puddingBase =
-      BitmapFactory.decodeResource(this.context.resources, R.drawable.pudding)
-    val pudding =
-      Bitmap.createScaledBitmap(puddingBase, blockSize, blockSize, true)
-    puddingBase.recycle()
-
-    val baubleBase =
-      BitmapFactory.decodeResource(this.context.resources, R.drawable.bauble)
-    val bauble =
-      Bitmap.createScaledBitmap(baubleBase, ballSize, ballSize, true)
-    baubleBase.recycle()
-
-    val paddleCenter =
-      PointF(this.screenSize.width / 2.0f, (this.screenSize.height - paddleHeight * 4.0f))
-    val paddle =
-      Paddle(
-        center = paddleCenter,
-        radius = paddleWidth.toFloat(),
-        height = paddleHeight
-      )
-
-    val blocks = mutableListOf<Block>()
-    for (y in 0 until 6) {
-      for (x in 0 until 12) {
-        val blockY = blockSize + (y * blockSize)
-        val blockX = blockSize + (x * blockSize)
-
-        val blockCircle = CircleF(
-          center = PointF(blockX.toFloat(), blockY.toFloat()),
-          radius = blockSize / 2.0f
-        )
-
-        val block =
-          Block(
-            circle = blockCircle,
-            bitmap = pudding,
-            alive = true
-          )
-        blocks.add(block)
-      }
-    }
+  private val logger = LoggerFactory.getLogger(GameLoadingState::class.java)
 
-    val ballDirection = PointF(Math.random().toFloat(), -1.0f)
-    Vectors.normalize(ballDirection)
-    val ballDefaultDirection = PointF(ballDirection.x, ballDirection.y)
+  private val loader =
+    this.sequencer.loader(this.levelIndex, this.screenSize)
 
-    val ballCircle = CircleF(
-      center = PointF(this.screenSize.width / 2.0f, paddle.rectangle().min.y - ballSize),
-      radius = ballSize / 2.0f
-    )
+  private val damageBar = DamageRegion()
+  private val damageMarker = DamageRegion()
+  private var stepsShown = 0
+  private var markerX = 0.0f
 
-    val speedDefault = 1.0f
-    val ball =
-      Ball(
-        isAlive = true,
-        circle = ballCircle,
-        bitmap = bauble,
-        defaultDirection = ballDefaultDirection,
-        direction = ballDirection,
-        speedDefault = speedDefault,
-        speed = speedDefault)
-
-    this.playField = PlayField(
-      publishEvent = this.publishEvent,
-      screenSize = this.screenSize,
-      blocks = blocks.toList(),
-      ball = ball,
-      paddle = paddle
-    )
-  }
+  private val barWidth = this.screenSize.width / 2.0f
+  private val barHeight = 16.0f
+  private val barLeft = (this.screenSize.width - this.barWidth) / 2.0f
+  private val barTop = (this.screenSize.height - this.barHeight) / 2.0f
 
   override val name: String = "loading"
 
+  /*
+   * The loader reports progress by being polled, and the marker sweeps continuously.
+   */
+
+  override val isAnimating: Boolean
+    get() = true
+
   override fun onLogic(
     frame: Int,
     deltaMs: Double
   ): GameStateType? {
+    val failure = this.loader.failure
+    if (failure != null) {
+      this.logger.error("failed to load level {}: ", this.levelIndex, failure)
+      return GameLoadFailedState(
+        publishEvent = this.publishEvent,
+        framesPerSecond = this.framesPerSecond,
+        sounds = this.sounds,
+        random = this.random,
+        sequencer = this.sequencer,
+        levelIndex = this.levelIndex,
+        screenSize = this.screenSize,
+        failure = failure)
+    }
+    this.loader.poll(deltaMs)
+    if (!this.loader.isDone) {
+      return null
+    }
+
+    val playField = this.loader.playField()
+    playField.relayout(this.screenSize)
     return GamePlayingState(
       sounds = this.sounds,
+      random = this.random.split(),
       publishEvent = this.publishEvent,
       framesPerSecond = this.framesPerSecond,
-      playField = this.playField
+      sequencer = this.sequencer,
+      levelIndex = this.levelIndex,
+      playField = playField
     )
   }
 
@@ -113,14 +78,88 @@ class GameLoadingState(
     deltaMs: Double,
     event: BreakoutEvent
   ): GameStateType? {
-    return null
+    return when (event) {
+      is BreakoutEvent.ScreenSizeChanged -> {
+        /*
+         * The sequencer hands the new state the loader that is already running; the level
+         * it produces is laid out for the new size once it is done.
+         */
+
+        if (event.screenSize == this.screenSize) {
+          null
+        } else {
+          GameLoadingState(
+            publishEvent = this.publishEvent,
+            framesPerSecond = this.framesPerSecond,
+            sounds = this.sounds,
+            random = this.random,
+            sequencer = this.sequencer,
+            levelIndex = this.levelIndex,
+            screenSize = event.screenSize)
+        }
+      }
+      else -> null
+    }
   }
 
-  override fun onRender(
+  override fun onDraw(
     frame: Int,
     deltaMs: Double,
-    canvas: Canvas
+    list: DisplayList
+  ) {
+    list.clear(Color.argb(0xff, 0x80, 0x0, 0x0))
+    list.nextLayer()
+
+    val fraction = this.stepsShown.toFloat() / this.loader.stepsTotal.toFloat()
+    val barRight = this.barLeft + this.barWidth
+    val barBottom = this.barTop + this.barHeight
+    list.rect(
+      this.barLeft,
+      this.barTop,
+      this.barLeft + (this.barWidth * fraction),
+      barBottom,
+      list.style(Color.WHITE, DisplayList.STYLE_FILL, 0.0f))
+    list.rect(
+      this.markerX,
+      this.barTop,
+      this.markerX + this.barHeight,
+      barBottom,
+      list.style(Color.YELLOW, DisplayList.STYLE_FILL, 0.0f))
+    list.nextLayer()
+    list.rect(
+      this.barLeft,
+      this.barTop,
+      barRight,
+      barBottom,
+      list.style(Color.WHITE, DisplayList.STYLE_STROKE, 0.0f))
+  }
+
+  override fun onDamage(
+    frame: Int,
+    damage: DamageTracker
   ) {
-    canvas.drawARGB(0xff, 0x80, 0x0, 0x0)
+    this.stepsShown = this.loader.stepsDone
+
+    /*
+     * A marker crosses the bar once a second, back and forth, so that progress is
+     * visibly being made even while a single long step runs.
+     */
+
+    val period = this.framesPerSecond * 2
+    val phase = frame % period
+    val sweep = if (phase < this.framesPerSecond) phase else period - phase
+    this.markerX =
+      this.barLeft + ((this.barWidth - this.barHeight) * sweep) / this.framesPerSecond
+
+    val barBottom = this.barTop + this.barHeight
+    this.damageBar.report(
+      damage,
+      this.barLeft,
+      this.barTop,
+      this.barLeft + this.barWidth,
+      barBottom,
+      this.stepsShown)
+    this.damageMarker.report(
+      damage, this.markerX, this.barTop, this.markerX + this.barHeight, barBottom, 0)
   }
 }
\ No newline at end of file
@@ -1,35 +1,58 @@
 package org.librarysimplified.breakout.app
 
-import android.graphics.Canvas
 import android.graphics.Color
-import android.graphics.Paint
-import android.graphics.Typeface
 import org.librarysimplified.breakout.app.GamePlayingState.AnnouncementKind.COUNTDOWN
 import org.librarysimplified.breakout.app.GamePlayingState.AnnouncementKind.FINISHED
 import org.librarysimplified.breakout.app.GamePlayingState.AnnouncementKind.GO
-import kotlin.math.max
+import org.slf4j.LoggerFactory
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.Future
 
 class GamePlayingState(
-  private val sounds: Sounds,
+  private val sounds: SoundsType,
+  private val random: GameRandom,
   private val publishEvent: (BreakoutEvent) -> Unit,
   private val framesPerSecond: Int,
+  private val sequencer: LevelSequencer,
+  private val levelIndex: Int,
   private val playField: PlayField) : GameStateType {
 
   private var status: Status =
     this.createGetReadyStatus(10, 3)
 
-  private val uiPaint = Paint(Paint.ANTI_ALIAS_FLAG)
-  private val statistics =
-    Statistics(
-      ballSpeedMax = 0f,
-      paddleBounces = 0,
-      wallBounces = 0
-    )
+  private val hud = Hud(Color.WHITE)
+  private val hudCenter = Hud.Line()
+  private val hudBottom = Hud.Line()
+
+  /*
+   * The end screen shows how far the game-wide counters have moved during this level.
+   */
+
+  private val paddleBouncesStart = Metrics.paddleBounces.value
+  private val wallBouncesStart = Metrics.wallBounces.value
+  private var statisticsVersion = 0
+  private val levelNext = this.sequencer.next(this.levelIndex)
+  private var spriteRequest: Future<SpriteAtlas>? = null
+  private var spriteRequestSize = 0
+
+  private val logger = LoggerFactory.getLogger(GamePlayingState::class.java)
 
   init {
-    this.uiPaint.typeface = Typeface.create(Typeface.SANS_SERIF, Typeface.BOLD)
-    this.uiPaint.color = Color.WHITE
-    this.uiPaint.style = Paint.Style.FILL
+    Metrics.ballSpeedMax.set(0.0)
+    this.sequencer.prefetch(this.levelNext, this.playField.screenSize)
+    this.checkSprites()
+  }
+
+  private companion object {
+    const val HUD_KEY_WON = -1
+    const val HUD_KEY_LOST = -2
+
+    /**
+     * Sprites drawn within this fraction of the size at which they were rasterized are
+     * simply scaled.
+     */
+
+    const val SPRITE_SCALE_TOLERANCE = 0.25f
   }
 
   private fun createGetReadyStatus(
@@ -60,11 +83,6 @@ class GamePlayingState(
     val text: String,
     val kind: AnnouncementKind)
 
-  private data class Statistics(
-    var ballSpeedMax: Float,
-    var paddleBounces: Int,
-    var wallBounces: Int)
-
   private sealed class Status {
 
     abstract val lives: Int
@@ -76,6 +94,7 @@ class GamePlayingState(
       : Status()
 
     data class Won(
+      val timeWon: Int,
       override val lives: Int)
       : Status()
 
@@ -96,32 +115,35 @@ class GamePlayingState(
     this.playField.onEvent(event, deltaMs)
 
     return when (event) {
-      is BreakoutEvent.ScreenSizeChanged -> null
-
-      is BreakoutEvent.CursorMoved -> null
-
-      is BreakoutEvent.CursorReleased -> null
+      is BreakoutEvent.ScreenSizeChanged -> {
+        this.playField.relayout(event.screenSize)
+        this.checkSprites()
+        null
+      }
 
       is BreakoutEvent.BallBrokeBlock -> {
-        if (!this.playField.blocks.any { block -> block.alive }) {
-          this.status = Status.Won(this.status.lives)
+        if (this.playField.grid.liveCount == 0) {
+          this.status = Status.Won(frame, this.status.lives)
         }
 
-        this.statistics.ballSpeedMax =
-          max(this.statistics.ballSpeedMax, this.playField.ball.speed)
-        this.sounds.playRandomRate(this.sounds.blockBreak)
+        Metrics.blocksBroken.increment()
+        Metrics.ballSpeedMax.updateMax(this.playField.ball.speed.toDouble())
+        this.statisticsVersion += 1
+        this.sounds.playRandomRate(this.sounds.blockBreak, this.random)
         null
       }
 
       is BreakoutEvent.BallBouncedPaddle -> {
-        this.statistics.paddleBounces += 1
-        this.sounds.playRandomRate(this.sounds.tak)
+        Metrics.paddleBounces.increment()
+        this.statisticsVersion += 1
+        this.sounds.playRandomRate(this.sounds.tak, this.random)
         null
       }
 
       BreakoutEvent.BallBouncedWall -> {
-        this.statistics.wallBounces += 1
-        this.sounds.playRandomRate(this.sounds.bounce)
+        Metrics.wallBounces.increment()
+        this.statisticsVersion += 1
+        this.sounds.playRandomRate(this.sounds.bounce, this.random)
         null
       }
 
@@ -153,7 +175,9 @@ class GamePlayingState(
 
   private fun findCurrentAnnouncement(status: Status.GetReady, frame: Int): Announcement? {
     var current: Announcement? = null
-    for (announcement in status.announcements) {
+    val announcements = status.announcements
+    for (index in 0 until announcements.size) {
+      val announcement = announcements[index]
       if (frame >= announcement.time) {
         current = announcement
       }
@@ -161,10 +185,51 @@ class GamePlayingState(
     return current
   }
 
+  /**
+   * Request new sprites if the play field is drawing its sprites too far from the size at
+   * which they were rasterized.
+   */
+
+  private fun checkSprites() {
+    val scale = this.playField.spriteScale
+    if (Math.abs(scale - 1.0f) <= SPRITE_SCALE_TOLERANCE) {
+      this.spriteRequest?.cancel(false)
+      this.spriteRequest = null
+      return
+    }
+
+    val blockSize = Math.round(this.playField.blocks[0].circle.radius * 2.0f)
+    if (this.spriteRequest != null && this.spriteRequestSize == blockSize) {
+      return
+    }
+
+    val ballSize = Math.round(this.playField.ball.circle.radius * 2.0f)
+    this.spriteRequest?.cancel(false)
+    this.spriteRequest = this.sequencer.rasterize(blockSize, ballSize)
+    this.spriteRequestSize = blockSize
+  }
+
+  private fun pollSprites() {
+    val request = this.spriteRequest
+    if (request == null || !request.isDone) {
+      return
+    }
+
+    this.spriteRequest = null
+    try {
+      val atlas = request.get()
+      this.playField.replaceSprites(atlas.sprites[0], atlas.sprites[1])
+    } catch (e: ExecutionException) {
+      this.logger.warn("could not rasterize sprites: ", e.cause)
+    }
+  }
+
   override fun onLogic(
     frame: Int,
     deltaMs: Double
   ): GameStateType? {
+    this.pollSprites()
+    this.sequencer.poll(deltaMs)
     return when (val currentStatus = this.status) {
       is Status.GetReady -> {
         val announcement =
@@ -197,94 +262,163 @@ class GamePlayingState(
       }
 
       is Status.Won -> {
-        null
+        this.playField.onLogicEffects(deltaMs)
+        if (frame >= currentStatus.timeWon + (this.framesPerSecond * 3)) {
+          this.nextLevel()
+        } else {
+          null
+        }
       }
       is Status.Lost -> {
+        this.playField.onLogicEffects(deltaMs)
         null
       }
     }
   }
 
-  override fun onRender(
+  /**
+   * Move on to the next level: straight into play if it has finished loading in the
+   * background, and otherwise into the loading state to wait for it.
+   */
+
+  private fun nextLevel(): GameStateType {
+    val screenSize = this.playField.screenSize
+    val loader = this.sequencer.loader(this.levelNext, screenSize)
+    if (loader.isDone) {
+      val playField = loader.playField()
+      playField.relayout(screenSize)
+      return GamePlayingState(
+        sounds = this.sounds,
+        random = this.random.split(),
+        publishEvent = this.publishEvent,
+        framesPerSecond = this.framesPerSecond,
+        sequencer = this.sequencer,
+        levelIndex = this.levelNext,
+        playField = playField)
+    }
+
+    return GameLoadingState(
+      publishEvent = this.publishEvent,
+      framesPerSecond = this.framesPerSecond,
+      sounds = this.sounds,
+      random = this.random.split(),
+      sequencer = this.sequencer,
+      levelIndex = this.levelNext,
+      screenSize = screenSize)
+  }
+
+  override fun onDraw(
     frame: Int,
     deltaMs: Double,
-    canvas: Canvas
+    list: DisplayList
   ) {
-    canvas.drawARGB(0xff, 0x20, 0x20, 0x20)
-    this.playField.onRender(canvas, deltaMs)
+    this.playField.onDraw(list, deltaMs)
+    list.nextLayer()
+    this.hudCenter.draw(list)
+    this.hudBottom.draw(list)
+  }
+
+  private fun latchInput() {
+    if (this.status is Status.Playing) {
+      this.playField.latchPaddle()
+    } else {
+      this.playField.latchInput()
+    }
+  }
+
+  override fun onDamage(
+    frame: Int,
+    damage: DamageTracker
+  ) {
+    this.latchInput()
+    this.updateHud(frame)
+    this.playField.onDamage(damage)
+    this.hudCenter.damage(damage)
+    this.hudBottom.damage(damage)
+  }
+
+  /**
+   * Bring the HUD lines up to date with the current status. Strings are only built, and
+   * text only looked up, when the content of a line changes.
+   */
+
+  private fun updateHud(frame: Int) {
+    val lives = this.status.lives
 
     when (val currentStatus = this.status) {
       is Status.GetReady -> {
         val announcement =
           this.findCurrentAnnouncement(currentStatus, frame)
 
-        if (announcement != null) {
-          this.uiPaint.textSize = 96.0f
-          val textWidth = this.uiPaint.measureText(announcement.text)
-
-          canvas.drawText(
-            announcement.text,
-            (this.playField.screenSize.width / 2.0f) - (textWidth / 2.0f),
-            this.playField.screenSize.height / 2.0f,
-            this.uiPaint
-          )
+        if (announcement != null && announcement.text.isNotEmpty()) {
+          if (!this.hudCenter.hasKey(announcement.time)) {
+            this.hudCenter.show(this.hud.text(announcement.text, 96.0f), announcement.time)
+          }
+        } else {
+          this.hudCenter.hide()
         }
-
-        this.renderLivesText(canvas)
+        this.showLivesText(lives)
       }
 
       is Status.Playing -> {
-        this.renderLivesText(canvas)
+        this.hudCenter.hide()
+        this.showLivesText(lives)
       }
 
       is Status.Won -> {
-        this.uiPaint.textSize = 96.0f
-        val textWidth = this.uiPaint.measureText("YOU WIN!")
-
-        canvas.drawText(
-          "YOU WIN!",
-          (this.playField.screenSize.width / 2.0f) - (textWidth / 2.0f),
-          this.playField.screenSize.height / 2.0f,
-          this.uiPaint)
-
-        this.renderStatsText(canvas)
+        if (!this.hudCenter.hasKey(HUD_KEY_WON)) {
+          this.hudCenter.show(this.hud.text("YOU WIN!", 96.0f), HUD_KEY_WON)
+        }
+        this.showStatsText()
       }
 
       is Status.Lost -> {
-        this.uiPaint.textSize = 96.0f
-        val textWidth = this.uiPaint.measureText("GAME OVER")
-
-        canvas.drawText(
-          "GAME OVER",
-          (this.playField.screenSize.width / 2.0f) - (textWidth / 2.0f),
-          this.playField.screenSize.height / 2.0f,
-          this.uiPaint)
-
-        this.renderStatsText(canvas)
+        if (!this.hudCenter.hasKey(HUD_KEY_LOST)) {
+          this.hudCenter.show(this.hud.text("GAME OVER", 96.0f), HUD_KEY_LOST)
+        }
+        this.showStatsText()
       }
     }
-  }
 
-  private fun renderStatsText(canvas: Canvas) {
-    this.uiPaint.textSize = 14.0f
     val ballRadius = this.playField.ball.circle.radius
-    val ballY = this.playField.screenSize.height - ballRadius
-    canvas.drawText(
-      "Lives: ${this.status.lives}, " +
-        "Wall bounces: ${this.statistics.wallBounces}, " +
-        "Paddle bounces: ${this.statistics.paddleBounces}, " +
-        "Max speed: ${this.statistics.ballSpeedMax}",
+    this.hudCenter.moveTo(
+      this.playField.screenSize.width / 2.0f,
+      this.playField.screenSize.height / 2.0f,
+      true)
+    this.hudBottom.moveTo(
       ballRadius,
-      ballY,
-      this.uiPaint)
+      this.playField.screenSize.height - ballRadius,
+      false)
   }
 
-  private fun renderLivesText(canvas: Canvas) {
-    this.uiPaint.textSize = 24.0f
-    val ballRadius = this.playField.ball.circle.radius
-    val ballY = this.playField.screenSize.height - ballRadius
-    canvas.drawText("Lives: ${this.status.lives}", ballRadius, ballY, this.uiPaint)
+  private fun showLivesText(lives: Int) {
+    if (!this.hudBottom.hasKey(lives)) {
+      this.hudBottom.show(this.hud.text("Lives: $lives", 24.0f), lives)
+    }
+  }
+
+  private fun showStatsText() {
+    val key = -1 - this.statisticsVersion
+    if (!this.hudBottom.hasKey(key)) {
+      this.hudBottom.show(this.hud.text(this.statsText(), 14.0f), key)
+    }
   }
 
+  private fun statsText(): String =
+    "Lives: ${this.status.lives}, " +
+      "Wall bounces: ${Metrics.wallBounces.value - this.wallBouncesStart}, " +
+      "Paddle bounces: ${Metrics.paddleBounces.value - this.paddleBouncesStart}, " +
+      "Max speed: ${Metrics.ballSpeedMax.value.toFloat()}"
+
+  /*
+   * Once the game is lost, nothing changes after the last sparks have died out. A won game
+   * is still counting down to the next level.
+   */
+
+  override val isAnimating: Boolean
+    get() = this.status !is Status.Lost
+      || this.playField.isAnimating
+      || this.spriteRequest != null
+
   override val name: String = "playing"
-}
\ No newline at end of file
+}
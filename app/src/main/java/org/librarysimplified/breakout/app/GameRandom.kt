@@ -0,0 +1,85 @@
+package org.librarysimplified.breakout.app
+
+/**
+ * A fast, non-synchronized, splittable pseudo-random number generator.
+ *
+ * This is the SplitMix64 algorithm (the same one used by `java.util.SplittableRandom`,
+ * which is not available at our minimum API level). Instances must not be shared between
+ * threads; use [split] to derive an independent generator for each consumer instead. All
+ * generators split from a given seed produce the same sequences, so a game session can be
+ * reproduced from its seed.
+ */
+
+class GameRandom private constructor(
+  private var seed: Long,
+  private val gamma: Long) {
+
+  constructor(seed: Long) : this(seed, GOLDEN_GAMMA)
+
+  private companion object {
+    const val GOLDEN_GAMMA = -0x61c8864680b583ebL
+    const val DOUBLE_UNIT = 1.0 / (1L shl 53)
+    const val FLOAT_UNIT = 1.0f / (1 shl 24)
+
+    fun mix64(value: Long): Long {
+      var z = value
+      z = (z xor (z ushr 30)) * -0x40a7b892e31b1a47L
+      z = (z xor (z ushr 27)) * -0x6b2fb644ecceee15L
+      return z xor (z ushr 31)
+    }
+
+    fun mix32(value: Long): Int {
+      var z = value
+      z = (z xor (z ushr 33)) * 0x62a9d9ed799705f5L
+      return (((z xor (z ushr 28)) * -0x34db2f5a3773ca4dL) ushr 32).toInt()
+    }
+
+    fun mixGamma(value: Long): Long {
+      var z = value
+      z = (z xor (z ushr 33)) * -0xae502812aa7333L
+      z = (z xor (z ushr 33)) * -0x3b314601e57a13adL
+      z = (z xor (z ushr 33)) or 1L
+      val n = java.lang.Long.bitCount(z xor (z ushr 1))
+      return if (n < 24) z xor -0x5555555555555556L else z
+    }
+  }
+
+  private fun nextSeed(): Long {
+    this.seed += this.gamma
+    return this.seed
+  }
+
+  fun nextLong(): Long =
+    mix64(this.nextSeed())
+
+  fun nextInt(): Int =
+    mix32(this.nextSeed())
+
+  /**
+   * @return A value uniformly distributed in `[0, 1)`
+   */
+
+  fun nextDouble(): Double =
+    (this.nextLong() ushr 11) * DOUBLE_UNIT
+
+  /**
+   * @return A value uniformly distributed in `[0, 1)`
+   */
+
+  fun nextFloat(): Float =
+    (this.nextInt() ushr 8) * FLOAT_UNIT
+
+  /**
+   * @return A value uniformly distributed in `[-1, 1)`
+   */
+
+  fun nextSignedFloat(): Float =
+    (this.nextFloat() * 2.0f) - 1.0f
+
+  /**
+   * Derive a new generator that shares no state with this one.
+   */
+
+  fun split(): GameRandom =
+    GameRandom(this.nextLong(), mixGamma(this.nextSeed()))
+}
@@ -1,7 +1,5 @@
 package org.librarysimplified.breakout.app
 
-import android.graphics.Canvas
-
 interface GameStateType {
 
   fun onEvent(
@@ -10,15 +8,38 @@ interface GameStateType {
     event: BreakoutEvent
   ): GameStateType?
 
-  fun onRender(
+  /**
+   * Record the commands needed to draw the current frame into `list`. The list may be
+   * replayed later, on another thread.
+   */
+
+  fun onDraw(
     frame: Int,
     deltaMs: Double,
-    canvas: Canvas
+    list: DisplayList
+  )
+
+  /**
+   * Prepare to draw a frame, and add the regions of the surface that have changed since the
+   * previous call to `damage`. This is called once before each [onDraw].
+   */
+
+  fun onDamage(
+    frame: Int,
+    damage: DamageTracker
   )
 
   fun onLogic(
     frame: Int,
     deltaMs: Double): GameStateType?
 
+  /**
+   * `true` if the state may change, or look different, in the next frame even if no event
+   * arrives. While a state is not animating, the game loop stops running frames and waits
+   * for an event.
+   */
+
+  val isAnimating: Boolean
+
   val name: String
 }
\ No newline at end of file
@@ -0,0 +1,169 @@
+package org.librarysimplified.breakout.app
+
+import android.graphics.Bitmap
+
+/**
+ * A display list backend that draws nothing, and instead counts commands, state changes,
+ * and an estimate of the number of pixels that each frame touches. If `trace` is provided,
+ * a line describing each command is appended to it.
+ *
+ * The backend never calls into `android.graphics`, so it can be used to check the cost and
+ * the output of rendering on a plain JVM.
+ */
+
+class HeadlessDisplayListBackend(
+  private val trace: StringBuilder? = null) : DisplayListBackendType {
+
+  var commands = 0L
+    private set
+  var styleChanges = 0L
+    private set
+  var bitmapChanges = 0L
+    private set
+  var pixels = 0.0
+    private set
+
+  private var bitmapLast: Bitmap? = null
+  private var styleStroke = false
+  private var styleWidth = 0.0f
+
+  fun reset() {
+    this.commands = 0L
+    this.styleChanges = 0L
+    this.bitmapChanges = 0L
+    this.pixels = 0.0
+    this.bitmapLast = null
+    this.trace?.setLength(0)
+  }
+
+  fun render(list: DisplayList) {
+    list.replay(this)
+  }
+
+  /*
+   * The text is only formatted if there is a trace, so that counting does not allocate.
+   */
+
+  private inline fun line(text: () -> String) {
+    val trace = this.trace ?: return
+    trace.append(text.invoke()).append('\n')
+  }
+
+  override fun onClear(color: Int) {
+    this.commands += 1
+    this.line { "clear ${Integer.toHexString(color)}" }
+  }
+
+  override fun onBlocks(
+    grid: BlockGrid,
+    killCount: Int,
+    width: Int,
+    height: Int,
+    backgroundColor: Int
+  ) {
+    this.commands += 1
+    this.pixels += width.toDouble() * height.toDouble()
+    this.line { "blocks ${grid.blocks.size} $killCount $width $height" }
+  }
+
+  override fun onSprite(
+    bitmap: Bitmap,
+    sourceLeft: Int,
+    sourceTop: Int,
+    sourceRight: Int,
+    sourceBottom: Int,
+    left: Float,
+    top: Float,
+    right: Float,
+    bottom: Float
+  ) {
+    this.commands += 1
+    if (bitmap !== this.bitmapLast) {
+      this.bitmapChanges += 1
+      this.bitmapLast = bitmap
+    }
+    val width = (right - left).toDouble()
+    val height = (bottom - top).toDouble()
+    this.pixels += width * height
+    this.line {
+      "sprite $sourceLeft $sourceTop $sourceRight $sourceBottom $left $top $right $bottom"
+    }
+  }
+
+  override fun onStyle(
+    color: Int,
+    flags: Int,
+    width: Float
+  ) {
+    this.styleChanges += 1
+    this.styleStroke = flags and DisplayList.STYLE_STROKE != 0
+    this.styleWidth = Math.max(1.0f, width)
+    this.line { "style ${Integer.toHexString(color)} $flags $width" }
+  }
+
+  override fun onCircle(
+    x: Float,
+    y: Float,
+    radius: Float
+  ) {
+    this.commands += 1
+    this.pixels +=
+      if (this.styleStroke) {
+        2.0 * Math.PI * radius * this.styleWidth
+      } else {
+        Math.PI * radius * radius
+      }
+    this.line { "circle $x $y $radius" }
+  }
+
+  override fun onRect(
+    left: Float,
+    top: Float,
+    right: Float,
+    bottom: Float
+  ) {
+    this.commands += 1
+    val width = (right - left).toDouble()
+    val height = (bottom - top).toDouble()
+    this.pixels +=
+      if (this.styleStroke) {
+        2.0 * (width + height) * this.styleWidth
+      } else {
+        width * height
+      }
+    this.line { "rect $left $top $right $bottom" }
+  }
+
+  override fun onLine(
+    x0: Float,
+    y0: Float,
+    x1: Float,
+    y1: Float
+  ) {
+    this.commands += 1
+    this.pixels += Math.hypot((x1 - x0).toDouble(), (y1 - y0).toDouble()) * this.styleWidth
+    this.line { "line $x0 $y0 $x1 $y1" }
+  }
+
+  override fun onText(
+    text: String,
+    x: Float,
+    y: Float,
+    size: Float,
+    centered: Boolean
+  ) {
+    this.commands += 1
+    this.pixels += text.length * size * size * 0.6
+    this.line { "text \"$text\" $x $y $size $centered" }
+  }
+
+  override fun onPoints(
+    points: FloatArray,
+    offset: Int,
+    count: Int
+  ) {
+    this.commands += 1
+    this.pixels += count * this.styleWidth.toDouble() * this.styleWidth.toDouble()
+    this.line { "points $count" }
+  }
+}
@@ -0,0 +1,140 @@
+package org.librarysimplified.breakout.app
+
+import android.graphics.Bitmap
+import android.graphics.Canvas
+import android.graphics.Paint
+import android.graphics.Typeface
+import androidx.annotation.ColorInt
+
+/**
+ * A cache of text rendered into bitmaps, keyed by string and size.
+ *
+ * Text is measured and rasterized once, when it is first requested; drawing it afterwards
+ * is a single sprite. Evicted bitmaps are not recycled, because a display list that refers
+ * to them may still be waiting to be drawn on another thread.
+ */
+
+class Hud(
+  @ColorInt color: Int,
+  private val cacheSize: Int = 32) {
+
+  private val paint = Paint(Paint.ANTI_ALIAS_FLAG)
+
+  private val cache =
+    object : LinkedHashMap<Key, Text>(16, 0.75f, true) {
+      override fun removeEldestEntry(eldest: MutableMap.MutableEntry<Key, Text>?): Boolean {
+        return this.size > this@Hud.cacheSize
+      }
+    }
+
+  init {
+    this.paint.typeface = Typeface.create(Typeface.SANS_SERIF, Typeface.BOLD)
+    this.paint.color = color
+    this.paint.style = Paint.Style.FILL
+  }
+
+  private data class Key(
+    val text: String,
+    val size: Float)
+
+  /**
+   * A rasterized line of text. The baseline of the text is `ascent` pixels below the top
+   * of the bitmap.
+   */
+
+  class Text(
+    val text: String,
+    val sprite: Sprite,
+    val width: Float,
+    val height: Float,
+    val ascent: Float)
+
+  fun text(
+    text: String,
+    size: Float
+  ): Text {
+    val key = Key(text, size)
+    val existing = this.cache[key]
+    if (existing != null) {
+      return existing
+    }
+
+    this.paint.textSize = size
+    val metrics = this.paint.fontMetrics
+    val width = Math.ceil(this.paint.measureText(text).toDouble()).toInt() + 2
+    val height = Math.ceil((metrics.descent - metrics.ascent).toDouble()).toInt() + 2
+    val bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888)
+    Canvas(bitmap).drawText(text, 1.0f, 1.0f - metrics.ascent, this.paint)
+
+    val result =
+      Text(
+        text = text,
+        sprite = Sprite(bitmap, 0, 0, width, height),
+        width = width.toFloat(),
+        height = height.toFloat(),
+        ascent = 1.0f - metrics.ascent)
+    this.cache[key] = result
+    return result
+  }
+
+  /**
+   * A position on the screen that shows at most one line of text at a time.
+   *
+   * The line is identified by a `key` chosen by the owner; the owner only needs to look up
+   * (and, typically, build the string for) a new [Text] when the key changes.
+   */
+
+  class Line {
+
+    private val region = DamageRegion()
+    private var key = 0
+    private var text: Text? = null
+    private var left = 0.0f
+    private var top = 0.0f
+
+    fun hasKey(key: Int): Boolean =
+      this.text != null && this.key == key
+
+    fun show(
+      text: Text,
+      key: Int
+    ) {
+      this.text = text
+      this.key = key
+    }
+
+    fun hide() {
+      this.text = null
+    }
+
+    /**
+     * Place the baseline of the text at `y`. If `centered` is true, the text is horizontally
+     * centered on `x`, otherwise it starts at `x`.
+     */
+
+    fun moveTo(
+      x: Float,
+      y: Float,
+      centered: Boolean
+    ) {
+      val text = this.text ?: return
+      this.left = if (centered) x - (text.width / 2.0f) else x - 1.0f
+      this.top = y - text.ascent
+    }
+
+    fun damage(damage: DamageTracker) {
+      val text = this.text
+      if (text == null) {
+        this.region.clear(damage)
+      } else {
+        this.region.report(
+          damage, this.left, this.top, this.left + text.width, this.top + text.height, this.key)
+      }
+    }
+
+    fun draw(list: DisplayList) {
+      val text = this.text ?: return
+      list.sprite(text.sprite, this.left, this.top)
+    }
+  }
+}
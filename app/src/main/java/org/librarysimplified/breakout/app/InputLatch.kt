@@ -0,0 +1,146 @@
+package org.librarysimplified.breakout.app
+
+import android.view.MotionEvent
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * The most recent state of the touch cursor.
+ *
+ * The UI thread writes to the latch on every touch event, merging any historical samples
+ * carried by the event into a single velocity estimate. The game thread samples the latch as
+ * late as possible in each frame. Writes are published with a sequence lock: the single
+ * writer never waits, and readers retry if they observe a write in progress.
+ */
+
+class InputLatch {
+
+  private val version = AtomicInteger(0)
+
+  @Volatile
+  private var down: Boolean = false
+  @Volatile
+  private var x: Float = 0.0f
+  @Volatile
+  private var y: Float = 0.0f
+  @Volatile
+  private var velocityX: Float = 0.0f
+  @Volatile
+  private var velocityY: Float = 0.0f
+  @Volatile
+  private var timeMs: Long = 0L
+
+  /**
+   * A copy of the latch state, owned by the reader.
+   */
+
+  class Sample {
+    var version: Int = 0
+    var down: Boolean = false
+    var x: Float = 0.0f
+    var y: Float = 0.0f
+    var velocityX: Float = 0.0f
+    var velocityY: Float = 0.0f
+    var timeMs: Long = 0L
+  }
+
+  /**
+   * A number that changes whenever the latch is written.
+   */
+
+  val writes: Int
+    get() = this.version.get()
+
+  /**
+   * Update the latch from a touch event. Must only be called from the UI thread.
+   */
+
+  fun write(event: MotionEvent) {
+    when (event.actionMasked) {
+      MotionEvent.ACTION_DOWN -> {
+        this.begin()
+        this.down = true
+        this.x = event.x
+        this.y = event.y
+        this.velocityX = 0.0f
+        this.velocityY = 0.0f
+        this.timeMs = event.eventTime
+        this.end()
+      }
+
+      MotionEvent.ACTION_MOVE -> {
+        val history = event.historySize
+        val firstX: Float
+        val firstY: Float
+        val firstTime: Long
+        if (history > 0) {
+          firstX = event.getHistoricalX(0)
+          firstY = event.getHistoricalY(0)
+          firstTime = event.getHistoricalEventTime(0)
+        } else {
+          firstX = this.x
+          firstY = this.y
+          firstTime = this.timeMs
+        }
+
+        val elapsed = event.eventTime - firstTime
+        this.begin()
+        if (elapsed > 0L) {
+          val newVelocityX = (event.x - firstX) / elapsed
+          val newVelocityY = (event.y - firstY) / elapsed
+          this.velocityX = (this.velocityX + newVelocityX) * 0.5f
+          this.velocityY = (this.velocityY + newVelocityY) * 0.5f
+        }
+        this.down = true
+        this.x = event.x
+        this.y = event.y
+        this.timeMs = event.eventTime
+        this.end()
+      }
+
+      MotionEvent.ACTION_UP,
+      MotionEvent.ACTION_CANCEL -> {
+        this.begin()
+        this.down = false
+        this.x = event.x
+        this.y = event.y
+        this.velocityX = 0.0f
+        this.velocityY = 0.0f
+        this.timeMs = event.eventTime
+        this.end()
+      }
+    }
+  }
+
+  private fun begin() {
+    this.version.set(this.version.get() + 1)
+  }
+
+  private fun end() {
+    this.version.set(this.version.get() + 1)
+  }
+
+  /**
+   * Copy the current latch state into `into`. May be called from any thread.
+   */
+
+  fun sample(into: Sample) {
+    while (true) {
+      val versionBefore = this.version.get()
+      if (versionBefore and 1 == 1) {
+        continue
+      }
+
+      into.down = this.down
+      into.x = this.x
+      into.y = this.y
+      into.velocityX = this.velocityX
+      into.velocityY = this.velocityY
+      into.timeMs = this.timeMs
+
+      if (this.version.get() == versionBefore) {
+        into.version = versionBefore
+        return
+      }
+    }
+  }
+}
@@ -0,0 +1,81 @@
+package org.librarysimplified.breakout.app
+
+/**
+ * A fixed-size histogram of durations in nanoseconds.
+ *
+ * Buckets are log-linear: each power of two is split into eight buckets, so any recorded
+ * value is reported to within about 12%, from single nanoseconds up to several seconds,
+ * using a single preallocated array. Recording is a few arithmetic operations and never
+ * allocates. Instances are not thread-safe.
+ */
+
+class LatencyHistogram {
+
+  internal companion object {
+    private const val SUB_BITS = 3
+    private const val SUB_COUNT = 1 shl SUB_BITS
+    const val BUCKETS = (35 - SUB_BITS) * SUB_COUNT
+
+    fun bucketOf(nanos: Long): Int {
+      if (nanos < SUB_COUNT) {
+        return Math.max(0, nanos.toInt())
+      }
+      val shift = (63 - java.lang.Long.numberOfLeadingZeros(nanos)) - SUB_BITS
+      val index = ((shift + 1) shl SUB_BITS) + ((nanos ushr shift).toInt() and (SUB_COUNT - 1))
+      return Math.min(BUCKETS - 1, index)
+    }
+
+    fun upperBoundOf(bucket: Int): Long {
+      val block = bucket ushr SUB_BITS
+      val sub = (bucket and (SUB_COUNT - 1)).toLong()
+      if (block == 0) {
+        return sub
+      }
+      val shift = block - 1
+      return ((SUB_COUNT + sub) shl shift) + (1L shl shift) - 1L
+    }
+  }
+
+  private val buckets = LongArray(BUCKETS)
+
+  var count: Long = 0L
+    private set
+
+  var maxNanos: Long = 0L
+    private set
+
+  fun record(nanos: Long) {
+    this.buckets[bucketOf(nanos)] += 1L
+    this.count += 1L
+    if (nanos > this.maxNanos) {
+      this.maxNanos = nanos
+    }
+  }
+
+  /**
+   * @return The smallest value that at least `fraction` of the recorded values do not
+   * exceed, rounded up to the bound of its bucket, or `0` if nothing has been recorded
+   */
+
+  fun percentileNanos(fraction: Double): Long {
+    if (this.count == 0L) {
+      return 0L
+    }
+
+    val rank = Math.max(1L, Math.ceil(this.count * fraction).toLong())
+    var seen = 0L
+    for (bucket in 0 until BUCKETS) {
+      seen += this.buckets[bucket]
+      if (seen >= rank) {
+        return Math.min(upperBoundOf(bucket), this.maxNanos)
+      }
+    }
+    return this.maxNanos
+  }
+
+  fun reset() {
+    this.buckets.fill(0L)
+    this.count = 0L
+    this.maxNanos = 0L
+  }
+}
@@ -0,0 +1,34 @@
+package org.librarysimplified.breakout.app
+
+/**
+ * A decoded level: a grid of blocks, and where the paddle and ball start.
+ *
+ * Cells are stored row by row, one byte each: the low four bits hold the block type, where
+ * type `0` means that the cell is empty, and the high four bits hold the number of hits
+ * the block takes to break.
+ */
+
+class Level(
+  val columns: Int,
+  val rows: Int,
+  private val cells: ByteArray,
+  val paddleX: Float,
+  val ballX: Float,
+  val ballHeight: Int) {
+
+  init {
+    require(this.cells.size == this.columns * this.rows) { "Cell count must match grid size" }
+  }
+
+  fun type(
+    column: Int,
+    row: Int
+  ): Int =
+    this.cells[(row * this.columns) + column].toInt() and 0x0f
+
+  fun hitPoints(
+    column: Int,
+    row: Int
+  ): Int =
+    (this.cells[(row * this.columns) + column].toInt() ushr 4) and 0x0f
+}
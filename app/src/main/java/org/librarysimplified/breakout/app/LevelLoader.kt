@@ -0,0 +1,308 @@
+package org.librarysimplified.breakout.app
+
+import android.content.Context
+import android.graphics.Bitmap
+import android.graphics.PointF
+import android.util.Size
+import org.slf4j.LoggerFactory
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.Executor
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicReferenceArray
+
+/**
+ * Loads the assets for, and constructs, a level on a pool of worker threads.
+ *
+ * Sounds are loaded alongside the level and its sprite atlas. If the atlas is not cached,
+ * each sprite is decoded and scaled as a separate task, and the last task to finish packs
+ * the atlas and builds the level. No task ever waits for another, so the loader cannot
+ * deadlock however small the pool is, and never holds a worker while waiting: the game
+ * thread finds out that the sounds are ready by calling [poll].
+ */
+
+class LevelLoader(
+  private val context: Context,
+  private val workers: Executor,
+  private val sounds: SoundsType,
+  private val levels: LevelPack,
+  private val levelIndex: Int,
+  private val publishEvent: (BreakoutEvent) -> Unit,
+  private val input: InputLatch,
+  private val random: GameRandom,
+  private val screenSize: Size) {
+
+  companion object {
+    private const val SPRITE_COUNT = 2
+
+    /**
+     * @return The specifications of the sprites for blocks and balls of the given sizes
+     */
+
+    fun atlasSpecs(
+      blockSize: Int,
+      ballSize: Int
+    ): List<SpriteAtlas.Spec> =
+      listOf(
+        SpriteAtlas.Spec(R.drawable.pudding, blockSize, blockSize),
+        SpriteAtlas.Spec(R.drawable.bauble, ballSize, ballSize))
+
+    fun atlasName(
+      blockSize: Int,
+      ballSize: Int
+    ): String =
+      "sprites-$blockSize-$ballSize"
+  }
+
+  private val logger = LoggerFactory.getLogger(LevelLoader::class.java)
+
+  private val ballSize = this.screenSize.width / 16
+  private val atlasCache = SpriteAtlasCache(this.context)
+
+  private val steps = AtomicInteger(0)
+
+  @Volatile
+  private var cancelled = false
+
+  @Volatile
+  private var soundsLoadStarted = false
+
+  /*
+   * Only read and written by the game thread, in [poll].
+   */
+
+  private var soundsWaitedMs = 0.0
+  private var soundsChecked = false
+
+  @Volatile
+  var failure: Throwable? = null
+    private set
+
+  /*
+   * Written before the final step is counted, and so visible to any thread that observes
+   * `isDone`.
+   */
+
+  private var result: PlayField? = null
+
+  /**
+   * The number of steps: sounds, one per sprite, packing the atlas, and building the level.
+   */
+
+  val stepsTotal: Int =
+    1 + SPRITE_COUNT + 2
+
+  val stepsDone: Int
+    get() = this.steps.get()
+
+  val isDone: Boolean
+    get() = this.steps.get() == this.stepsTotal
+
+  /**
+   * `true` once the play field has been taken with [playField]. Only read and written by
+   * the game thread.
+   */
+
+  var isConsumed: Boolean = false
+    private set
+
+  /**
+   * Take the constructed play field. A play field is played, and so changed, by whoever
+   * takes it, so it may only be taken once.
+   *
+   * @return The constructed play field
+   * @throws IllegalStateException If loading has not completed, or the play field has
+   * already been taken
+   */
+
+  fun playField(): PlayField {
+    check(this.isDone) { "Loading has not completed" }
+    check(!this.isConsumed) { "The play field has already been taken" }
+    this.isConsumed = true
+    return this.result!!
+  }
+
+  fun start() {
+    this.workers.execute(this.task { this.loadSounds() })
+    this.workers.execute(this.task { this.loadAtlas() })
+  }
+
+  /**
+   * Abandon loading. Tasks that have not yet started do nothing.
+   */
+
+  fun cancel() {
+    this.cancelled = true
+  }
+
+  private fun task(body: () -> Unit): Runnable {
+    return Runnable {
+      if (!this.cancelled && this.failure == null) {
+        try {
+          body.invoke()
+        } catch (e: Throwable) {
+          this.failure = e
+        }
+      }
+    }
+  }
+
+  /**
+   * Start loading the sounds. Whether they loaded is checked by [poll].
+   */
+
+  private fun loadSounds() {
+    this.sounds.load()
+    this.soundsLoadStarted = true
+  }
+
+  /**
+   * Check, without blocking, whether the sounds have finished loading, and count the sound
+   * step as done if they have. A sound that is still loading after five seconds of calls to
+   * this method, or that failed to load, is not an error: it is merely silent. A failed load
+   * is retried the next time a level is loaded. Must be called by the game thread, once per
+   * logic step, while loading (see [LevelSequencer.poll]).
+   */
+
+  fun poll(deltaMs: Double) {
+    if (this.soundsChecked || !this.soundsLoadStarted) {
+      return
+    }
+
+    val readiness = this.sounds.readiness()
+    if (readiness.isDone) {
+      try {
+        readiness.get()
+      } catch (e: ExecutionException) {
+        this.logger.warn("sounds failed to load; continuing without them: ", e.cause)
+      }
+    } else {
+      this.soundsWaitedMs += deltaMs
+      if (this.soundsWaitedMs < 5_000.0) {
+        return
+      }
+      this.logger.warn("sounds are still loading; continuing without them")
+    }
+
+    this.soundsChecked = true
+    this.steps.incrementAndGet()
+  }
+
+  /**
+   * Decode the level, and then load or build a sprite atlas with the blocks scaled so
+   * that the level's columns fit the width of the screen.
+   */
+
+  private fun loadAtlas() {
+    val level = this.levels.level(this.levelIndex)
+    val blockSize = this.screenSize.width / (level.columns + 1)
+    val specs = atlasSpecs(blockSize, this.ballSize)
+    val name = atlasName(blockSize, this.ballSize)
+
+    val cached = this.atlasCache.read(name, specs)
+    if (cached != null) {
+      this.steps.addAndGet(SPRITE_COUNT + 1)
+      this.buildLevel(level, blockSize, cached)
+      return
+    }
+
+    val images = AtomicReferenceArray<Bitmap>(specs.size)
+    val remaining = AtomicInteger(specs.size)
+    for (index in specs.indices) {
+      this.workers.execute(this.task {
+        images.set(index, this.atlasCache.decode(specs[index]))
+        this.steps.incrementAndGet()
+        if (remaining.decrementAndGet() == 0) {
+          val imageList = List(specs.size) { image -> images.get(image) }
+          val atlas = this.atlasCache.build(name, specs, imageList)
+          this.steps.incrementAndGet()
+          this.buildLevel(level, blockSize, atlas)
+        }
+      })
+    }
+  }
+
+  private fun buildLevel(
+    level: Level,
+    blockSize: Int,
+    atlas: SpriteAtlas
+  ) {
+    val ballSize = this.ballSize
+    val paddleWidth = ballSize * 2
+    val paddleHeight = ballSize / 2.0f
+    val pudding = atlas.sprites[0]
+    val bauble = atlas.sprites[1]
+
+    val paddleCenter =
+      PointF(
+        this.screenSize.width * level.paddleX,
+        (this.screenSize.height - paddleHeight * 4.0f))
+    val paddle =
+      Paddle(
+        center = paddleCenter,
+        radius = paddleWidth.toFloat(),
+        height = paddleHeight
+      )
+
+    val blocks = mutableListOf<Block>()
+    for (y in 0 until level.rows) {
+      for (x in 0 until level.columns) {
+        val type = level.type(x, y)
+        if (type == 0) {
+          continue
+        }
+
+        val blockY = blockSize + (y * blockSize)
+        val blockX = blockSize + (x * blockSize)
+
+        val blockCircle = CircleF(
+          center = PointF(blockX.toFloat(), blockY.toFloat()),
+          radius = blockSize / 2.0f
+        )
+
+        val block =
+          Block(
+            index = blocks.size,
+            circle = blockCircle,
+            sprite = pudding,
+            type = type,
+            hitPoints = Math.max(1, level.hitPoints(x, y)),
+            alive = true
+          )
+        blocks.add(block)
+      }
+    }
+
+    val ballDirection = PointF(this.random.nextFloat(), -1.0f)
+    Vectors.normalize(ballDirection)
+    val ballDefaultDirection = PointF(ballDirection.x, ballDirection.y)
+
+    val ballCircle = CircleF(
+      center = PointF(
+        this.screenSize.width * level.ballX,
+        paddle.rectangle.min.y - (ballSize * Math.max(1, level.ballHeight))),
+      radius = ballSize / 2.0f
+    )
+
+    val speedDefault = 1.0f
+    val ball =
+      Ball(
+        isAlive = true,
+        circle = ballCircle,
+        sprite = bauble,
+        defaultDirection = ballDefaultDirection,
+        direction = ballDirection,
+        speedDefault = speedDefault,
+        speed = speedDefault)
+
+    this.result = PlayField(
+      publishEvent = this.publishEvent,
+      input = this.input,
+      random = this.random.split(),
+      screenSize = this.screenSize,
+      grid = BlockGrid.create(blocks.toList(), blockSize.toFloat()),
+      ball = ball,
+      paddle = paddle
+    )
+    this.steps.incrementAndGet()
+  }
+}
@@ -0,0 +1,163 @@
+package org.librarysimplified.breakout.app
+
+import android.content.Context
+import org.slf4j.LoggerFactory
+import java.io.FileInputStream
+import java.io.FileNotFoundException
+import java.io.IOException
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
+
+/**
+ * A pack of levels stored in a single asset.
+ *
+ * The pack is a header, an index, and then the levels. All values are big-endian.
+ *
+ * ```
+ * header: magic:i32 = 0x42524b4c ("BRKL"), version:i32 = 1, count:i32
+ * index:  count × (offset:i32, length:i32), offsets relative to the start of the pack
+ * level:  columns:u8, rows:u8, paddleX:u16, ballX:u16, ballHeight:u8, cells:u8[columns × rows]
+ * ```
+ *
+ * `paddleX` and `ballX` are fractions of the screen width scaled to `0..65535`, and
+ * `ballHeight` is the distance of the ball above the paddle in ball diameters. Cells are
+ * as described in [Level].
+ *
+ * The pack is not edited by hand: it is compiled from the text sources in `src/main/levels`
+ * by the `levelPack` build task (see `buildSrc`).
+ *
+ * The asset is memory-mapped (it must be stored uncompressed in the APK for this to be
+ * possible; otherwise it is read into memory once), and levels are decoded straight from
+ * the mapped buffer when first requested. The most recently used levels are kept decoded.
+ * All methods are thread-safe.
+ */
+
+class LevelPack(
+  private val context: Context,
+  private val assetName: String,
+  private val cacheSize: Int = 4) {
+
+  private val logger = LoggerFactory.getLogger(LevelPack::class.java)
+
+  companion object {
+    const val MAGIC = 0x42524b4c
+    const val VERSION = 1
+
+    private const val HEADER_SIZE = 4 * 3
+    private const val INDEX_ENTRY_SIZE = 4 * 2
+    private const val LEVEL_HEADER_SIZE = 1 + 1 + 2 + 2 + 1
+  }
+
+  private var buffer: ByteBuffer? = null
+
+  private val cache =
+    object : LinkedHashMap<Int, Level>(16, 0.75f, true) {
+      override fun removeEldestEntry(eldest: MutableMap.MutableEntry<Int, Level>?): Boolean {
+        return this.size > this@LevelPack.cacheSize
+      }
+    }
+
+  /**
+   * The number of levels in the pack.
+   *
+   * @throws IOException If the pack cannot be opened or is malformed
+   */
+
+  val size: Int
+    @Synchronized get() = this.buffer().getInt(8)
+
+  /**
+   * @return The level at `index`
+   * @throws IOException If the pack cannot be opened or the level is malformed
+   * @throws IndexOutOfBoundsException If there is no such level
+   */
+
+  @Synchronized
+  fun level(index: Int): Level {
+    val existing = this.cache[index]
+    if (existing != null) {
+      return existing
+    }
+
+    val level = decode(this.buffer(), index)
+    this.cache[index] = level
+    return level
+  }
+
+  private fun buffer(): ByteBuffer {
+    val existing = this.buffer
+    if (existing != null) {
+      return existing
+    }
+
+    val mapped = this.open()
+    if (mapped.limit() < HEADER_SIZE) {
+      throw IOException("Level pack $assetName is truncated")
+    }
+    if (mapped.getInt(0) != MAGIC || mapped.getInt(4) != VERSION) {
+      throw IOException("Level pack $assetName has an unsupported format")
+    }
+    val count = mapped.getInt(8)
+    if (count < 0 || mapped.limit() < HEADER_SIZE + (count * INDEX_ENTRY_SIZE)) {
+      throw IOException("Level pack $assetName has a truncated index")
+    }
+
+    this.buffer = mapped
+    return mapped
+  }
+
+  private fun open(): ByteBuffer {
+    val assets = this.context.assets
+    return try {
+      assets.openFd(this.assetName).use { descriptor ->
+        FileInputStream(descriptor.fileDescriptor).use { stream ->
+          stream.channel.map(
+            FileChannel.MapMode.READ_ONLY, descriptor.startOffset, descriptor.length)
+        }
+      }
+    } catch (e: FileNotFoundException) {
+      this.logger.warn("level pack {} is compressed; reading it into memory", this.assetName)
+      val bytes = assets.open(this.assetName).use { stream -> stream.readBytes() }
+      ByteBuffer.wrap(bytes)
+    }
+  }
+
+  private fun decode(
+    buffer: ByteBuffer,
+    index: Int
+  ): Level {
+    val count = buffer.getInt(8)
+    if (index < 0 || index >= count) {
+      throw IndexOutOfBoundsException("Level $index is not in 0 until $count")
+    }
+
+    val entry = HEADER_SIZE + (index * INDEX_ENTRY_SIZE)
+    val offset = buffer.getInt(entry)
+    val length = buffer.getInt(entry + 4)
+    if (offset < 0 || length < LEVEL_HEADER_SIZE || offset > buffer.limit() - length) {
+      throw IOException("Level $index has an invalid index entry")
+    }
+
+    val columns = buffer.get(offset).toInt() and 0xff
+    val rows = buffer.get(offset + 1).toInt() and 0xff
+    val paddleX = buffer.getShort(offset + 2).toInt() and 0xffff
+    val ballX = buffer.getShort(offset + 4).toInt() and 0xffff
+    val ballHeight = buffer.get(offset + 6).toInt() and 0xff
+    if (length != LEVEL_HEADER_SIZE + (columns * rows)) {
+      throw IOException("Level $index has $length bytes, which does not match its grid")
+    }
+
+    val cells = ByteArray(columns * rows)
+    val view = buffer.duplicate()
+    view.position(offset + LEVEL_HEADER_SIZE)
+    view.get(cells)
+
+    return Level(
+      columns = columns,
+      rows = rows,
+      cells = cells,
+      paddleX = paddleX / 65535.0f,
+      ballX = ballX / 65535.0f,
+      ballHeight = ballHeight)
+  }
+}
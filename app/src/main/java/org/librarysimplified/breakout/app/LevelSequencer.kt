@@ -0,0 +1,116 @@
+package org.librarysimplified.breakout.app
+
+import android.content.Context
+import android.util.Size
+import java.util.concurrent.Executor
+import java.util.concurrent.Future
+import java.util.concurrent.FutureTask
+
+/**
+ * Decides which level follows which, and builds levels ahead of time.
+ *
+ * The sequencer holds at most one [LevelLoader]. While a level is being played, the next
+ * level is prefetched on the (background priority) worker pool, so that by the time the
+ * current level is won, the next one is usually ready to be handed straight to the game
+ * loop. Must only be used from the game thread.
+ */
+
+class LevelSequencer(
+  private val context: Context,
+  private val workers: Executor,
+  private val sounds: SoundsType,
+  private val levels: LevelPack,
+  private val publishEvent: (BreakoutEvent) -> Unit,
+  val input: InputLatch,
+  private val random: GameRandom) {
+
+  private val atlasCache = SpriteAtlasCache(this.context)
+  private var loader: LevelLoader? = null
+  private var loaderIndex = -1
+
+  /**
+   * @return The index of the level that follows `levelIndex`, wrapping around to the first
+   * level after the last
+   */
+
+  fun next(levelIndex: Int): Int =
+    (levelIndex + 1) % this.levels.size
+
+  /**
+   * Start building the given level in the background, unless it is already being built.
+   */
+
+  fun prefetch(
+    levelIndex: Int,
+    screenSize: Size
+  ) {
+    this.loader(levelIndex, screenSize)
+  }
+
+  /**
+   * Let the current loader, if any, check whether the sounds it loads are ready. Must be
+   * called once per logic step by whichever state is waiting for, or prefetching, a level.
+   */
+
+  fun poll(deltaMs: Double) {
+    this.loader?.poll(deltaMs)
+  }
+
+  /**
+   * @return A loader for the given level, which may have been started (or even finished)
+   * by an earlier call to [prefetch]. A loader whose play field has been taken is never
+   * returned, so a level that follows itself is built afresh. A loader started earlier may
+   * have been started for a different screen size, in which case the play field it
+   * produces must be laid out again with [PlayField.relayout].
+   */
+
+  fun loader(
+    levelIndex: Int,
+    screenSize: Size
+  ): LevelLoader {
+    val existing = this.loader
+    if (existing != null
+      && existing.failure == null
+      && !existing.isConsumed
+      && this.loaderIndex == levelIndex) {
+      return existing
+    }
+
+    existing?.cancel()
+    val created =
+      LevelLoader(
+        context = this.context,
+        workers = this.workers,
+        sounds = this.sounds,
+        levels = this.levels,
+        levelIndex = levelIndex,
+        publishEvent = this.publishEvent,
+        input = this.input,
+        random = this.random.split(),
+        screenSize = screenSize)
+
+    this.loader = created
+    this.loaderIndex = levelIndex
+    created.start()
+    return created
+  }
+
+  /**
+   * Rasterize the block and ball sprites at new sizes in the background, for a play field
+   * that has been laid out again.
+   */
+
+  fun rasterize(
+    blockSize: Int,
+    ballSize: Int
+  ): Future<SpriteAtlas> {
+    val task = FutureTask {
+      val specs = LevelLoader.atlasSpecs(blockSize, ballSize)
+      val name = LevelLoader.atlasName(blockSize, ballSize)
+      this.atlasCache.read(name, specs)
+        ?: this.atlasCache.build(name, specs, specs.map(this.atlasCache::decode))
+    }
+    this.workers.execute(task)
+    return task
+  }
+}
@@ -0,0 +1,45 @@
+package org.librarysimplified.breakout.app
+
+/**
+ * The game's metrics.
+ *
+ * Durations are recorded in nanoseconds. Gauges hold whatever was most recently reported,
+ * by whichever thread owns the thing being measured.
+ */
+
+object Metrics {
+
+  @JvmField
+  val registry = MetricsRegistry()
+
+  @JvmField
+  val blocksBroken = this.registry.counter("blocks.broken")
+
+  @JvmField
+  val paddleBounces = this.registry.counter("bounces.paddle")
+
+  @JvmField
+  val wallBounces = this.registry.counter("bounces.wall")
+
+  @JvmField
+  val eventsDropped = this.registry.counter("events.dropped")
+
+  @JvmField
+  val eventsPerFrame = this.registry.histogram("events.per.frame")
+
+  @JvmField
+  val frameTime = this.registry.histogram("frame.time")
+
+  @JvmField
+  val particles = this.registry.gauge("particles")
+
+  @JvmField
+  val soundVoices = this.registry.gauge("sound.voices")
+
+  /**
+   * The fastest the ball has travelled in the current level.
+   */
+
+  @JvmField
+  val ballSpeedMax = this.registry.gauge("ball.speed.max")
+}
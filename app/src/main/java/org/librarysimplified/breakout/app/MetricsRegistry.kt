@@ -0,0 +1,161 @@
+package org.librarysimplified.breakout.app
+
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.atomic.AtomicLongArray
+
+/**
+ * A registry of named counters, gauges, and histograms.
+ *
+ * Metrics are registered up front and then updated from any thread without locks or
+ * allocation. Counters are striped across padded cells so that threads updating the same
+ * counter do not contend on a single cache line. The registry itself only hands out
+ * metrics and lists them for [MetricsWriter]; it keeps no history.
+ */
+
+class MetricsRegistry {
+
+  private companion object {
+    const val STRIPES = 4
+    const val STRIPE_PAD = 8
+  }
+
+  /**
+   * A monotonically increasing count.
+   */
+
+  class Counter internal constructor(val name: String) {
+
+    private val cells = AtomicLongArray(STRIPES * STRIPE_PAD)
+
+    fun increment() {
+      this.add(1L)
+    }
+
+    fun add(amount: Long) {
+      val stripe = (Thread.currentThread().id.toInt() and (STRIPES - 1)) * STRIPE_PAD
+      this.cells.getAndAdd(stripe, amount)
+    }
+
+    /**
+     * The current count. Concurrent updates may or may not be included.
+     */
+
+    val value: Long
+      get() {
+        var sum = 0L
+        for (stripe in 0 until STRIPES) {
+          sum += this.cells.get(stripe * STRIPE_PAD)
+        }
+        return sum
+      }
+  }
+
+  /**
+   * A single value that may go up and down.
+   */
+
+  class Gauge internal constructor(val name: String) {
+
+    private val bits = AtomicLong(java.lang.Double.doubleToRawLongBits(0.0))
+
+    fun set(value: Double) {
+      this.bits.lazySet(java.lang.Double.doubleToRawLongBits(value))
+    }
+
+    /**
+     * Raise the gauge to `value` if it is currently lower.
+     */
+
+    fun updateMax(value: Double) {
+      while (true) {
+        val current = this.bits.get()
+        if (java.lang.Double.longBitsToDouble(current) >= value) {
+          return
+        }
+        if (this.bits.compareAndSet(current, java.lang.Double.doubleToRawLongBits(value))) {
+          return
+        }
+      }
+    }
+
+    val value: Double
+      get() = java.lang.Double.longBitsToDouble(this.bits.get())
+  }
+
+  /**
+   * A distribution of non-negative values, bucketed in the same way as [LatencyHistogram].
+   */
+
+  class Histogram internal constructor(val name: String) {
+
+    private val buckets = AtomicLongArray(LatencyHistogram.BUCKETS)
+    private val max = AtomicLong(0L)
+
+    fun record(value: Long) {
+      this.buckets.getAndIncrement(LatencyHistogram.bucketOf(value))
+      while (true) {
+        val current = this.max.get()
+        if (value <= current || this.max.compareAndSet(current, value)) {
+          return
+        }
+      }
+    }
+
+    /**
+     * Copy the current bucket counts into `counts`.
+     */
+
+    fun copyBuckets(counts: LongArray) {
+      for (bucket in 0 until LatencyHistogram.BUCKETS) {
+        counts[bucket] = this.buckets.get(bucket)
+      }
+    }
+
+    /**
+     * @return The largest value recorded since the previous call, which starts a new window
+     */
+
+    fun takeWindowMax(): Long =
+      this.max.getAndSet(0L)
+  }
+
+  private val countersMutable = mutableListOf<Counter>()
+  private val gaugesMutable = mutableListOf<Gauge>()
+  private val histogramsMutable = mutableListOf<Histogram>()
+
+  @Volatile
+  var counters: List<Counter> = listOf()
+    private set
+
+  @Volatile
+  var gauges: List<Gauge> = listOf()
+    private set
+
+  @Volatile
+  var histograms: List<Histogram> = listOf()
+    private set
+
+  @Synchronized
+  fun counter(name: String): Counter {
+    val counter = Counter(name)
+    this.countersMutable.add(counter)
+    this.counters = this.countersMutable.toList()
+    return counter
+  }
+
+  @Synchronized
+  fun gauge(name: String): Gauge {
+    val gauge = Gauge(name)
+    this.gaugesMutable.add(gauge)
+    this.gauges = this.gaugesMutable.toList()
+    return gauge
+  }
+
+  @Synchronized
+  fun histogram(name: String): Histogram {
+    val histogram = Histogram(name)
+    this.histogramsMutable.add(histogram)
+    this.histograms = this.histogramsMutable.toList()
+    return histogram
+  }
+}
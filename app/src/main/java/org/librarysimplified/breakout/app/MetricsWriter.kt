@@ -0,0 +1,256 @@
+package org.librarysimplified.breakout.app
+
+import android.os.Process
+import org.slf4j.LoggerFactory
+import java.io.File
+import java.io.FileOutputStream
+import java.io.IOException
+import java.io.OutputStreamWriter
+import java.io.Writer
+import java.util.concurrent.Executors
+import java.util.concurrent.ScheduledExecutorService
+import java.util.concurrent.TimeUnit
+
+/**
+ * Periodically appends a snapshot of a [MetricsRegistry] to a file as a line of JSON.
+ *
+ * Each line holds the time, the value of every counter along with its rate per second
+ * since the previous line, the value of every gauge, and percentiles of the values recorded
+ * in every histogram since the previous line. Snapshots are taken and written on a single
+ * background thread, so the threads updating metrics never wait on storage. A snapshot in
+ * which nothing has changed since the previous line is not written. The file is rotated to a
+ * single `.1` backup once it exceeds `maxBytes`, so at most twice that is kept.
+ *
+ * Calls to [start] and [stop] nest, so that overlapping owners (such as an activity being
+ * recreated) can each start the writer while visible and stop it when hidden.
+ */
+
+class MetricsWriter(
+  private val registry: MetricsRegistry,
+  private val file: File,
+  private val periodMillis: Long = 10_000L,
+  private val maxBytes: Long = 256L * 1024L) {
+
+  private val logger = LoggerFactory.getLogger(MetricsWriter::class.java)
+
+  private val text = StringBuilder(1024)
+  private val buckets = LongArray(LatencyHistogram.BUCKETS)
+  private val bucketsPrevious = HashMap<String, LongArray>()
+  private val countersPrevious = HashMap<String, Long>()
+  private val gaugesPrevious = HashMap<String, Double>()
+  private val writeLock = Any()
+  private var changed = false
+  private var starts = 0
+  private var timePrevious = 0L
+  private var writer: Writer? = null
+  private var executor: ScheduledExecutorService? = null
+
+  @Synchronized
+  fun start() {
+    this.starts += 1
+    if (this.executor != null) {
+      return
+    }
+
+    val executor = Executors.newSingleThreadScheduledExecutor { runnable ->
+      val thread = Thread {
+        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND)
+        runnable.run()
+      }
+      thread.name = "org.librarysimplified.breakout.metrics[${thread.id}]"
+      thread.isDaemon = true
+      thread
+    }
+    executor.scheduleAtFixedRate(
+      { this.writeSnapshot() }, this.periodMillis, this.periodMillis, TimeUnit.MILLISECONDS)
+    this.executor = executor
+  }
+
+  /**
+   * Stop writing snapshots once every [start] has been matched by a call to this method. A
+   * final snapshot is written before the file is closed.
+   */
+
+  @Synchronized
+  fun stop() {
+    if (this.starts == 0) {
+      return
+    }
+    this.starts -= 1
+    if (this.starts > 0) {
+      return
+    }
+    val executor = this.executor ?: return
+    this.executor = null
+    executor.execute {
+      this.writeSnapshot()
+      synchronized(this.writeLock) {
+        this.close()
+      }
+    }
+    executor.shutdown()
+  }
+
+  /*
+   * The final snapshot of a stopped executor may still be running when the writer is
+   * started again on a new one. A separate lock keeps [start] and [stop] from waiting on it.
+   */
+
+  private fun writeSnapshot() {
+    synchronized(this.writeLock) {
+      try {
+        this.format(System.currentTimeMillis())
+        if (!this.changed) {
+          return
+        }
+        val writer = this.open()
+        writer.append(this.text)
+        writer.flush()
+      } catch (e: IOException) {
+        this.logger.warn("could not write metrics: ", e)
+        this.close()
+      }
+    }
+  }
+
+  private fun open(): Writer {
+    val existing = this.writer
+    if (existing != null && this.file.length() < this.maxBytes) {
+      return existing
+    }
+
+    this.close()
+    this.file.parentFile?.mkdirs()
+    if (this.file.length() >= this.maxBytes) {
+      val backup = File(this.file.path + ".1")
+      backup.delete()
+      this.file.renameTo(backup)
+    }
+
+    val writer = OutputStreamWriter(FileOutputStream(this.file, true), Charsets.UTF_8).buffered()
+    this.writer = writer
+    return writer
+  }
+
+  private fun close() {
+    try {
+      this.writer?.close()
+    } catch (e: IOException) {
+      this.logger.warn("could not close metrics: ", e)
+    }
+    this.writer = null
+  }
+
+  private fun format(now: Long) {
+    val text = this.text
+    text.setLength(0)
+    text.append("{\"time\":").append(now)
+    this.changed = false
+
+    val seconds = (now - this.timePrevious) / 1000.0
+    text.append(",\"counters\":{")
+    val counters = this.registry.counters
+    for (index in counters.indices) {
+      val counter = counters[index]
+      val value = counter.value
+      val rate =
+        if (this.timePrevious == 0L || seconds <= 0.0) {
+          0.0
+        } else {
+          (value - (this.countersPrevious[counter.name] ?: 0L)) / seconds
+        }
+      if (this.countersPrevious.put(counter.name, value) != value) {
+        this.changed = true
+      }
+      if (index > 0) {
+        text.append(',')
+      }
+      text.append('"').append(counter.name).append("\":{\"value\":").append(value)
+      text.append(",\"rate\":").append(Math.round(rate * 100.0) / 100.0).append('}')
+    }
+
+    text.append("},\"gauges\":{")
+    val gauges = this.registry.gauges
+    for (index in gauges.indices) {
+      val gauge = gauges[index]
+      val value = gauge.value
+      if (this.gaugesPrevious.put(gauge.name, value) != value) {
+        this.changed = true
+      }
+      if (index > 0) {
+        text.append(',')
+      }
+      text.append('"').append(gauge.name).append("\":").append(value)
+    }
+
+    text.append("},\"histograms\":{")
+    val histograms = this.registry.histograms
+    for (index in histograms.indices) {
+      val histogram = histograms[index]
+      if (index > 0) {
+        text.append(',')
+      }
+      text.append('"').append(histogram.name).append("\":")
+      this.formatHistogram(histogram)
+    }
+    text.append("}}\n")
+    this.timePrevious = now
+  }
+
+  /**
+   * Format the values recorded in `histogram` since the previous snapshot.
+   */
+
+  private fun formatHistogram(histogram: MetricsRegistry.Histogram) {
+    val current = this.buckets
+    val previous =
+      this.bucketsPrevious.getOrPut(histogram.name) { LongArray(LatencyHistogram.BUCKETS) }
+
+    val max = histogram.takeWindowMax()
+    histogram.copyBuckets(current)
+    var count = 0L
+    for (bucket in current.indices) {
+      val delta = current[bucket] - previous[bucket]
+      previous[bucket] = current[bucket]
+      current[bucket] = delta
+      count += delta
+    }
+    if (count > 0L) {
+      this.changed = true
+    }
+
+    this.text.append("{\"count\":").append(count)
+    this.text.append(",\"p50\":").append(percentile(current, count, 0.5, max))
+    this.text.append(",\"p90\":").append(percentile(current, count, 0.9, max))
+    this.text.append(",\"p99\":").append(percentile(current, count, 0.99, max))
+    this.text.append(",\"max\":").append(percentile(current, count, 1.0, max))
+    this.text.append('}')
+  }
+
+  /*
+   * A value recorded while a snapshot is being taken may be counted in one window's buckets
+   * and the other window's maximum, so the maximum only narrows a result within its bucket.
+   */
+
+  private fun percentile(
+    counts: LongArray,
+    count: Long,
+    fraction: Double,
+    max: Long
+  ): Long {
+    if (count == 0L) {
+      return 0L
+    }
+
+    val rank = Math.max(1L, Math.ceil(count * fraction).toLong())
+    var seen = 0L
+    for (bucket in counts.indices) {
+      seen += counts[bucket]
+      if (seen >= rank) {
+        val lower = if (bucket == 0) 0L else LatencyHistogram.upperBoundOf(bucket - 1) + 1L
+        return Math.max(lower, Math.min(LatencyHistogram.upperBoundOf(bucket), max))
+      }
+    }
+    return max
+  }
+}
@@ -0,0 +1,294 @@
+package org.librarysimplified.breakout.app;
+
+import android.content.Context;
+import android.media.AudioAttributes;
+import android.media.AudioFormat;
+import android.media.AudioManager;
+import android.media.AudioTrack;
+import android.os.Build;
+import android.os.Process;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.Future;
+
+/**
+ * The game's sound effects, decoded once into memory and mixed in software onto a streaming
+ * {@link AudioTrack}.
+ *
+ * The game thread never touches the track: {@link #play(int, double)} places a command on
+ * a lock-free queue, and a dedicated audio thread drains the queue into an
+ * {@link AudioMixer} before mixing each buffer. Compared to {@link Sounds}, this trades a
+ * little memory and a thread for a shorter and more predictable delay between a collision
+ * and its sound, and for more simultaneous voices.
+ */
+
+public final class MixerSounds implements SoundsType {
+
+  private static final Logger LOG = LoggerFactory.getLogger(MixerSounds.class);
+
+  private static final int SOUND_BLOCK_BREAK = 0;
+  private static final int SOUND_TAK = 1;
+  private static final int SOUND_BOUNCE = 2;
+  private static final int SOUND_FAILURE = 3;
+  private static final int SOUND_READY = 4;
+  private static final int SOUND_GO = 5;
+
+  private static final int[] SOUND_RESOURCES = {
+    R.raw.blockbreak,
+    R.raw.tak,
+    R.raw.bounce,
+    R.raw.failure,
+    R.raw.ready,
+    R.raw.go,
+  };
+
+  private static final int VOICES = 8;
+  private static final int BUFFER_FRAMES = 256;
+  private static final float GAIN = 0.5f;
+
+  private final Context context;
+  private final AudioCommandQueue commands;
+
+  private volatile SoundReadiness readiness;
+  private boolean loadStarted;
+  private volatile Thread thread;
+  private AudioTrack track;
+
+  private volatile boolean running;
+  private long dropped;
+
+  MixerSounds(Context context) {
+    this.context = context.getApplicationContext();
+    this.readiness = new SoundReadiness();
+    this.commands = new AudioCommandQueue(64);
+  }
+
+  /**
+   * Decode the sounds and start the audio thread. This may be called again after
+   * {@link #release()}, or after a failed load, with a fresh readiness future.
+   */
+
+  @Override
+  public synchronized void load() {
+    if (this.loadStarted) {
+      return;
+    }
+    this.loadStarted = true;
+    if (this.readiness.isDone()) {
+      this.readiness = new SoundReadiness();
+    }
+
+    try {
+      final AudioSample[] samples = new AudioSample[SOUND_RESOURCES.length];
+      for (int index = 0; index < SOUND_RESOURCES.length; ++index) {
+        samples[index] = AudioDecoder.decode(this.context, SOUND_RESOURCES[index]);
+      }
+
+      final int outputRate = this.outputRate();
+      final AudioMixer mixer = new AudioMixer(samples, outputRate, VOICES, BUFFER_FRAMES);
+      final AudioTrack output = this.createTrack(outputRate);
+      this.track = output;
+      output.play();
+
+      this.running = true;
+      this.thread = new Thread(() -> this.run(mixer, output), "breakout-audio");
+      this.thread.setDaemon(true);
+      this.thread.start();
+      this.readiness.succeed();
+    } catch (Exception e) {
+      if (this.track != null) {
+        this.track.release();
+        this.track = null;
+      }
+      this.running = false;
+      this.loadStarted = false;
+      this.readiness.fail(e);
+    }
+  }
+
+  private int outputRate() {
+    final AudioManager manager =
+      (AudioManager) this.context.getSystemService(Context.AUDIO_SERVICE);
+    final String property =
+      manager == null ? null : manager.getProperty(AudioManager.PROPERTY_OUTPUT_SAMPLE_RATE);
+    if (property != null) {
+      try {
+        return Integer.parseInt(property);
+      } catch (NumberFormatException e) {
+        LOG.warn("unparseable output sample rate: {}", property);
+      }
+    }
+    return 44100;
+  }
+
+  /**
+   * Create a mono 16-bit track at the device's native rate, so that the platform does not
+   * resample it, with a buffer no larger than the platform requires.
+   */
+
+  private AudioTrack createTrack(int outputRate) {
+    final AudioAttributes attributes =
+      new AudioAttributes.Builder()
+        .setUsage(AudioAttributes.USAGE_GAME)
+        .setContentType(AudioAttributes.CONTENT_TYPE_SONIFICATION)
+        .build();
+    final AudioFormat format =
+      new AudioFormat.Builder()
+        .setEncoding(AudioFormat.ENCODING_PCM_16BIT)
+        .setSampleRate(outputRate)
+        .setChannelMask(AudioFormat.CHANNEL_OUT_MONO)
+        .build();
+    final int bufferBytes =
+      Math.max(
+        AudioTrack.getMinBufferSize(
+          outputRate, AudioFormat.CHANNEL_OUT_MONO, AudioFormat.ENCODING_PCM_16BIT),
+        BUFFER_FRAMES * 2);
+
+    if (Build.VERSION.SDK_INT >= 26) {
+      return new AudioTrack.Builder()
+        .setAudioAttributes(attributes)
+        .setAudioFormat(format)
+        .setBufferSizeInBytes(bufferBytes)
+        .setTransferMode(AudioTrack.MODE_STREAM)
+        .setPerformanceMode(AudioTrack.PERFORMANCE_MODE_LOW_LATENCY)
+        .build();
+    }
+
+    return new AudioTrack(
+      attributes,
+      format,
+      bufferBytes,
+      AudioTrack.MODE_STREAM,
+      AudioManager.AUDIO_SESSION_ID_GENERATE);
+  }
+
+  /**
+   * The audio thread. Each iteration starts any queued sounds, mixes one buffer, and then
+   * blocks in {@link AudioTrack#write(short[], int, int)} until the track has room for it.
+   * The thread owns the track once started, and releases it on the way out, so that the
+   * track is never released during a write. A thread that outlives {@link #release()} also
+   * stops once a later {@link #load()} has replaced it.
+   */
+
+  private void run(
+    AudioMixer mixer,
+    AudioTrack output) {
+    Process.setThreadPriority(Process.THREAD_PRIORITY_URGENT_AUDIO);
+
+    final Thread self = Thread.currentThread();
+    try {
+      final short[] buffer = new short[BUFFER_FRAMES];
+      while (this.running && this.thread == self) {
+        mixer.drain(this.commands);
+        mixer.mix(buffer, 0, BUFFER_FRAMES);
+        Metrics.soundVoices.set(mixer.active());
+        int written = 0;
+        while (written < BUFFER_FRAMES && this.running && this.thread == self) {
+          final int result = output.write(buffer, written, BUFFER_FRAMES - written);
+          if (result < 0) {
+            LOG.error("audio track write failed: {}", result);
+            if (this.thread == self) {
+              this.running = false;
+            }
+            return;
+          }
+          written += result;
+        }
+      }
+    } finally {
+      output.release();
+    }
+  }
+
+  @Override
+  public Future<Void> readiness() {
+    return this.readiness;
+  }
+
+  /**
+   * @return The number of sounds dropped because they were played before the sounds had
+   * loaded, or because the command queue was full
+   */
+
+  long dropped() {
+    return this.dropped;
+  }
+
+  @Override
+  public int getBlockBreak() {
+    return SOUND_BLOCK_BREAK;
+  }
+
+  @Override
+  public int getTak() {
+    return SOUND_TAK;
+  }
+
+  @Override
+  public int getBounce() {
+    return SOUND_BOUNCE;
+  }
+
+  @Override
+  public int getFailure() {
+    return SOUND_FAILURE;
+  }
+
+  @Override
+  public int getReady() {
+    return SOUND_READY;
+  }
+
+  @Override
+  public int getGo() {
+    return SOUND_GO;
+  }
+
+  @Override
+  public void playRandomRate(
+    int sound,
+    GameRandom random) {
+    final double rate = (random.nextDouble() * 1.25) + 0.75;
+    play(sound, rate);
+  }
+
+  @Override
+  public void play(
+    int sound,
+    double rate) {
+    if (!this.running || !this.commands.offer(sound, (float) rate, GAIN)) {
+      this.dropped += 1;
+    }
+  }
+
+  @Override
+  public synchronized void release() {
+    this.running = false;
+
+    /*
+     * Pausing and flushing the track makes a write that is blocked waiting for room in the
+     * track return, so that the audio thread sees that it should stop. The audio thread
+     * releases the track itself once it has stopped writing to it.
+     */
+
+    if (this.track != null) {
+      this.track.pause();
+      this.track.flush();
+      this.track = null;
+    }
+    if (this.thread != null) {
+      try {
+        this.thread.join(1000L);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      if (this.thread.isAlive()) {
+        LOG.warn("audio thread did not stop in time; it will release the track when it does");
+      }
+      this.thread = null;
+    }
+    this.loadStarted = false;
+  }
+}
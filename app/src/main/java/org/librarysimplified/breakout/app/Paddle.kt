@@ -1,19 +1,62 @@
 package org.librarysimplified.breakout.app
 
 import android.graphics.PointF
-import android.graphics.RectF
 import com.terseworks.math.Rectangle2D
 
 class Paddle(
-  var center: PointF,
-  val height: Float,
-  val radius: Float) {
-
-  fun rectangle(): Rectangle2D {
-    val left = this.center.x - this.radius
-    val top = this.center.y - (this.height / 2.0f)
-    val right = this.center.x + this.radius
-    val bottom = this.center.y + (this.height / 2.0f)
-    return Rectangle2D(left, top, right, bottom)
+  center: PointF,
+  height: Float,
+  radius: Float) {
+
+  var height: Float = height
+    private set
+
+  var radius: Float = radius
+    private set
+
+  private val centerCurrent = PointF(center.x, center.y)
+
+  /**
+   * The paddle's bounding rectangle. This is kept up to date as the paddle moves and must
+   * not be modified by callers.
+   */
+
+  val rectangle: Rectangle2D = Rectangle2D()
+
+  init {
+    this.updateRectangle()
+  }
+
+  val center: PointF
+    get() = this.centerCurrent
+
+  fun moveTo(
+    x: Float,
+    y: Float = this.centerCurrent.y
+  ) {
+    this.centerCurrent.set(x, y)
+    this.updateRectangle()
+  }
+
+  /**
+   * Move the paddle and change its size.
+   */
+
+  fun relayout(
+    x: Float,
+    y: Float,
+    radius: Float,
+    height: Float
+  ) {
+    this.radius = radius
+    this.height = height
+    this.moveTo(x, y)
+  }
+
+  private fun updateRectangle() {
+    this.rectangle.min.x = this.centerCurrent.x - this.radius
+    this.rectangle.min.y = this.centerCurrent.y - (this.height / 2.0f)
+    this.rectangle.max.x = this.centerCurrent.x + this.radius
+    this.rectangle.max.y = this.centerCurrent.y + (this.height / 2.0f)
   }
-}
\ No newline at end of file
+}
@@ -0,0 +1,60 @@
+package org.librarysimplified.breakout.app
+
+/**
+ * Particle positions grouped into buckets of identical color and size, ready to be drawn
+ * with one points command per bucket.
+ */
+
+class ParticleBatch {
+
+  var points = FloatArray(0)
+    private set
+  var bucketCount = 0
+    private set
+  var bucketOffset = IntArray(0)
+    private set
+  var bucketSize = IntArray(0)
+    private set
+  var bucketColor = IntArray(0)
+    private set
+  var bucketWidth = FloatArray(0)
+    private set
+
+  fun reset(
+    buckets: Int,
+    pointCapacity: Int
+  ) {
+    if (this.bucketOffset.size < buckets) {
+      this.bucketOffset = IntArray(buckets)
+      this.bucketSize = IntArray(buckets)
+      this.bucketColor = IntArray(buckets)
+      this.bucketWidth = FloatArray(buckets)
+    }
+    if (this.points.size < pointCapacity * 2) {
+      this.points = FloatArray(pointCapacity * 2)
+    }
+    this.bucketCount = buckets
+    for (bucket in 0 until buckets) {
+      this.bucketSize[bucket] = 0
+    }
+  }
+
+  fun clear() {
+    this.bucketCount = 0
+  }
+
+  /**
+   * Record one points command per non-empty bucket.
+   */
+
+  fun draw(list: DisplayList) {
+    val flags = DisplayList.STYLE_STROKE or DisplayList.STYLE_ROUND_CAP
+    for (bucket in 0 until this.bucketCount) {
+      val size = this.bucketSize[bucket]
+      if (size > 0) {
+        val style = list.style(this.bucketColor[bucket], flags, this.bucketWidth[bucket])
+        list.points(this.points, this.bucketOffset[bucket], size, style)
+      }
+    }
+  }
+}
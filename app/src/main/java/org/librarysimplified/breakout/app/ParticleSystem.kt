@@ -0,0 +1,205 @@
+package org.librarysimplified.breakout.app
+
+import android.graphics.Color
+import android.graphics.RectF
+import androidx.annotation.ColorInt
+
+/**
+ * A fixed-capacity particle system.
+ *
+ * Particle state is held in primitive arrays, with live particles packed at the start of the
+ * arrays; a particle that dies is replaced by the last live particle, so spawning always
+ * reuses a dead slot and never allocates. Particles belong to one of a fixed set of kinds
+ * (a base color and a radius), and fade out over their lifetime in a fixed number of
+ * brightness steps, so that they can be drawn in a small number of batches.
+ */
+
+class ParticleSystem(
+  val capacity: Int,
+  @ColorInt kindColors: IntArray,
+  kindRadii: FloatArray) {
+
+  private val kinds = kindColors.size
+
+  private val positionX = FloatArray(this.capacity)
+  private val positionY = FloatArray(this.capacity)
+  private val directionX = FloatArray(this.capacity)
+  private val directionY = FloatArray(this.capacity)
+  private val speed = FloatArray(this.capacity)
+  private val life = IntArray(this.capacity)
+  private val kind = IntArray(this.capacity)
+
+  private val bucketColors = IntArray(this.kinds * LEVELS)
+  private val bucketWidths = FloatArray(this.kinds * LEVELS)
+  private val radiusMax = kindRadii.fold(0.0f) { radius, next -> Math.max(radius, next) }
+
+  var count = 0
+    private set
+
+  companion object {
+    const val LEVELS = 8
+    const val LIFE_MAX = 30
+    const val GRAVITY = 0.01f
+    const val SPEED_MAX = 8.0f
+  }
+
+  init {
+    require(kindRadii.size == this.kinds) { "Each particle kind requires a color and a radius" }
+
+    for (kind in 0 until this.kinds) {
+      val baseColor = kindColors[kind]
+      for (level in 0 until LEVELS) {
+        val bright = (level + 1).toDouble() / LEVELS.toDouble()
+        val r = Color.red(baseColor) * bright
+        val g = Color.green(baseColor) * bright
+        val b = Color.blue(baseColor) * bright
+        val bucket = (kind * LEVELS) + level
+        this.bucketColors[bucket] = Color.argb(0xff, r.toInt(), g.toInt(), b.toInt())
+        this.bucketWidths[bucket] = kindRadii[kind] * 2.0f
+      }
+    }
+  }
+
+  /**
+   * Spawn up to `count` particles of the given kind at the given position, moving in random
+   * directions. Particles that do not fit are dropped.
+   */
+
+  fun spawnBurst(
+    x: Float,
+    y: Float,
+    count: Int,
+    kind: Int,
+    random: GameRandom
+  ) {
+    val spawn = Math.min(count, this.capacity - this.count)
+    for (index in this.count until this.count + spawn) {
+      var dx = random.nextSignedFloat()
+      var dy = random.nextSignedFloat()
+      val length = Math.sqrt(((dx * dx) + (dy * dy)).toDouble()).toFloat()
+      if (length > 0.0f) {
+        dx /= length
+        dy /= length
+      } else {
+        dx = 0.0f
+        dy = -1.0f
+      }
+
+      this.positionX[index] = x
+      this.positionY[index] = y
+      this.directionX[index] = dx
+      this.directionY[index] = dy
+      this.speed[index] = random.nextFloat() * SPEED_MAX
+      this.life[index] = LIFE_MAX
+      this.kind[index] = kind
+    }
+    this.count += spawn
+  }
+
+  fun onLogic(deltaMs: Double) {
+    val gravity = (GRAVITY * deltaMs).toFloat()
+    val delta = deltaMs.toFloat()
+
+    var index = 0
+    while (index < this.count) {
+      val life = this.life[index] - 1
+      if (life <= 0) {
+        this.remove(index)
+        continue
+      }
+      this.life[index] = life
+
+      var dx = this.directionX[index]
+      var dy = this.directionY[index] + gravity
+      val length = Math.sqrt(((dx * dx) + (dy * dy)).toDouble()).toFloat()
+      dx /= length
+      dy /= length
+      this.directionX[index] = dx
+      this.directionY[index] = dy
+
+      val speedDelta = this.speed[index] * delta
+      this.positionX[index] += dx * speedDelta
+      this.positionY[index] += dy * speedDelta
+      index += 1
+    }
+  }
+
+  /**
+   * Write the bounds of all live particles into `into`.
+   *
+   * @return `false` if there are no live particles
+   */
+
+  fun bounds(into: RectF): Boolean {
+    if (this.count == 0) {
+      return false
+    }
+
+    var minX = Float.MAX_VALUE
+    var minY = Float.MAX_VALUE
+    var maxX = -Float.MAX_VALUE
+    var maxY = -Float.MAX_VALUE
+    for (index in 0 until this.count) {
+      val x = this.positionX[index]
+      val y = this.positionY[index]
+      minX = Math.min(minX, x)
+      minY = Math.min(minY, y)
+      maxX = Math.max(maxX, x)
+      maxY = Math.max(maxY, y)
+    }
+
+    val radius = this.radiusMax
+    into.set(minX - radius, minY - radius, maxX + radius, maxY + radius)
+    return true
+  }
+
+  private fun remove(index: Int) {
+    val last = this.count - 1
+    this.positionX[index] = this.positionX[last]
+    this.positionY[index] = this.positionY[last]
+    this.directionX[index] = this.directionX[last]
+    this.directionY[index] = this.directionY[last]
+    this.speed[index] = this.speed[last]
+    this.life[index] = this.life[last]
+    this.kind[index] = this.kind[last]
+    this.count = last
+  }
+
+  private fun bucketOf(index: Int): Int {
+    val level = ((this.life[index] * LEVELS) - 1) / LIFE_MAX
+    return (this.kind[index] * LEVELS) + level
+  }
+
+  /**
+   * Sort the live particles into color buckets in `into`.
+   */
+
+  fun writeBatch(into: ParticleBatch) {
+    val buckets = this.kinds * LEVELS
+    into.reset(buckets, this.count)
+
+    val bucketSize = into.bucketSize
+    for (index in 0 until this.count) {
+      bucketSize[this.bucketOf(index)] += 1
+    }
+
+    val bucketOffset = into.bucketOffset
+    var offset = 0
+    for (bucket in 0 until buckets) {
+      bucketOffset[bucket] = offset
+      offset += bucketSize[bucket]
+      bucketSize[bucket] = 0
+      into.bucketColor[bucket] = this.bucketColors[bucket]
+      into.bucketWidth[bucket] = this.bucketWidths[bucket]
+    }
+
+    val points = into.points
+    for (index in 0 until this.count) {
+      val bucket = this.bucketOf(index)
+      val target = (bucketOffset[bucket] + bucketSize[bucket]) * 2
+      points[target] = this.positionX[index]
+      points[target + 1] = this.positionY[index]
+      bucketSize[bucket] += 1
+    }
+  }
+}
@@ -1,123 +1,213 @@
 package org.librarysimplified.breakout.app
 
-import android.graphics.Canvas
 import android.graphics.Color
-import android.graphics.Paint
 import android.graphics.PointF
+import android.graphics.RectF
+import android.os.SystemClock
 import android.util.Size
 import com.terseworks.math.Circle2D
-import com.terseworks.math.Collide2D
-import com.terseworks.math.Contact2D
+import com.terseworks.math.Plane2D
+import com.terseworks.math.RayCast2D
+import com.terseworks.math.Rectangle2D
 import com.terseworks.math.Vector2D
 
 class PlayField(
   private val publishEvent: (BreakoutEvent) -> Unit,
-  val screenSize: Size,
-  val blocks: List<Block>,
+  private val input: InputLatch,
+  private val random: GameRandom,
+  screenSize: Size,
+  grid: BlockGrid,
   val ball: Ball,
-  val paddle: Paddle,
-  val explosions: MutableList<Explosion> = mutableListOf()
+  val paddle: Paddle
 ) : GameEntityType {
 
+  var screenSize: Size = screenSize
+    private set
+
+  /**
+   * The block grid. The grid is replaced, rather than modified, when the play field is laid
+   * out again, because a render thread may still be reading the previous grid.
+   */
+
+  var grid: BlockGrid = grid
+    private set
+
+  val blocks: List<Block>
+    get() = this.grid.blocks
+
+  /**
+   * The ratio between the size at which the blocks are drawn and the size at which their
+   * sprite was rasterized.
+   */
+
+  val spriteScale: Float
+    get() {
+      val block = this.blocks.firstOrNull() ?: return 1.0f
+      return (block.circle.radius * 2.0f) / block.sprite.width
+    }
+
   private var playPerfectly: Boolean = false
   private var renderDebugHulls = false
   private var renderDebugBounce = false
 
   private var cursorDown: Boolean = false
   private val cursorPosition = PointF()
-  private val cursorPaint = Paint()
-  private val paddleFill = Paint()
-  private val paddleStroke = Paint()
+  private val inputSample = InputLatch.Sample()
   private val collisionNormalLast = PointF()
   private val collisionPositionLast = PointF()
   private val collisionReflectLast = PointF()
-  private val reflectStroke = Paint()
-  private val normalStroke = Paint()
-
-  init {
-    this.cursorPaint.color = Color.GRAY
-    this.cursorPaint.style = Paint.Style.STROKE
-    this.paddleFill.color = Color.RED
-    this.paddleFill.style = Paint.Style.FILL
-    this.paddleStroke.color = Color.WHITE
-    this.paddleStroke.style = Paint.Style.STROKE
-    this.reflectStroke.color = Color.GREEN
-    this.reflectStroke.style = Paint.Style.STROKE
-    this.normalStroke.color = Color.CYAN
-    this.normalStroke.style = Paint.Style.STROKE
-  }
-
-  override fun onRender(canvas: Canvas, deltaMs: Double) {
-    for (block in this.blocks) {
-      if (block.alive) {
-        canvas.drawBitmap(
-          block.bitmap,
-          block.circle.center.x - block.circle.radius,
-          block.circle.center.y - block.circle.radius,
-          null)
-
-        if (this.renderDebugHulls) {
-          canvas.drawCircle(
+  private val sparkBatch = ParticleBatch()
+  private val eventBrokeBlock = BreakoutEvent.BallBrokeBlock()
+  private val eventBouncedPaddle = BreakoutEvent.BallBouncedPaddle()
+  private val damageBall = DamageRegion()
+  private val damagePaddle = DamageRegion()
+  private val damageCursor = DamageRegion()
+  private val damageParticles = DamageRegion()
+  private val damageParticleBounds = RectF()
+  private var damageKillCount = 0
+  private var damageFullPending = false
+  private var particleSteps = 0
+
+  val backgroundColor: Int =
+    Color.argb(0xff, 0x20, 0x20, 0x20)
+
+  val particles =
+    ParticleSystem(
+      capacity = 4096,
+      kindColors = intArrayOf(Color.WHITE, Color.YELLOW),
+      kindRadii = floatArrayOf(4.0f, 2.0f))
+
+  override fun onDraw(list: DisplayList, deltaMs: Double) {
+    list.blocks(
+      grid = this.grid,
+      killCount = this.grid.killCount,
+      width = this.screenSize.width,
+      height = this.screenSize.height,
+      backgroundColor = this.backgroundColor)
+    list.nextLayer()
+
+    val strokeWhite = list.style(Color.WHITE, DisplayList.STYLE_STROKE, 0.0f)
+    if (this.renderDebugHulls) {
+      for (block in this.blocks) {
+        if (block.alive) {
+          list.circle(
             block.circle.center.x,
             block.circle.center.y,
             block.circle.radius,
-            this.paddleStroke
-          )
+            strokeWhite)
         }
       }
+      list.nextLayer()
     }
 
     val ball = this.ball
-    canvas.drawBitmap(
-      ball.bitmap,
-      ball.circle.center.x - ball.circle.radius,
-      ball.circle.center.y - ball.circle.radius,
-      null)
+    val ballRadius = ball.circle.radius
+    list.sprite(
+      ball.sprite,
+      ball.circle.center.x - ballRadius,
+      ball.circle.center.y - ballRadius,
+      ballRadius * 2.0f,
+      ballRadius * 2.0f)
+
+    val paddleRect = this.paddle.rectangle
+    list.rect(
+      paddleRect.min.x,
+      paddleRect.min.y,
+      paddleRect.max.x,
+      paddleRect.max.y,
+      list.style(Color.RED, DisplayList.STYLE_FILL, 0.0f))
+    list.nextLayer()
+
+    list.rect(
+      paddleRect.min.x, paddleRect.min.y, paddleRect.max.x, paddleRect.max.y, strokeWhite)
 
     if (this.renderDebugHulls) {
-      canvas.drawCircle(
-        ball.circle.center.x,
-        ball.circle.center.y,
-        ball.circle.radius,
-        this.paddleStroke
-      )
+      list.circle(ball.circle.center.x, ball.circle.center.y, ballRadius, strokeWhite)
     }
 
-    val paddle = this.paddle
-    val paddleRect = paddle.rectangle()
-    canvas.drawRect(
-      paddleRect.min.x, paddleRect.min.y, paddleRect.max.x, paddleRect.max.y, this.paddleFill)
-    canvas.drawRect(
-      paddleRect.min.x, paddleRect.min.y, paddleRect.max.x, paddleRect.max.y, this.paddleStroke)
-
     if (this.renderDebugBounce) {
-      canvas.drawLine(
+      list.line(
         this.collisionPositionLast.x,
         this.collisionPositionLast.y,
         this.collisionPositionLast.x + (this.collisionNormalLast.x * 128.0f),
         this.collisionPositionLast.y + (this.collisionNormalLast.y * 128.0f),
-        this.normalStroke
-      )
+        list.style(Color.CYAN, DisplayList.STYLE_STROKE, 0.0f))
 
-      canvas.drawLine(
+      list.line(
         this.collisionPositionLast.x,
         this.collisionPositionLast.y,
         this.collisionPositionLast.x + (this.collisionReflectLast.x * 128.0f),
         this.collisionPositionLast.y + (this.collisionReflectLast.y * 128.0f),
-        this.reflectStroke
-      )
+        list.style(Color.GREEN, DisplayList.STYLE_STROKE, 0.0f))
     }
 
     if (this.cursorDown) {
-      canvas.drawCircle(
+      list.circle(
         this.cursorPosition.x,
         this.cursorPosition.y,
         8.0f,
-        this.cursorPaint
-      )
+        list.style(Color.GRAY, DisplayList.STYLE_STROKE, 0.0f))
     }
+    list.nextLayer()
 
-    this.explosions.forEach { explosion -> explosion.onRender(canvas, deltaMs) }
+    this.particles.writeBatch(this.sparkBatch)
+    this.sparkBatch.draw(list)
+  }
+
+  /**
+   * Add the regions that have changed since the previous call to `damage`.
+   */
+
+  fun onDamage(damage: DamageTracker) {
+    if (this.renderDebugHulls || this.renderDebugBounce || this.damageFullPending) {
+      damage.addFull()
+      this.damageFullPending = false
+    }
+
+    val grid = this.grid
+    val killCount = grid.killCount
+    for (index in this.damageKillCount until killCount) {
+      val circle = this.blocks[grid.killed(index)].circle
+      damage.add(
+        circle.center.x - circle.radius,
+        circle.center.y - circle.radius,
+        circle.center.x + circle.radius,
+        circle.center.y + circle.radius)
+    }
+    this.damageKillCount = killCount
+
+    val ball = this.ball.circle
+    this.damageBall.report(
+      damage,
+      ball.center.x - ball.radius,
+      ball.center.y - ball.radius,
+      ball.center.x + ball.radius,
+      ball.center.y + ball.radius,
+      0)
+
+    val paddleRect = this.paddle.rectangle
+    this.damagePaddle.report(
+      damage, paddleRect.min.x, paddleRect.min.y, paddleRect.max.x, paddleRect.max.y, 0)
+
+    if (this.cursorDown) {
+      this.damageCursor.report(
+        damage,
+        this.cursorPosition.x - 8.0f,
+        this.cursorPosition.y - 8.0f,
+        this.cursorPosition.x + 8.0f,
+        this.cursorPosition.y + 8.0f,
+        0)
+    } else {
+      this.damageCursor.clear(damage)
+    }
+
+    val bounds = this.damageParticleBounds
+    if (this.particles.bounds(bounds)) {
+      this.damageParticles.report(
+        damage, bounds.left, bounds.top, bounds.right, bounds.bottom, this.particleSteps)
+    } else {
+      this.damageParticles.clear(damage)
+    }
   }
 
   override fun onEvent(event: BreakoutEvent, deltaMs: Double) {
@@ -126,37 +216,20 @@ class PlayField(
 
       }
 
-      is BreakoutEvent.CursorMoved -> {
-        this.cursorDown = true
-        this.cursorPosition.set(event.position)
-      }
-
-      is BreakoutEvent.CursorReleased -> {
-        this.cursorDown = false
-      }
-
       is BreakoutEvent.BallBrokeBlock -> {
         this.collisionPositionLast.set(event.collisionPoint)
         this.collisionReflectLast.set(event.collisionReflect)
         this.collisionNormalLast.set(event.collisionNormal)
-        this.explosions.add(Explosion(
-          center = event.block.circle.center,
-          sparkRadius = 4.0f,
-          sparkCount = 60,
-          baseColor = Color.WHITE))
-        Unit
+        val center = event.block.circle.center
+        this.particles.spawnBurst(center.x, center.y, 60, PARTICLES_BLOCK, this.random)
       }
 
       is BreakoutEvent.BallBouncedPaddle -> {
         this.collisionPositionLast.set(event.collisionPoint)
         this.collisionReflectLast.set(event.collisionReflect)
         this.collisionNormalLast.set(event.collisionNormal)
-        this.explosions.add(Explosion(
-          center = event.collisionPoint,
-          sparkRadius = 2.0f,
-          sparkCount = 10,
-          baseColor = Color.YELLOW))
-        Unit
+        val point = event.collisionPoint
+        this.particles.spawnBurst(point.x, point.y, 10, PARTICLES_PADDLE, this.random)
       }
 
       BreakoutEvent.BallBouncedWall -> {
@@ -168,8 +241,7 @@ class PlayField(
       }
 
       BreakoutEvent.GetReady -> {
-        this.paddle.center.x =
-          this.screenSize.width / 2.0f
+        this.paddle.moveTo(this.screenSize.width / 2.0f)
 
         this.ball.direction.set(
           this.ball.defaultDirection.x,
@@ -177,7 +249,7 @@ class PlayField(
 
         this.ball.circle.center.set(
           this.screenSize.width / 2.0f,
-          this.paddle.rectangle().min.y - (this.ball.circle.radius * 2.0f))
+          this.paddle.rectangle.min.y - (this.ball.circle.radius * 2.0f))
 
         this.ball.isAlive = true
       }
@@ -188,112 +260,282 @@ class PlayField(
     }
   }
 
-  private fun moveExplosions(deltaMs: Double) {
-    val iter = this.explosions.iterator()
-    while (iter.hasNext()) {
-      val explosion = iter.next()
-      explosion.onLogic(deltaMs)
-      if (!explosion.isAlive) {
-        iter.remove()
-      }
-    }
+  private val sweepFrom = Vector2D()
+  private val sweepTo = Vector2D()
+  private val sweepContact = Vector2D()
+  private val sweepHitContact = Vector2D()
+  private val sweepHitNormal = PointF()
+  private val sweepCircle = Circle2D()
+  private val sweepRectangle = Rectangle2D()
+  private val wallLeft = Plane2D(1.0f, 0.0f, 0.0f)
+  private val wallRight = Plane2D(-1.0f, 0.0f, 0.0f)
+  private val wallTop = Plane2D(0.0f, 1.0f, 0.0f)
+
+  private var sweepHitKind = HitKind.NONE
+  private var sweepHitDistanceSquared = 0.0f
+  private var sweepHitBlock: Block? = null
+
+  private enum class HitKind {
+    NONE,
+    WALL,
+    BLOCK,
+    PADDLE
   }
 
-  private fun collideBallWithPaddle() {
+  private companion object {
+    const val SWEEP_ITERATIONS_MAX = 8
+    const val PARTICLES_BLOCK = 0
+    const val PARTICLES_PADDLE = 1
+  }
+
+  /**
+   * Move the ball along its direction using continuous collision detection. The earliest
+   * contact along the path is found, the ball is moved to it and bounced, and the remaining
+   * distance is travelled in the new direction, all within the same step. The ball therefore
+   * cannot tunnel through blocks, the paddle or walls regardless of its speed or the step
+   * length.
+   */
+
+  private fun moveBall(deltaMs: Double) {
     val ball = this.ball
-    val paddle = this.paddle
+    if (!ball.isAlive) {
+      return
+    }
+
+    val center = ball.circle.center
+    var remaining = (deltaMs * ball.speed).toFloat()
+
+    for (iteration in 0 until SWEEP_ITERATIONS_MAX) {
+      if (remaining <= 0.0f) {
+        break
+      }
 
-    val ballCircle =
-      Circle2D(Vector2D(ball.circle.center.x, ball.circle.center.y), ball.circle.radius)
-    val paddleRect =
-      paddle.rectangle()
-    val contact =
-      Contact2D()
+      this.sweepFrom.x = center.x
+      this.sweepFrom.y = center.y
+      this.sweepTo.x = center.x + (ball.direction.x * remaining)
+      this.sweepTo.y = center.y + (ball.direction.y * remaining)
 
-    Collide2D.circleInRectangle(ballCircle, paddleRect, contact)
+      this.sweepHitKind = HitKind.NONE
+      this.sweepHitDistanceSquared = Float.MAX_VALUE
+      this.sweepHitBlock = null
 
-    if (contact.depth > 0.0) {
-      val contactNormal = PointF(contact.normal.x, contact.normal.y)
-      val reflect = Vectors.reflect(ball.direction, contactNormal)
-      ball.direction.set(reflect)
+      this.sweepWalls()
+      this.sweepBlocks()
+      this.sweepPaddle()
 
-      this.publishEvent.invoke(BreakoutEvent.BallBouncedPaddle(
-        collisionNormal = contactNormal,
-        collisionReflect = reflect,
-        collisionPoint = ball.circle.center))
+      if (this.sweepHitKind == HitKind.NONE) {
+        center.set(this.sweepTo.x, this.sweepTo.y)
+        break
+      }
+
+      center.set(this.sweepHitContact.x, this.sweepHitContact.y)
+      remaining -= Math.sqrt(this.sweepHitDistanceSquared.toDouble()).toFloat()
+
+      when (this.sweepHitKind) {
+        HitKind.NONE -> Unit
+        HitKind.WALL -> this.resolveWall()
+        HitKind.BLOCK -> this.resolveBlock(this.sweepHitBlock!!)
+        HitKind.PADDLE -> this.resolvePaddle()
+      }
+    }
+
+    val ballTop = center.y - ball.circle.radius
+    if (ballTop >= this.screenSize.height) {
+      ball.isAlive = false
+      ball.speed = ball.speedDefault
+      this.publishEvent.invoke(BreakoutEvent.BallFellOut)
     }
   }
 
-  private fun moveBall(deltaMs: Double) {
-    val ball = this.ball
-    val speed = deltaMs * ball.speed
+  private fun movingAgainst(
+    normalX: Float,
+    normalY: Float
+  ): Boolean {
+    return (this.ball.direction.x * normalX) + (this.ball.direction.y * normalY) < 0.0f
+  }
+
+  private fun recordHit(
+    kind: HitKind,
+    normalX: Float,
+    normalY: Float
+  ): Boolean {
+    val dx = this.sweepContact.x - this.sweepFrom.x
+    val dy = this.sweepContact.y - this.sweepFrom.y
+    val distanceSquared = (dx * dx) + (dy * dy)
+    if (distanceSquared >= this.sweepHitDistanceSquared) {
+      return false
+    }
 
-    if (ball.isAlive) {
-      ball.circle.center.x += (speed * ball.direction.x).toFloat()
-      ball.circle.center.y += (speed * ball.direction.y).toFloat()
+    this.sweepHitKind = kind
+    this.sweepHitDistanceSquared = distanceSquared
+    this.sweepHitContact.x = this.sweepContact.x
+    this.sweepHitContact.y = this.sweepContact.y
+    this.sweepHitNormal.set(normalX, normalY)
+    return true
+  }
 
-      val ballTop = ball.circle.center.y - ball.circle.radius
-      if (ballTop >= this.screenSize.height) {
-        ball.isAlive = false
-        ball.speed = ball.speedDefault
-        this.publishEvent.invoke(BreakoutEvent.BallFellOut)
+  private fun sweepWall(plane: Plane2D) {
+    if (this.movingAgainst(plane.normal.x, plane.normal.y)) {
+      if (RayCast2D.rayInHalfspace(this.sweepFrom, this.sweepTo, plane, this.sweepContact)) {
+        this.recordHit(HitKind.WALL, plane.normal.x, plane.normal.y)
       }
     }
   }
 
-  private fun collideBallWithWalls() {
-    val ball = this.ball
-    var collided = false
+  private fun sweepWalls() {
+    val radius = this.ball.circle.radius
+    this.wallLeft.offset = -radius
+    this.wallRight.offset = this.screenSize.width - radius
+    this.wallTop.offset = -radius
 
-    if (ball.circle.center.x + ball.circle.radius >= this.screenSize.width) {
-      ball.direction.x = -Math.abs(ball.direction.x)
-      collided = true
+    this.sweepWall(this.wallLeft)
+    this.sweepWall(this.wallRight)
+    this.sweepWall(this.wallTop)
+  }
+
+  private fun sweepBlocks() {
+    val from = this.sweepFrom
+    val to = this.sweepTo
+    val ballRadius = this.ball.circle.radius
+
+    val grid = this.grid
+    val count = grid.query(
+      Math.min(from.x, to.x) - ballRadius,
+      Math.min(from.y, to.y) - ballRadius,
+      Math.max(from.x, to.x) + ballRadius,
+      Math.max(from.y, to.y) + ballRadius)
+
+    val circle = this.sweepCircle
+    for (index in 0 until count) {
+      val block = this.blocks[grid.result(index)]
+      val blockCenter = block.circle.center
+      if (!this.movingAgainst(from.x - blockCenter.x, from.y - blockCenter.y)) {
+        continue
+      }
+
+      circle.center.x = blockCenter.x
+      circle.center.y = blockCenter.y
+      circle.radius = block.circle.radius + ballRadius
+      if (RayCast2D.rayInCircle(from, to, circle, this.sweepContact)) {
+        val normalX = this.sweepContact.x - blockCenter.x
+        val normalY = this.sweepContact.y - blockCenter.y
+        if (this.recordHit(HitKind.BLOCK, normalX, normalY)) {
+          this.sweepHitBlock = block
+        }
+      }
+    }
+  }
+
+  private fun sweepPaddle() {
+    val radius = this.ball.circle.radius
+    val paddleRect = this.paddle.rectangle
+    val rectangle = this.sweepRectangle
+    rectangle.min.x = paddleRect.min.x - radius
+    rectangle.min.y = paddleRect.min.y - radius
+    rectangle.max.x = paddleRect.max.x + radius
+    rectangle.max.y = paddleRect.max.y + radius
+
+    if (!RayCast2D.rayInRectangle(this.sweepFrom, this.sweepTo, rectangle, this.sweepContact)) {
+      return
     }
-    if (ball.circle.center.x - ball.circle.radius <= 0.0f) {
-      ball.direction.x = Math.abs(ball.direction.x)
-      collided = true
+
+    val contact = this.sweepContact
+    val distanceLeft = Math.abs(contact.x - rectangle.min.x)
+    val distanceRight = Math.abs(rectangle.max.x - contact.x)
+    val distanceTop = Math.abs(contact.y - rectangle.min.y)
+    val distanceBottom = Math.abs(rectangle.max.y - contact.y)
+    val distanceMin =
+      Math.min(Math.min(distanceLeft, distanceRight), Math.min(distanceTop, distanceBottom))
+
+    var normalX = 0.0f
+    var normalY = 0.0f
+    when (distanceMin) {
+      distanceTop -> normalY = -1.0f
+      distanceLeft -> normalX = -1.0f
+      distanceRight -> normalX = 1.0f
+      else -> normalY = 1.0f
     }
-    if (ball.circle.center.y - ball.circle.radius <= 0.0f) {
-      ball.direction.y = Math.abs(ball.direction.y)
-      collided = true
+
+    if (this.movingAgainst(normalX, normalY)) {
+      this.recordHit(HitKind.PADDLE, normalX, normalY)
     }
+  }
 
-    Vectors.normalize(ball.direction)
+  private fun resolveWall() {
+    val ball = this.ball
+    Vectors.reflectInto(ball.direction, this.sweepHitNormal, ball.direction)
+    this.publishEvent.invoke(BreakoutEvent.BallBouncedWall)
+  }
 
-    if (collided) {
+  private fun resolveBlock(block: Block) {
+    val ball = this.ball
+    val normal = this.sweepHitNormal
+    Vectors.normalize(normal)
+
+    val event = this.eventBrokeBlock
+    val blockCenter = block.circle.center
+    event.block = block
+    event.collisionPoint.set(
+      blockCenter.x + (normal.x * block.circle.radius),
+      blockCenter.y + (normal.y * block.circle.radius))
+    event.collisionNormal.set(normal)
+
+    Vectors.reflectInto(ball.direction, normal, ball.direction)
+    event.collisionReflect.set(ball.direction)
+
+    // A block that survives the hit behaves (and sounds) like a wall.
+    block.hitPoints -= 1
+    if (block.hitPoints > 0) {
       this.publishEvent.invoke(BreakoutEvent.BallBouncedWall)
+      return
     }
-  }
 
-  private fun collisionPoint(
-    c0: CircleF,
-    c1: CircleF
-  ): PointF {
-    val collideX =
-      (c0.center.x * c1.radius + c1.center.x * c0.radius) / (c0.radius + c1.radius)
-    val collideY =
-      (c0.center.y * c1.radius + c1.center.y * c0.radius) / (c0.radius + c1.radius)
-    return PointF(collideX, collideY)
+    ball.speed = Math.min(ball.speed * 1.025f, ball.speedMax)
+    this.grid.kill(block.index)
+    this.publishEvent.invoke(event)
   }
 
-  private fun collideBallWithBlocks() {
+  private fun resolvePaddle() {
     val ball = this.ball
-    for (block in this.blocks) {
-      if (block.alive) {
-        val radius = block.circle.radius + ball.circle.radius
-        if (Vectors.distanceBetween(ball.circle.center, block.circle.center) <= radius) {
-          val collision = this.collisionPoint(ball.circle, block.circle)
-          val normal = block.circle.directionTo(collision)
-          val reflect = Vectors.reflect(ball.direction, normal)
-          ball.direction.set(reflect)
-          ball.speed = Math.min(ball.speed * 1.025f, 5.0f)
-          block.alive = false
-          this.publishEvent.invoke(BreakoutEvent.BallBrokeBlock(block, collision, normal, reflect))
-        }
-      }
+    Vectors.reflectInto(ball.direction, this.sweepHitNormal, ball.direction)
+
+    val event = this.eventBouncedPaddle
+    event.collisionNormal.set(this.sweepHitNormal)
+    event.collisionReflect.set(ball.direction)
+    event.collisionPoint.set(ball.circle.center)
+    this.publishEvent.invoke(event)
+  }
+
+  /**
+   * Sample the input latch, extrapolating the cursor position up to the current time by
+   * (at most) one frame's worth of the measured cursor velocity.
+   */
+
+  fun latchInput() {
+    val sample = this.inputSample
+    this.input.sample(sample)
+    this.cursorDown = sample.down
+
+    if (sample.down) {
+      val elapsed = Math.min(SystemClock.uptimeMillis() - sample.timeMs, 16L)
+      this.cursorPosition.set(
+        sample.x + (sample.velocityX * elapsed),
+        sample.y + (sample.velocityY * elapsed))
+    } else {
+      this.cursorPosition.set(sample.x, sample.y)
     }
   }
 
+  /**
+   * Sample the input latch and move the paddle to the cursor. This is intended to be called
+   * immediately before rendering, so that the paddle reflects the most recent input.
+   */
+
+  fun latchPaddle() {
+    this.latchInput()
+    this.movePaddle()
+  }
+
   private fun movePaddle() {
     if (this.playPerfectly) {
       this.cursorPosition.x = this.ball.circle.center.x
@@ -309,19 +551,128 @@ class PlayField(
     if (paddleRightX > this.screenSize.width) {
       newPaddleX -= Math.abs(paddleRightX - this.screenSize.width)
     }
-    this.paddle.center.x = newPaddleX
+    this.paddle.moveTo(newPaddleX)
   }
 
 
-  override fun onLogic(deltaMs: Double) {
-    this.movePaddle()
-    this.moveBall(deltaMs)
-    this.moveExplosions(deltaMs)
+  /**
+   * Lay the play field out again for a new screen size, keeping its state. Everything is
+   * scaled by the ratio of the new width to the old (the layout of a level is derived from
+   * the screen width), except that the paddle stays the same distance from the bottom of
+   * the screen. Sprites are not rasterized again, but are drawn scaled; see [replaceSprites].
+   */
+
+  fun relayout(size: Size) {
+    if (size == this.screenSize) {
+      return
+    }
+
+    val scale = size.width.toFloat() / this.screenSize.width.toFloat()
+    this.screenSize = size
+    this.grid = this.rebuildGrid(scale, null)
+    this.damageKillCount = this.grid.killCount
+    this.damageFullPending = true
+
+    val paddle = this.paddle
+    val paddleHeight = paddle.height * scale
+    paddle.relayout(
+      x = paddle.center.x * scale,
+      y = size.height - (paddleHeight * 4.0f),
+      radius = paddle.radius * scale,
+      height = paddleHeight)
+
+    val ball = this.ball
+    val circle = ball.circle
+    circle.radius *= scale
+    circle.center.set(circle.center.x * scale, circle.center.y * scale)
+    circle.center.x = Math.max(circle.radius, Math.min(size.width - circle.radius, circle.center.x))
+    if (circle.center.y + circle.radius > paddle.rectangle.min.y) {
+      circle.center.y = paddle.rectangle.min.y - (circle.radius * 2.0f)
+    }
+    ball.speed *= scale
+    ball.speedDefault *= scale
+    ball.speedMax *= scale
+
+    this.cursorPosition.set(this.cursorPosition.x * scale, this.cursorPosition.y * scale)
+  }
+
+  /**
+   * Replace the block and ball sprites, typically with sprites rasterized at the current
+   * layout size.
+   */
+
+  fun replaceSprites(
+    block: Sprite,
+    ball: Sprite
+  ) {
+    this.grid = this.rebuildGrid(1.0f, block)
+    this.damageKillCount = this.grid.killCount
+    this.damageFullPending = true
+    this.ball.sprite = ball
+  }
 
-    if (this.ball.isAlive) {
-      this.collideBallWithWalls()
-      this.collideBallWithBlocks()
-      this.collideBallWithPaddle()
+  /**
+   * Scale the blocks in place, and optionally give them a new sprite, and then index them
+   * in a new grid.
+   *
+   * The blocks themselves are kept, because events already queued may refer to them. Each
+   * block is given a new [CircleF] rather than having its circle changed, so a render
+   * thread still drawing a frame from the old grid sees either the old geometry or the
+   * new, and the layer is rebuilt as soon as a frame with the new grid arrives.
+   */
+
+  private fun rebuildGrid(
+    scale: Float,
+    sprite: Sprite?
+  ): BlockGrid {
+    val grid = this.grid
+    val blocks = grid.blocks
+    for (index in blocks.indices) {
+      val block = blocks[index]
+      if (scale != 1.0f) {
+        val circle = block.circle
+        block.circle =
+          CircleF(PointF(circle.center.x * scale, circle.center.y * scale), circle.radius * scale)
+      }
+      if (sprite != null) {
+        block.sprite = sprite
+      }
     }
+    return BlockGrid.create(blocks, grid.cellSize * scale)
+  }
+
+  /**
+   * `true` if anything on the play field would move in a call to [onLogicEffects].
+   */
+
+  val isAnimating: Boolean
+    get() = this.particles.count > 0
+
+  /**
+   * Run the logic for effects only, leaving the ball and paddle where they are.
+   */
+
+  fun onLogicEffects(deltaMs: Double) {
+    if (this.particles.count > 0) {
+      this.particles.onLogic(deltaMs)
+      this.particleSteps += 1
+    }
+    Metrics.particles.set(this.particles.count.toDouble())
+  }
+
+  override fun onLogic(deltaMs: Double) {
+    Tracing.begin(Tracing.SPAN_ENTITY_LOGIC)
+    this.latchPaddle()
+
+    Tracing.begin(Tracing.SPAN_COLLISION)
+    this.moveBall(deltaMs)
+    Tracing.end(Tracing.SPAN_COLLISION)
+
+    Tracing.begin(Tracing.SPAN_PARTICLES)
+    this.particles.onLogic(deltaMs)
+    this.particleSteps += 1
+    Metrics.particles.set(this.particles.count.toDouble())
+    Tracing.end(Tracing.SPAN_PARTICLES)
+    Tracing.end(Tracing.SPAN_ENTITY_LOGIC)
   }
 }
\ No newline at end of file
@@ -0,0 +1,27 @@
+package org.librarysimplified.breakout.app
+
+/**
+ * A recorded frame of a [GameStateType].
+ *
+ * Snapshots are written by the game thread and, once published, are only read by the
+ * render thread until they are handed back to the game thread for reuse.
+ */
+
+class RenderSnapshot {
+
+  var frame: Int = 0
+
+  /**
+   * The number of snapshots published before this one; used by the renderer to detect
+   * snapshots that it never drew, and whose damage it therefore missed.
+   */
+
+  var sequence: Long = 0L
+  val damage = DamageTracker()
+  val displayList = DisplayList()
+
+  fun reset(frame: Int) {
+    this.frame = frame
+    this.displayList.reset()
+  }
+}
@@ -0,0 +1,267 @@
+package org.librarysimplified.breakout.app
+
+import android.os.Process
+import ch.qos.logback.classic.Level
+import ch.qos.logback.classic.spi.ILoggingEvent
+import ch.qos.logback.core.UnsynchronizedAppenderBase
+import ch.qos.logback.core.spi.AppenderAttachable
+import ch.qos.logback.core.spi.AppenderAttachableImpl
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.atomic.AtomicLongArray
+import java.util.concurrent.atomic.AtomicReferenceArray
+import java.util.concurrent.locks.LockSupport
+
+/**
+ * An asynchronous appender that hands events to the appenders attached to it on a
+ * background thread, through a bounded lock-free ring.
+ *
+ * Unlike logback's `AsyncAppender`, logging never takes a lock and never wakes the writer
+ * thread. Events are prepared for deferred processing as `AsyncAppender` does, except that
+ * when every argument is an immutable value (strings, boxed primitives, and enums), the
+ * message cannot change and is left to be formatted on the writer thread. The writer thread
+ * wakes every `batchMillis` and delivers everything that has arrived.
+ *
+ * Once fewer than `discardingThreshold` slots are free, only one in `debugSampleRate`
+ * events at `DEBUG` or below is kept. Events that arrive while the ring is full are
+ * dropped, and the number dropped is reported through the status manager.
+ */
+
+class RingAsyncAppender private constructor(
+  private val appenders: AppenderAttachableImpl<ILoggingEvent>)
+  : UnsynchronizedAppenderBase<ILoggingEvent>(),
+  AppenderAttachable<ILoggingEvent> by appenders {
+
+  constructor() : this(AppenderAttachableImpl())
+
+  private companion object {
+
+    /**
+     * @return `true` if formatting a message with the given arguments later must produce
+     * the same text as formatting it now
+     */
+
+    fun isImmutable(arguments: Array<Any?>?): Boolean {
+      if (arguments == null) {
+        return true
+      }
+      for (argument in arguments) {
+        when (argument) {
+          null,
+          is String,
+          is Int,
+          is Long,
+          is Float,
+          is Double,
+          is Short,
+          is Byte,
+          is Boolean,
+          is Char,
+          is Enum<*> -> Unit
+          else -> return false
+        }
+      }
+      return true
+    }
+  }
+
+  /**
+   * The number of events that may be waiting. Rounded up to a power of two.
+   */
+
+  var queueSize: Int = 1024
+
+  /**
+   * The number of free slots below which debug events are sampled. Defaults to a quarter of
+   * the queue size.
+   */
+
+  var discardingThreshold: Int = -1
+
+  var debugSampleRate: Int = 16
+
+  var batchMillis: Int = 20
+
+  var maxFlushTimeMillis: Int = 1000
+
+  private var capacity = 0
+  private var mask = 0L
+  private var threshold = 0
+  private lateinit var slots: AtomicReferenceArray<ILoggingEvent>
+  private lateinit var sequences: AtomicLongArray
+  private val tail = AtomicLong(0L)
+  private val sampled = AtomicLong(0L)
+  private val dropped = AtomicLong(0L)
+  private var droppedReported = 0L
+
+  @Volatile
+  private var head = 0L
+
+  @Volatile
+  private var running = false
+
+  private var worker: Thread? = null
+
+  override fun start() {
+    if (this.isStarted) {
+      return
+    }
+    if (!this.appenders.iteratorForAppenders().hasNext()) {
+      this.addError("No appenders attached to ${this.name}")
+      return
+    }
+    if (this.queueSize < 1) {
+      this.addError("Invalid queue size ${this.queueSize}")
+      return
+    }
+
+    this.capacity = 1
+    while (this.capacity < this.queueSize) {
+      this.capacity = this.capacity shl 1
+    }
+    this.mask = (this.capacity - 1).toLong()
+    this.threshold =
+      if (this.discardingThreshold < 0) this.capacity / 4 else this.discardingThreshold
+    this.slots = AtomicReferenceArray(this.capacity)
+    this.sequences = AtomicLongArray(this.capacity)
+    for (index in 0 until this.capacity) {
+      this.sequences.set(index, index.toLong())
+    }
+    this.tail.set(0L)
+    this.head = 0L
+
+    this.running = true
+    val thread = Thread({
+      Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND)
+      this.runWorker()
+    }, "org.librarysimplified.breakout.log")
+    thread.isDaemon = true
+    this.worker = thread
+    super.start()
+    thread.start()
+  }
+
+  override fun stop() {
+    if (!this.isStarted) {
+      return
+    }
+    super.stop()
+
+    this.running = false
+    val thread = this.worker
+    if (thread != null) {
+      LockSupport.unpark(thread)
+      try {
+        thread.join(this.maxFlushTimeMillis.toLong())
+      } catch (e: InterruptedException) {
+        Thread.currentThread().interrupt()
+      }
+      if (thread.isAlive) {
+        this.addWarn("Timed out flushing events; some events may be lost")
+      }
+    }
+    this.worker = null
+    this.appenders.detachAndStopAllAppenders()
+  }
+
+  override fun append(event: ILoggingEvent) {
+
+    if (isImmutable(event.argumentArray)) {
+
+      /*
+       * These are computed lazily by the event, and must be read on the logging thread.
+       */
+
+      event.threadName
+      event.mdcPropertyMap
+    } else {
+      event.prepareForDeferredProcessing()
+    }
+
+    if (event.level.toInt() <= Level.DEBUG_INT) {
+      val waiting = this.tail.get() - this.head
+      if (this.capacity - waiting < this.threshold
+        && this.sampled.incrementAndGet() % this.debugSampleRate != 0L) {
+        this.dropped.incrementAndGet()
+        return
+      }
+    }
+
+    if (!this.offer(event)) {
+      this.dropped.incrementAndGet()
+    }
+  }
+
+  private fun offer(event: ILoggingEvent): Boolean {
+    var position = this.tail.get()
+    while (true) {
+      val index = (position and this.mask).toInt()
+      val difference = this.sequences.get(index) - position
+      if (difference == 0L) {
+        if (this.tail.compareAndSet(position, position + 1)) {
+          this.slots.lazySet(index, event)
+          this.sequences.lazySet(index, position + 1)
+          return true
+        }
+        position = this.tail.get()
+      } else if (difference < 0L) {
+        return false
+      } else {
+        position = this.tail.get()
+      }
+    }
+  }
+
+  private fun runWorker() {
+    val batchNanos = this.batchMillis * 1_000_000L
+    while (true) {
+      val running = this.running
+      val delivered = this.drain()
+      this.reportDropped()
+      if (!running) {
+        return
+      }
+      if (delivered == 0) {
+        LockSupport.parkNanos(this, batchNanos)
+      }
+    }
+  }
+
+  /**
+   * Deliver every event that has been published.
+   *
+   * @return The number of events delivered
+   */
+
+  private fun drain(): Int {
+    var delivered = 0
+    var head = this.head
+    while (true) {
+      val index = (head and this.mask).toInt()
+      if (this.sequences.get(index) != head + 1) {
+        break
+      }
+
+      val event = this.slots.get(index)
+      this.slots.lazySet(index, null)
+      this.sequences.lazySet(index, head + this.capacity)
+      head += 1
+      this.head = head
+
+      try {
+        this.appenders.appendLoopOnAppenders(event)
+      } catch (e: Exception) {
+        this.addError("Attached appender failed", e)
+      }
+      delivered += 1
+    }
+    return delivered
+  }
+
+  private fun reportDropped() {
+    val dropped = this.dropped.get()
+    if (dropped != this.droppedReported) {
+      this.addWarn("Dropped ${dropped - this.droppedReported} events")
+      this.droppedReported = dropped
+    }
+  }
+}
@@ -0,0 +1,24 @@
+package org.librarysimplified.breakout.app;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.FutureTask;
+
+/**
+ * A future that is completed explicitly once a set of sounds has loaded.
+ */
+
+final class SoundReadiness extends FutureTask<Void> {
+  private static final Callable<Void> NOTHING = () -> null;
+
+  SoundReadiness() {
+    super(NOTHING);
+  }
+
+  void succeed() {
+    this.set(null);
+  }
+
+  void fail(Throwable e) {
+    this.setException(e);
+  }
+}
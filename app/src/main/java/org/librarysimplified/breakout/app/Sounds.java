@@ -2,74 +2,290 @@ package org.librarysimplified.breakout.app;
 
 import android.content.Context;
 import android.media.SoundPool;
+import android.os.SystemClock;
 
-public final class Sounds {
+import java.util.concurrent.Future;
 
-  private final SoundPool soundPool;
+/**
+ * The game's sound effects, played through a {@link SoundPool}.
+ *
+ * A sound that is triggered before it has finished loading is silently dropped, as are
+ * identical triggers that arrive within a short window of each other. The pool's voices
+ * are handed out by priority: a new sound may take the voice of a playing sound of
+ * strictly lower priority, and is otherwise dropped.
+ */
 
-  private final int blockBreak;
-  private final int tak;
-  private final int bounce;
-  private final int failure;
-  private final int ready;
-  private final int go;
+public final class Sounds implements SoundsType {
+
+  private static final int SOUND_BLOCK_BREAK = 0;
+  private static final int SOUND_TAK = 1;
+  private static final int SOUND_BOUNCE = 2;
+  private static final int SOUND_FAILURE = 3;
+  private static final int SOUND_READY = 4;
+  private static final int SOUND_GO = 5;
+  private static final int SOUND_COUNT = 6;
+
+  private static final int[] SOUND_RESOURCES = {
+    R.raw.blockbreak,
+    R.raw.tak,
+    R.raw.bounce,
+    R.raw.failure,
+    R.raw.ready,
+    R.raw.go,
+  };
+
+  private static final int[] SOUND_PRIORITIES = {
+    2,
+    2,
+    1,
+    3,
+    3,
+    3,
+  };
+
+  private static final int VOICES = 3;
+  private static final long COALESCE_WINDOW_MS = 40L;
+  private static final long VOICE_HOLD_MS = 300L;
+
+  private final Context context;
+
+  /*
+   * Load state. Guarded by `this`: load() holds the lock while it assigns sample IDs, so the
+   * completion listener never sees a sample ID that has not yet been recorded.
+   */
+
+  private final int[] sampleIds;
+  private SoundPool soundPool;
+  private boolean loadStarted;
+  private boolean loadFailed;
+  private int loadsPending;
+  private volatile SoundReadiness readiness;
+
+
+  /*
+   * One bit per sound, set once the sound has loaded. Written under the lock, but read
+   * without it by the game thread; the volatile write also publishes the sample ID.
+   */
+
+  private volatile int readyMask;
+
+  /*
+   * Trigger and voice state. Confined to the game thread.
+   */
+
+  private final long[] triggeredLast;
+  private final int[] voiceStream;
+  private final int[] voicePriority;
+  private final long[] voiceStarted;
+  private long dropped;
 
   Sounds(Context context) {
-    this.soundPool =
-      new SoundPool.Builder()
-        .setMaxStreams(3)
-        .build();
-
-    this.blockBreak =
-      this.soundPool.load(context, R.raw.blockbreak, 1);
-    this.tak =
-      this.soundPool.load(context, R.raw.tak, 1);
-    this.bounce =
-      this.soundPool.load(context, R.raw.bounce, 1);
-    this.failure =
-      this.soundPool.load(context, R.raw.failure, 1);
-    this.ready =
-      this.soundPool.load(context, R.raw.ready, 1);
-    this.go =
-      this.soundPool.load(context, R.raw.go, 1);
+    this.context = context.getApplicationContext();
+    this.readiness = new SoundReadiness();
+    this.sampleIds = new int[SOUND_COUNT];
+    this.triggeredLast = new long[SOUND_COUNT];
+    this.voiceStream = new int[VOICES];
+    this.voicePriority = new int[VOICES];
+    this.voiceStarted = new long[VOICES];
+  }
+
+  /**
+   * Start loading the sounds. If a previous load failed, the samples that did load are
+   * discarded and everything is loaded again with a fresh readiness future. After
+   * {@link #release()}, a new pool is created and everything is loaded again.
+   */
+
+  @Override
+  public synchronized void load() {
+    if (this.loadStarted && !this.loadFailed) {
+      return;
+    }
+
+    if (this.loadFailed) {
+      for (int index = 0; index < SOUND_COUNT; ++index) {
+        this.soundPool.unload(this.sampleIds[index]);
+        this.sampleIds[index] = 0;
+      }
+      this.readyMask = 0;
+    }
+    if (this.readiness.isDone()) {
+      this.readiness = new SoundReadiness();
+    }
+    if (this.soundPool == null) {
+      this.soundPool =
+        new SoundPool.Builder()
+          .setMaxStreams(VOICES)
+          .build();
+      this.soundPool.setOnLoadCompleteListener(this::onLoadComplete);
+    }
+
+    this.loadStarted = true;
+    this.loadFailed = false;
+    this.loadsPending = SOUND_COUNT;
+
+    for (int index = 0; index < SOUND_COUNT; ++index) {
+      this.sampleIds[index] =
+        this.soundPool.load(this.context, SOUND_RESOURCES[index], 1);
+    }
+  }
+
+  private synchronized void onLoadComplete(
+    final SoundPool pool,
+    final int sampleId,
+    final int status) {
+    for (int index = 0; index < SOUND_COUNT; ++index) {
+      if (this.sampleIds[index] == sampleId) {
+        if (status != 0) {
+          this.loadFailed = true;
+          this.readiness.fail(
+            new IllegalStateException(
+              String.format("Failed to load sound %d (status %d)", index, status)));
+          return;
+        }
+
+        this.readyMask |= 1 << index;
+        this.loadsPending -= 1;
+        if (this.loadsPending == 0) {
+          this.readiness.succeed();
+        }
+        return;
+      }
+    }
+  }
+
+  @Override
+  public Future<Void> readiness() {
+    return this.readiness;
+  }
+
+  /**
+   * @return The number of triggers dropped because they were coalesced, arrived before the
+   * sound had loaded, or found no voice
+   */
+
+  long dropped() {
+    return this.dropped;
   }
 
+  @Override
   public int getFailure() {
-    return failure;
+    return SOUND_FAILURE;
   }
 
+  @Override
   public int getReady() {
-    return ready;
+    return SOUND_READY;
   }
 
+  @Override
   public int getGo() {
-    return go;
+    return SOUND_GO;
   }
 
-  void release() {
-    this.soundPool.release();
+  /**
+   * Release the pool. Sounds are silent until {@link #load()} is called again.
+   */
+
+  @Override
+  public synchronized void release() {
+    this.readyMask = 0;
+    if (this.soundPool != null) {
+      this.soundPool.release();
+      this.soundPool = null;
+    }
+    for (int index = 0; index < VOICES; ++index) {
+      this.voiceStream[index] = 0;
+    }
+    this.loadStarted = false;
+    this.loadFailed = false;
   }
 
+  @Override
   public int getBlockBreak() {
-    return blockBreak;
+    return SOUND_BLOCK_BREAK;
   }
 
+  @Override
   public int getTak() {
-    return tak;
+    return SOUND_TAK;
   }
 
+  @Override
   public int getBounce() {
-    return bounce;
+    return SOUND_BOUNCE;
   }
 
-  void playRandomRate(int sound) {
-    final double rate = (Math.random() * 1.25) + 0.75;
+  @Override
+  public void playRandomRate(
+    int sound,
+    GameRandom random) {
+    final double rate = (random.nextDouble() * 1.25) + 0.75;
     play(sound, rate);
   }
 
-  void play(
+  @Override
+  public void play(
     int sound,
     double rate) {
-    this.soundPool.play(sound, 0.5f, 0.5f, 1, 0, (float) rate);
+    final long now = SystemClock.uptimeMillis();
+
+    if (!this.isReady(sound)) {
+      this.dropped += 1;
+      return;
+    }
+    final SoundPool pool = this.soundPool;
+
+    final long last = this.triggeredLast[sound];
+    if (last != 0L && now - last < COALESCE_WINDOW_MS) {
+      this.dropped += 1;
+      return;
+    }
+    this.triggeredLast[sound] = now;
+
+    final int priority = SOUND_PRIORITIES[sound];
+    final int voice = this.findVoice(priority, now);
+    if (voice < 0) {
+      this.dropped += 1;
+      return;
+    }
+
+    final int existing = this.voiceStream[voice];
+    if (existing != 0 && now - this.voiceStarted[voice] < VOICE_HOLD_MS) {
+      pool.stop(existing);
+    }
+
+    this.voiceStream[voice] =
+      pool.play(this.sampleIds[sound], 0.5f, 0.5f, priority, 0, (float) rate);
+    this.voicePriority[voice] = priority;
+    this.voiceStarted[voice] = now;
+  }
+
+  private boolean isReady(int sound) {
+    return (this.readyMask & (1 << sound)) != 0;
+  }
+
+  /**
+   * Find a voice for a sound of the given priority: a voice whose sound has (presumably)
+   * finished, or else the oldest voice playing a sound of lower priority.
+   *
+   * @return A voice index, or -1 if every voice is busy with a sound of equal or higher
+   * priority
+   */
+
+  private int findVoice(
+    int priority,
+    long now) {
+    int victim = -1;
+    for (int voice = 0; voice < VOICES; ++voice) {
+      if (this.voiceStream[voice] == 0 || now - this.voiceStarted[voice] >= VOICE_HOLD_MS) {
+        return voice;
+      }
+      if (this.voicePriority[voice] < priority) {
+        if (victim < 0 || this.voiceStarted[voice] < this.voiceStarted[victim]) {
+          victim = voice;
+        }
+      }
+    }
+    return victim;
   }
 }
@@ -0,0 +1,58 @@
+package org.librarysimplified.breakout.app
+
+import java.util.concurrent.Future
+
+/**
+ * The game's sound effects.
+ *
+ * Sounds are identified by the small integers returned by the properties of this interface,
+ * which are valid before the sounds have been loaded. Playing a sound that has not yet
+ * loaded does nothing.
+ */
+
+interface SoundsType {
+
+  val blockBreak: Int
+
+  val tak: Int
+
+  val bounce: Int
+
+  val failure: Int
+
+  val ready: Int
+
+  val go: Int
+
+  /**
+   * Start loading the sounds. This may be called from any thread, and only has an effect
+   * the first time that it is called, or after a load has failed.
+   */
+
+  fun load()
+
+  /**
+   * @return A future that completes when every sound has loaded, or fails if any sound
+   * could not be loaded. A new future is returned once a failed load is retried.
+   */
+
+  fun readiness(): Future<Void>
+
+  /**
+   * Play a sound at the given playback rate, where `1.0` is the recorded rate.
+   */
+
+  fun play(
+    sound: Int,
+    rate: Double)
+
+  /**
+   * Play a sound at a random playback rate.
+   */
+
+  fun playRandomRate(
+    sound: Int,
+    random: GameRandom)
+
+  fun release()
+}
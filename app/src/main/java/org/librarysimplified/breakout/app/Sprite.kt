@@ -0,0 +1,21 @@
+package org.librarysimplified.breakout.app
+
+import android.graphics.Bitmap
+
+/**
+ * A rectangular region of a (typically shared) bitmap.
+ */
+
+class Sprite(
+  val bitmap: Bitmap,
+  val left: Int,
+  val top: Int,
+  val width: Int,
+  val height: Int) {
+
+  val right: Int
+    get() = this.left + this.width
+
+  val bottom: Int
+    get() = this.top + this.height
+}
@@ -0,0 +1,23 @@
+package org.librarysimplified.breakout.app
+
+import android.graphics.Bitmap
+import androidx.annotation.DrawableRes
+
+/**
+ * A set of sprites packed into a single bitmap. The sprites are in the same order as the
+ * specifications from which the atlas was built.
+ */
+
+class SpriteAtlas(
+  val bitmap: Bitmap,
+  val sprites: List<Sprite>) {
+
+  /**
+   * A drawable resource, and the size at which it should appear in the atlas.
+   */
+
+  data class Spec(
+    @DrawableRes val resource: Int,
+    val width: Int,
+    val height: Int)
+}
@@ -0,0 +1,267 @@
+package org.librarysimplified.breakout.app
+
+import android.content.Context
+import android.content.pm.PackageManager
+import android.graphics.Bitmap
+import android.graphics.BitmapFactory
+import android.graphics.Canvas
+import org.slf4j.LoggerFactory
+import java.io.File
+import java.io.IOException
+import java.io.RandomAccessFile
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
+
+/**
+ * Builds sprite atlases from drawable resources, and caches them on disk.
+ *
+ * A cached atlas is a small header followed by the atlas pixels exactly as they are laid
+ * out in memory, so loading one is a memory-mapped copy into a new bitmap, with no image
+ * decoding or scaling. A cached atlas is rebuilt if the specifications it was built from
+ * differ from those requested, or if the application has been updated since it was built.
+ */
+
+class SpriteAtlasCache(
+  private val context: Context,
+  private val directory: File = context.cacheDir) {
+
+  private val logger = LoggerFactory.getLogger(SpriteAtlasCache::class.java)
+
+  private companion object {
+    const val MAGIC = 0x42524b41
+    const val VERSION = 1
+    const val PADDING = 1
+    const val WIDTH_MAX = 2048
+  }
+
+  private class Layout(
+    val width: Int,
+    val height: Int,
+    val left: IntArray,
+    val top: IntArray)
+
+  /**
+   * Load the atlas with the given name from the cache. Atlases built at different sizes
+   * should be given different names.
+   *
+   * @return The atlas, or `null` if it is not cached or the cached copy is stale
+   */
+
+  fun read(
+    name: String,
+    specs: List<SpriteAtlas.Spec>
+  ): SpriteAtlas? {
+    val file = this.fileOf(name)
+    return try {
+      val atlas = this.read(file, this.applicationStamp(), specs, this.pack(specs))
+      if (atlas != null) {
+        this.logger.debug("loaded atlas {} from cache", name)
+      }
+      atlas
+    } catch (e: IOException) {
+      this.logger.warn("could not read cached atlas {}: ", file, e)
+      null
+    }
+  }
+
+  /**
+   * Decode and scale the image for a single sprite. This may be called concurrently for
+   * different sprites.
+   */
+
+  fun decode(spec: SpriteAtlas.Spec): Bitmap {
+    val base = BitmapFactory.decodeResource(this.context.resources, spec.resource)
+    val scaled = Bitmap.createScaledBitmap(base, spec.width, spec.height, true)
+    if (scaled !== base) {
+      base.recycle()
+    }
+    return scaled
+  }
+
+  /**
+   * Pack the images returned by [decode] for each of `specs` into an atlas, and cache it.
+   * The images are recycled.
+   */
+
+  fun build(
+    name: String,
+    specs: List<SpriteAtlas.Spec>,
+    images: List<Bitmap>
+  ): SpriteAtlas {
+    val layout = this.pack(specs)
+    val bitmap = Bitmap.createBitmap(layout.width, layout.height, Bitmap.Config.ARGB_8888)
+    val canvas = Canvas(bitmap)
+    for (index in specs.indices) {
+      val image = images[index]
+      canvas.drawBitmap(image, layout.left[index].toFloat(), layout.top[index].toFloat(), null)
+      image.recycle()
+    }
+
+    val file = this.fileOf(name)
+    try {
+      this.write(file, this.applicationStamp(), specs, bitmap)
+    } catch (e: IOException) {
+      this.logger.warn("could not write cached atlas {}: ", file, e)
+    }
+
+    this.logger.debug("built atlas {}", name)
+    return this.spritesOf(bitmap, specs, layout)
+  }
+
+  private fun fileOf(name: String): File =
+    File(this.directory, "$name.atlas")
+
+  private fun applicationStamp(): Long {
+    return try {
+      this.context.packageManager.getPackageInfo(this.context.packageName, 0).lastUpdateTime
+    } catch (e: PackageManager.NameNotFoundException) {
+      0L
+    }
+  }
+
+  /**
+   * Place the sprites left to right in rows, with a transparent border around each sprite
+   * so that filtering never samples a neighbour.
+   */
+
+  private fun pack(specs: List<SpriteAtlas.Spec>): Layout {
+    var widthLimit = WIDTH_MAX
+    for (spec in specs) {
+      widthLimit = Math.max(widthLimit, spec.width + (PADDING * 2))
+    }
+
+    val left = IntArray(specs.size)
+    val top = IntArray(specs.size)
+    var x = PADDING
+    var y = PADDING
+    var rowHeight = 0
+    var width = 0
+    for (index in specs.indices) {
+      val spec = specs[index]
+      if (x + spec.width + PADDING > widthLimit && x > PADDING) {
+        x = PADDING
+        y += rowHeight + PADDING
+        rowHeight = 0
+      }
+
+      left[index] = x
+      top[index] = y
+      x += spec.width + PADDING
+      rowHeight = Math.max(rowHeight, spec.height)
+      width = Math.max(width, x)
+    }
+
+    return Layout(
+      width = Math.max(1, width),
+      height = y + rowHeight + PADDING,
+      left = left,
+      top = top)
+  }
+
+  private fun spritesOf(
+    bitmap: Bitmap,
+    specs: List<SpriteAtlas.Spec>,
+    layout: Layout
+  ): SpriteAtlas {
+    val sprites = specs.mapIndexed { index, spec ->
+      Sprite(bitmap, layout.left[index], layout.top[index], spec.width, spec.height)
+    }
+    return SpriteAtlas(bitmap, sprites)
+  }
+
+  private fun headerSize(specs: List<SpriteAtlas.Spec>): Int =
+    (4 * 3) + 8 + (specs.size * 4 * 3) + (4 * 2)
+
+  private fun read(
+    file: File,
+    stamp: Long,
+    specs: List<SpriteAtlas.Spec>,
+    layout: Layout
+  ): SpriteAtlas? {
+    if (!file.isFile) {
+      return null
+    }
+
+    return RandomAccessFile(file, "r").use { raf ->
+      val channel = raf.channel
+      if (channel.size() < this.headerSize(specs)) {
+        return null
+      }
+
+      val buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0L, channel.size())
+      if (!this.headerMatches(buffer, stamp, specs, layout)) {
+        return null
+      }
+
+      val bitmap = Bitmap.createBitmap(layout.width, layout.height, Bitmap.Config.ARGB_8888)
+      if (buffer.remaining() != bitmap.byteCount) {
+        bitmap.recycle()
+        return null
+      }
+      bitmap.copyPixelsFromBuffer(buffer)
+      this.spritesOf(bitmap, specs, layout)
+    }
+  }
+
+  private fun headerMatches(
+    buffer: ByteBuffer,
+    stamp: Long,
+    specs: List<SpriteAtlas.Spec>,
+    layout: Layout
+  ): Boolean {
+    if (buffer.int != MAGIC || buffer.int != VERSION || buffer.long != stamp) {
+      return false
+    }
+    if (buffer.int != specs.size) {
+      return false
+    }
+    for (spec in specs) {
+      if (buffer.int != spec.resource || buffer.int != spec.width || buffer.int != spec.height) {
+        return false
+      }
+    }
+    return buffer.int == layout.width && buffer.int == layout.height
+  }
+
+  /**
+   * Write the atlas to a temporary file and then rename it, so that a partially written
+   * atlas is never loaded. Each write has its own temporary file, so that two threads
+   * building the same atlas at once cannot write into the same file.
+   */
+
+  private fun write(
+    file: File,
+    stamp: Long,
+    specs: List<SpriteAtlas.Spec>,
+    bitmap: Bitmap
+  ) {
+    val temporary = File.createTempFile(file.name, ".tmp", this.directory)
+    val size = this.headerSize(specs).toLong() + bitmap.byteCount
+
+    try {
+      RandomAccessFile(temporary, "rw").use { raf ->
+        raf.setLength(size)
+        val buffer = raf.channel.map(FileChannel.MapMode.READ_WRITE, 0L, size)
+        buffer.putInt(MAGIC)
+        buffer.putInt(VERSION)
+        buffer.putLong(stamp)
+        buffer.putInt(specs.size)
+        for (spec in specs) {
+          buffer.putInt(spec.resource)
+          buffer.putInt(spec.width)
+          buffer.putInt(spec.height)
+        }
+        buffer.putInt(bitmap.width)
+        buffer.putInt(bitmap.height)
+        bitmap.copyPixelsToBuffer(buffer)
+        buffer.force()
+      }
+
+      if (!temporary.renameTo(file)) {
+        throw IOException("Could not rename $temporary to $file")
+      }
+    } finally {
+      temporary.delete()
+    }
+  }
+}
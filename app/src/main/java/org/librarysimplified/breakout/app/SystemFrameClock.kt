@@ -0,0 +1,19 @@
+package org.librarysimplified.breakout.app
+
+/**
+ * A frame clock backed by [System.nanoTime] and [Thread.sleep].
+ */
+
+object SystemFrameClock : FrameClockType {
+
+  override fun nanoTime(): Long =
+    System.nanoTime()
+
+  override fun sleepNanos(nanos: Long) {
+    try {
+      Thread.sleep(nanos / 1_000_000L, (nanos % 1_000_000L).toInt())
+    } catch (e: InterruptedException) {
+      Thread.currentThread().interrupt()
+    }
+  }
+}
@@ -0,0 +1,107 @@
+package org.librarysimplified.breakout.app
+
+import java.io.Writer
+
+/**
+ * Writes trace events in the Chrome trace-event JSON format, as read by `chrome://tracing`
+ * and Perfetto.
+ *
+ * Spans are written as `B` and `E` duration events, with timestamps in microseconds. An
+ * end event whose begin event was overwritten in the ring is dropped, since the viewers
+ * cannot match it.
+ */
+
+class TraceExporter(
+  private val spanNames: List<String>,
+  private val threadNames: Map<Long, String> = emptyMap(),
+  private val processId: Int = 1) {
+
+  fun write(
+    events: TraceRing.Events,
+    output: Writer
+  ) {
+    output.write("{\"displayTimeUnit\":\"ms\",\"traceEvents\":[")
+
+    var first = true
+    for ((thread, name) in this.threadNames) {
+      first = this.separator(output, first)
+      output.write("{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":")
+      output.write(this.processId.toString())
+      output.write(",\"tid\":")
+      output.write(thread.toString())
+      output.write(",\"args\":{\"name\":")
+      this.writeString(output, name)
+      output.write("}}")
+    }
+
+    val depths = HashMap<Long, Int>()
+    for (index in 0 until events.count) {
+      val thread = events.threads[index]
+      val begin = events.begins[index]
+      val depth = depths[thread] ?: 0
+      if (begin) {
+        depths[thread] = depth + 1
+      } else {
+        if (depth == 0) {
+          continue
+        }
+        depths[thread] = depth - 1
+      }
+
+      val span = events.spans[index]
+      first = this.separator(output, first)
+      output.write("{\"name\":")
+      this.writeString(output, this.spanNames.getOrElse(span) { "span$span" })
+      output.write(",\"ph\":\"")
+      output.write(if (begin) "B" else "E")
+      output.write("\",\"ts\":")
+      output.write(this.micros(events.timesNanos[index]))
+      output.write(",\"pid\":")
+      output.write(this.processId.toString())
+      output.write(",\"tid\":")
+      output.write(thread.toString())
+      output.write("}")
+    }
+
+    output.write("]}")
+    output.flush()
+  }
+
+  private fun separator(
+    output: Writer,
+    first: Boolean
+  ): Boolean {
+    if (!first) {
+      output.write(",")
+    }
+    return false
+  }
+
+  /*
+   * The origin of System.nanoTime() is arbitrary, so times may be negative.
+   */
+
+  private fun micros(nanos: Long): String {
+    val sign = if (nanos < 0L) "-" else ""
+    val magnitude = Math.abs(nanos)
+    val whole = magnitude / 1_000L
+    val fraction = (magnitude % 1_000L).toString().padStart(3, '0')
+    return "$sign$whole.$fraction"
+  }
+
+  private fun writeString(
+    output: Writer,
+    text: String
+  ) {
+    output.write("\"")
+    for (character in text) {
+      when {
+        character == '"' -> output.write("\\\"")
+        character == '\\' -> output.write("\\\\")
+        character < ' ' -> output.write(String.format("\\u%04x", character.toInt()))
+        else -> output.write(character.toInt())
+      }
+    }
+    output.write("\"")
+  }
+}
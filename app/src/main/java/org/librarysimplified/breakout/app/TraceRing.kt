@@ -0,0 +1,160 @@
+package org.librarysimplified.breakout.app
+
+import java.util.concurrent.atomic.AtomicIntegerArray
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.atomic.AtomicLongArray
+
+/**
+ * A bounded, preallocated, lock-free ring of trace events, written by any number of threads.
+ *
+ * An event is the start or end of a span, identified by a small integer, on a thread at a
+ * time. When the ring is full the oldest events are overwritten. Each slot carries a
+ * sequence number that a writer swaps for [BUSY] before writing the slot, so a reader
+ * copying the ring with [read] skips any event that was overwritten while it was being
+ * copied, and two writers that wrap onto the same slot never write it at once.
+ *
+ * The fields of an event are kept in atomic arrays rather than plain ones: the reader
+ * checks the sequence number again after loading them, and plain loads could be reordered
+ * past that check.
+ */
+
+class TraceRing(capacity: Int) {
+
+  private companion object {
+    const val EMPTY = -1L
+    const val BUSY = -2L
+  }
+
+  private val capacity: Int
+  private val mask: Long
+  private val times: AtomicLongArray
+  private val threads: AtomicLongArray
+  private val spans: AtomicIntegerArray
+  private val sequences: AtomicLongArray
+  private val next = AtomicLong(0L)
+
+  init {
+    require(capacity > 0) { "Capacity must be positive" }
+    require(Integer.bitCount(capacity) == 1) { "Capacity must be a power of two" }
+
+    this.capacity = capacity
+    this.mask = (capacity - 1).toLong()
+    this.times = AtomicLongArray(capacity)
+    this.threads = AtomicLongArray(capacity)
+    this.spans = AtomicIntegerArray(capacity)
+    this.sequences = AtomicLongArray(capacity)
+    for (index in 0 until capacity) {
+      this.sequences.set(index, EMPTY)
+    }
+  }
+
+  /**
+   * A copy of the events in the ring, oldest first.
+   */
+
+  class Events(
+    val count: Int,
+    val timesNanos: LongArray,
+    val threads: LongArray,
+    val spans: IntArray,
+    val begins: BooleanArray)
+
+  /**
+   * Record an event. May be called from any thread.
+   */
+
+  fun write(
+    timeNanos: Long,
+    thread: Long,
+    span: Int,
+    begin: Boolean
+  ) {
+    val position = this.next.getAndIncrement()
+    val index = (position and this.mask).toInt()
+    if (!this.claim(index, position)) {
+      return
+    }
+    this.times.lazySet(index, timeNanos)
+    this.threads.lazySet(index, thread)
+    this.spans.lazySet(index, (span shl 1) or (if (begin) 1 else 0))
+    this.sequences.lazySet(index, position)
+  }
+
+  /**
+   * Mark the slot at `index` as being written for `position`. The slot is only ever busy for
+   * the few stores of another [write], so this spins.
+   *
+   * @return `false` if the slot already holds a later event, which makes this one stale
+   */
+
+  private fun claim(
+    index: Int,
+    position: Long
+  ): Boolean {
+    while (true) {
+      val sequence = this.sequences.get(index)
+      if (sequence == BUSY) {
+        Thread.yield()
+        continue
+      }
+      if (sequence > position) {
+        return false
+      }
+      if (this.sequences.compareAndSet(index, sequence, BUSY)) {
+        return true
+      }
+    }
+  }
+
+  /**
+   * Discard all events. Events written concurrently may or may not survive.
+   */
+
+  fun clear() {
+    for (index in 0 until this.capacity) {
+      while (true) {
+        val sequence = this.sequences.get(index)
+        if (sequence == BUSY || this.sequences.compareAndSet(index, sequence, EMPTY)) {
+          break
+        }
+      }
+    }
+  }
+
+  /**
+   * Copy the events currently in the ring. May be called from any thread.
+   */
+
+  fun read(): Events {
+    val end = this.next.get()
+    val start = Math.max(0L, end - this.capacity)
+    val size = (end - start).toInt()
+
+    val times = LongArray(size)
+    val threads = LongArray(size)
+    val spans = IntArray(size)
+    val begins = BooleanArray(size)
+    var count = 0
+
+    for (position in start until end) {
+      val index = (position and this.mask).toInt()
+      if (this.sequences.get(index) != position) {
+        continue
+      }
+      val time = this.times.get(index)
+      val thread = this.threads.get(index)
+      val span = this.spans.get(index)
+      if (this.sequences.get(index) != position) {
+        continue
+      }
+
+      times[count] = time
+      threads[count] = thread
+      spans[count] = span ushr 1
+      begins[count] = (span and 1) == 1
+      count += 1
+    }
+
+    return Events(count, times, threads, spans, begins)
+  }
+}
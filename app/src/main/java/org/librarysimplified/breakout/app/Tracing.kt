@@ -0,0 +1,108 @@
+package org.librarysimplified.breakout.app
+
+import android.os.Trace
+import java.io.File
+import java.io.FileOutputStream
+import java.io.OutputStreamWriter
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * Span tracing for the game loop.
+ *
+ * Spans are recorded into a [TraceRing] as begin and end events and, if [mirrorToSystrace]
+ * is set, are also opened and closed as `android.os.Trace` sections so that they appear in
+ * systrace and Perfetto captures. While tracing is disabled, [begin] and [end] return after
+ * a single test of [enabled]. Spans must be properly nested on each thread.
+ */
+
+object Tracing {
+
+  const val SPAN_FRAME = 0
+  const val SPAN_EVENTS = 1
+  const val SPAN_LOGIC = 2
+  const val SPAN_ENTITY_LOGIC = 3
+  const val SPAN_COLLISION = 4
+  const val SPAN_PARTICLES = 5
+  const val SPAN_RENDER = 6
+  const val SPAN_POST = 7
+  const val SPAN_DAMAGE = 8
+  const val SPAN_RECORD = 9
+
+  val SPAN_NAMES: List<String> =
+    listOf(
+      "frame",
+      "events",
+      "logic",
+      "entity-logic",
+      "collision",
+      "particles",
+      "render",
+      "canvas-post",
+      "damage",
+      "record")
+
+  private val ring = TraceRing(1 shl 16)
+  private val threadNames = ConcurrentHashMap<Long, String>()
+
+  /**
+   * Set to `true` to start recording spans.
+   */
+
+  @JvmField
+  @Volatile
+  var enabled: Boolean = false
+
+  /**
+   * Set to `true` to also record spans as `android.os.Trace` sections. Only takes effect
+   * while [enabled] is set.
+   */
+
+  @JvmField
+  @Volatile
+  var mirrorToSystrace: Boolean = false
+
+  /**
+   * Give the current thread a readable name in exported traces.
+   */
+
+  fun nameThread(name: String) {
+    this.threadNames[Thread.currentThread().id] = name
+  }
+
+  fun begin(span: Int) {
+    if (!this.enabled) {
+      return
+    }
+    this.ring.write(System.nanoTime(), Thread.currentThread().id, span, true)
+    if (this.mirrorToSystrace) {
+      Trace.beginSection(SPAN_NAMES[span])
+    }
+  }
+
+  fun end(span: Int) {
+    if (!this.enabled) {
+      return
+    }
+    this.ring.write(System.nanoTime(), Thread.currentThread().id, span, false)
+    if (this.mirrorToSystrace) {
+      Trace.endSection()
+    }
+  }
+
+  fun clear() {
+    this.ring.clear()
+  }
+
+  /**
+   * Write the spans currently in the ring to `file` as a Chrome trace-event JSON file.
+   * Recording may continue while the trace is written.
+   */
+
+  fun export(file: File) {
+    val exporter = TraceExporter(SPAN_NAMES, HashMap(this.threadNames))
+    val events = this.ring.read()
+    OutputStreamWriter(FileOutputStream(file), Charsets.UTF_8).buffered().use { writer ->
+      exporter.write(events, writer)
+    }
+  }
+}
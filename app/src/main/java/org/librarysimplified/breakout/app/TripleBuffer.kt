@@ -0,0 +1,67 @@
+package org.librarysimplified.breakout.app
+
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * A lock-free triple buffer for handing values from a single producer thread to a single
+ * consumer thread.
+ *
+ * The producer fills [back] and then calls [publish]. The consumer calls [consume] to take
+ * the most recently published value, if there is one it has not already seen. Neither side
+ * ever blocks or waits for the other; intermediate values are silently skipped if the
+ * producer runs ahead of the consumer.
+ */
+
+class TripleBuffer<T>(
+  initialBack: T,
+  initialMiddle: T,
+  initialFront: T) {
+
+  private val items: List<T> =
+    listOf(initialBack, initialMiddle, initialFront)
+
+  private val middle = AtomicInteger(1)
+  private var backIndex = 0
+  private var frontIndex = 2
+
+  private companion object {
+    const val INDEX_MASK = 0b011
+    const val FRESH = 0b100
+  }
+
+  /**
+   * The value currently owned by the producer.
+   */
+
+  val back: T
+    get() = this.items[this.backIndex]
+
+  /**
+   * The value currently owned by the consumer.
+   */
+
+  val front: T
+    get() = this.items[this.frontIndex]
+
+  /**
+   * Publish the value in [back], and take ownership of a new back value.
+   */
+
+  fun publish() {
+    this.backIndex = this.middle.getAndSet(this.backIndex or FRESH) and INDEX_MASK
+  }
+
+  /**
+   * Take ownership of the most recently published value.
+   *
+   * @return The new front value, or `null` if nothing has been published since the last call
+   */
+
+  fun consume(): T? {
+    if (this.middle.get() and FRESH == 0) {
+      return null
+    }
+    this.frontIndex = this.middle.getAndSet(this.frontIndex) and INDEX_MASK
+    return this.items[this.frontIndex]
+  }
+}
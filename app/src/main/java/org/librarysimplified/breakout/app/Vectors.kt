@@ -1,18 +1,29 @@
 package org.librarysimplified.breakout.app
 
 import android.graphics.PointF
-import kotlin.math.pow
 import kotlin.math.sqrt
 
+/**
+ * Vector functions. The `*Into` variants write their results to an output parameter and do
+ * not allocate; the output may be the same object as one of the inputs.
+ */
+
 object Vectors {
 
   fun distanceBetween(
     p0: PointF,
     p1: PointF
   ): Float {
-    val xSquare = (p0.x - p1.x).toDouble().pow(2.0)
-    val ySquare = (p0.y - p1.y).toDouble().pow(2.0)
-    return sqrt(xSquare + ySquare).toFloat()
+    return sqrt(distanceSquaredBetween(p0, p1))
+  }
+
+  fun distanceSquaredBetween(
+    p0: PointF,
+    p1: PointF
+  ): Float {
+    val dx = p0.x - p1.x
+    val dy = p0.y - p1.y
+    return (dx * dx) + (dy * dy)
   }
 
   fun dotProduct(
@@ -25,36 +36,44 @@ object Vectors {
   }
 
   fun scale(p: PointF, s: Float): PointF {
-    return PointF(
-      p.x * s,
-      p.y * s
-    )
+    val out = PointF()
+    scaleInto(p, s, out)
+    return out
+  }
+
+  fun scaleInto(p: PointF, s: Float, out: PointF) {
+    out.set(p.x * s, p.y * s)
   }
 
   fun direction(p0: PointF, p1: PointF): PointF {
-    val direction =
-      PointF(
-        p0.x - p1.x,
-        p0.y - p1.y)
+    val out = PointF()
+    directionInto(p0, p1, out)
+    return out
+  }
 
-    normalize(direction)
-    return direction
+  fun directionInto(p0: PointF, p1: PointF, out: PointF) {
+    out.set(p0.x - p1.x, p0.y - p1.y)
+    normalize(out)
   }
 
   fun normalize(p: PointF) {
+    val length = p.length()
     p.set(
-      p.x / p.length(),
-      p.y / p.length())
+      p.x / length,
+      p.y / length)
   }
 
   fun reflect(v: PointF, n: PointF): PointF {
+    val out = PointF()
+    reflectInto(v, n, out)
+    return out
+  }
+
+  fun reflectInto(v: PointF, n: PointF, out: PointF) {
     val dot = dotProduct(n, v) * 2.0f
-    val nScaled = scale(n, dot)
-    val r = PointF(
-      v.x - nScaled.x,
-      v.y - nScaled.y
-    )
-    normalize(r)
-    return r
-  }
-}
\ No newline at end of file
+    out.set(
+      v.x - (n.x * dot),
+      v.y - (n.y * dot))
+    normalize(out)
+  }
+}
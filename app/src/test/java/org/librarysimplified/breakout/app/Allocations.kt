@@ -0,0 +1,41 @@
+package org.librarysimplified.breakout.app
+
+import java.lang.management.ManagementFactory
+
+/**
+ * Counts of the bytes allocated by the current thread, where the JVM provides them.
+ */
+
+object Allocations {
+
+  private val threads =
+    ManagementFactory.getThreadMXBean() as? com.sun.management.ThreadMXBean
+
+  val isSupported: Boolean
+    get() = this.threads?.isThreadAllocatedMemorySupported == true
+      && this.threads.isThreadAllocatedMemoryEnabled
+
+  /**
+   * @return The total number of bytes allocated by the current thread so far
+   */
+
+  fun allocatedBytes(): Long =
+    this.threads!!.getThreadAllocatedBytes(Thread.currentThread().id)
+
+  /**
+   * Find the mean number of bytes allocated by each call of `action`, over `count` calls.
+   *
+   * One-off costs (such as the JVM linking a call site) are spread across every call. Any
+   * object costs at least 16 bytes, so a mean below one byte shows that nothing is allocated
+   * per call.
+   */
+
+  fun perCall(
+    count: Int,
+    action: () -> Unit
+  ): Double {
+    val start = this.allocatedBytes()
+    repeat(count) { action.invoke() }
+    return (this.allocatedBytes() - start).toDouble() / count
+  }
+}
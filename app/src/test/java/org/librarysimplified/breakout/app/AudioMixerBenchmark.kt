@@ -0,0 +1,69 @@
+package org.librarysimplified.breakout.app
+
+import org.junit.Test
+
+/**
+ * The cost of mixing a 256-frame buffer at 48 kHz with a varying number of voices, and of
+ * passing commands through the queue. A buffer lasts about 5.3 ms, so the time taken to mix
+ * one, as a fraction of that, is the share of the audio thread's deadline that mixing uses.
+ */
+
+class AudioMixerBenchmark {
+
+  private val outputRate = 48000
+  private val bufferFrames = 256
+  private val buffers = 1000
+
+  private fun sine(): AudioSample {
+    val rate = 44100
+    val frames = ShortArray(rate) { index ->
+      (Math.sin(index * 2.0 * Math.PI * 440.0 / rate) * 8000.0).toInt().toShort()
+    }
+    return AudioSample(frames, rate)
+  }
+
+  private fun mix(voices: Int) {
+    val mixer = AudioMixer(arrayOf(this.sine()), this.outputRate, voices, this.bufferFrames)
+    val output = ShortArray(this.bufferFrames)
+
+    val nanos = Benchmarks.measure("mix 256 frames, $voices voices", this.buffers) {
+      var sum = 0L
+      for (buffer in 0 until this.buffers) {
+        while (mixer.active() < voices) {
+          mixer.start(0, 0.75f + (mixer.active() * 0.25f), 0.25f)
+        }
+        mixer.mix(output, 0, this.bufferFrames)
+        sum += output[this.bufferFrames - 1]
+      }
+      sum
+    }
+
+    val deadline = this.bufferFrames * 1_000_000_000.0 / this.outputRate
+    println(String.format("  %.3f%% of the buffer's duration", (nanos / deadline) * 100.0))
+  }
+
+  @Test
+  fun benchmarkMix() {
+    this.mix(1)
+    this.mix(4)
+    this.mix(8)
+    this.mix(16)
+  }
+
+  @Test
+  fun benchmarkQueue() {
+    val queue = AudioCommandQueue(64)
+    val command = AudioCommandQueue.Command()
+    val operations = 1_000_000
+
+    Benchmarks.measure("queue offer and poll", operations) {
+      var sum = 0L
+      for (index in 0 until operations) {
+        queue.offer(index and 7, 1.0f, 1.0f)
+        queue.poll(command)
+        sum += command.sound
+      }
+      sum
+    }
+  }
+}
@@ -0,0 +1,171 @@
+package org.librarysimplified.breakout.app
+
+import org.junit.Assert.assertArrayEquals
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Assume.assumeTrue
+import org.junit.Test
+
+class AudioMixerTest {
+
+  private fun ramp(
+    length: Int,
+    rate: Int
+  ): AudioSample {
+    val frames = ShortArray(length) { index -> (index * 100).toShort() }
+    return AudioSample(frames, rate)
+  }
+
+  @Test
+  fun testUnitRatePlaysFramesScaledByGain() {
+    val mixer = AudioMixer(arrayOf(this.ramp(64, 48000)), 48000, 4, 256)
+    mixer.start(0, 1.0f, 0.5f)
+
+    val output = ShortArray(8)
+    mixer.mix(output, 0, 8)
+
+    assertArrayEquals(shortArrayOf(0, 50, 100, 150, 200, 250, 300, 350), output)
+    assertEquals(1, mixer.active())
+  }
+
+  @Test
+  fun testRatesAndSampleRatesResample() {
+    val doubled = AudioMixer(arrayOf(this.ramp(64, 48000)), 48000, 1, 256)
+    doubled.start(0, 2.0f, 1.0f)
+    val output = ShortArray(4)
+    doubled.mix(output, 0, 4)
+    assertArrayEquals(shortArrayOf(0, 200, 400, 600), output)
+
+    val upsampled = AudioMixer(arrayOf(this.ramp(64, 24000)), 48000, 1, 256)
+    upsampled.start(0, 1.0f, 1.0f)
+    upsampled.mix(output, 0, 4)
+    assertArrayEquals(shortArrayOf(0, 50, 100, 150), output)
+  }
+
+  @Test
+  fun testVoicesStopAtTheEndOfTheirSound() {
+    val mixer = AudioMixer(arrayOf(this.ramp(4, 48000)), 48000, 2, 256)
+    mixer.start(0, 1.0f, 1.0f)
+
+    val output = ShortArray(8)
+    mixer.mix(output, 0, 8)
+
+    assertArrayEquals(shortArrayOf(0, 100, 200, 0, 0, 0, 0, 0), output)
+    assertEquals(0, mixer.active())
+  }
+
+  @Test
+  fun testOldestVoiceIsStolen() {
+    val quiet = AudioSample(ShortArray(64) { 1 }, 48000)
+    val loud = AudioSample(ShortArray(64) { 1000 }, 48000)
+    val mixer = AudioMixer(arrayOf(quiet, loud), 48000, 2, 256)
+
+    mixer.start(0, 1.0f, 1.0f)
+    mixer.start(0, 1.0f, 1.0f)
+    mixer.start(1, 1.0f, 1.0f)
+
+    val output = ShortArray(1)
+    mixer.mix(output, 0, 1)
+    assertEquals(2, mixer.active())
+    assertEquals(1001.toShort(), output[0])
+  }
+
+  @Test
+  fun testMixingClips() {
+    val loud = AudioSample(ShortArray(64) { 30000 }, 48000)
+    val mixer = AudioMixer(arrayOf(loud), 48000, 2, 256)
+    mixer.start(0, 1.0f, 1.0f)
+    mixer.start(0, 1.0f, 1.0f)
+
+    val output = ShortArray(1)
+    mixer.mix(output, 0, 1)
+    assertEquals(Short.MAX_VALUE, output[0])
+  }
+
+  @Test
+  fun testInvalidCommandsAreIgnored() {
+    val mixer = AudioMixer(arrayOf(this.ramp(64, 48000)), 48000, 2, 256)
+    mixer.start(1, 1.0f, 1.0f)
+    mixer.start(-1, 1.0f, 1.0f)
+    mixer.start(0, 0.0f, 1.0f)
+    mixer.start(0, Float.NaN, 1.0f)
+    assertEquals(0, mixer.active())
+  }
+
+  @Test(expected = IllegalArgumentException::class)
+  fun testMixingMoreThanTheMaximumIsRejected() {
+    val mixer = AudioMixer(arrayOf(this.ramp(64, 48000)), 48000, 2, 16)
+    mixer.mix(ShortArray(32), 0, 17)
+  }
+
+  @Test
+  fun testQueueIsFirstInFirstOutAndBounded() {
+    val queue = AudioCommandQueue(4)
+    for (index in 0 until 4) {
+      assertTrue(queue.offer(index, 1.0f, 0.5f))
+    }
+    assertFalse(queue.offer(4, 1.0f, 0.5f))
+
+    val command = AudioCommandQueue.Command()
+    for (index in 0 until 4) {
+      assertTrue(queue.poll(command))
+      assertEquals(index, command.sound)
+    }
+    assertFalse(queue.poll(command))
+    assertTrue(queue.offer(5, 1.0f, 0.5f))
+  }
+
+  @Test
+  fun testQueueDeliversEverythingAcrossThreads() {
+    val queue = AudioCommandQueue(64)
+    val count = 200_000
+    val producer = Thread {
+      var index = 0
+      while (index < count) {
+        if (queue.offer(index, 1.0f, 1.0f)) {
+          index += 1
+        } else {
+          Thread.yield()
+        }
+      }
+    }
+    producer.start()
+
+    val command = AudioCommandQueue.Command()
+    var expected = 0
+    while (expected < count) {
+      if (queue.poll(command)) {
+        assertEquals(expected, command.sound)
+        expected += 1
+      } else {
+        Thread.yield()
+      }
+    }
+    producer.join()
+  }
+
+  @Test
+  fun testMixingDoesNotAllocate() {
+    assumeTrue("Thread allocation counting is unavailable", Allocations.isSupported)
+
+    val mixer = AudioMixer(arrayOf(this.ramp(4800, 44100)), 48000, 8, 256)
+    val queue = AudioCommandQueue(64)
+    val output = ShortArray(256)
+    var buffer = 0
+    val mix = {
+      if (buffer % 4 == 0) {
+        queue.offer(0, 1.25f, 0.5f)
+      }
+      mixer.drain(queue)
+      mixer.mix(output, 0, output.size)
+      buffer += 1
+    }
+
+    for (warmup in 0 until 10_000) {
+      mix.invoke()
+    }
+    val bytes = Allocations.perCall(10_000, mix)
+    assertTrue("$bytes bytes allocated per buffer", bytes < 1.0)
+  }
+}
@@ -0,0 +1,49 @@
+package org.librarysimplified.breakout.app
+
+/**
+ * A minimal harness for the `*Benchmark` classes, which are only run when the build is
+ * given `-Pbenchmarks`. JMH does not fit into an Android application module, so this
+ * settles for warming up and then reporting the median of several timed runs.
+ */
+
+object Benchmarks {
+
+  private const val WARMUPS = 10
+  private const val RUNS = 15
+
+  /*
+   * Results are accumulated here so that the JIT cannot discard the work being measured.
+   */
+
+  @Volatile
+  var sink: Long = 0L
+
+  /**
+   * Time `action`, which performs `operations` operations per call and returns a value
+   * derived from its work.
+   *
+   * @return The median time per operation in nanoseconds
+   */
+
+  fun measure(
+    name: String,
+    operations: Int,
+    action: () -> Long
+  ): Double {
+    for (run in 0 until WARMUPS) {
+      this.sink += action.invoke()
+    }
+
+    val times = LongArray(RUNS)
+    for (run in 0 until RUNS) {
+      val start = System.nanoTime()
+      this.sink += action.invoke()
+      times[run] = System.nanoTime() - start
+    }
+    times.sort()
+
+    val nanos = times[RUNS / 2].toDouble() / operations
+    println(String.format("%-48s %12.2f ns/op", name, nanos))
+    return nanos
+  }
+}
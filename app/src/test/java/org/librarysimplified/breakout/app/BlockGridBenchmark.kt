@@ -0,0 +1,119 @@
+package org.librarysimplified.breakout.app
+
+import org.junit.Test
+
+/**
+ * The cost of finding the blocks hit by one sweep of the ball, using the grid compared to
+ * the scan over every block that it replaced. Both use the same narrow phase: the distance
+ * from the block's center to the ball's path.
+ */
+
+class BlockGridBenchmark {
+
+  private val ballRadius = 4.0f
+  private val blockRadius = 8.0f
+  private val sweeps = 4096
+
+  private class Sweep(
+    val fromX: Float,
+    val fromY: Float,
+    val toX: Float,
+    val toY: Float)
+
+  private fun sweeps(
+    width: Float,
+    height: Float
+  ): Array<Sweep> {
+    val random = GameRandom(0xb10cL)
+    return Array(this.sweeps) {
+      val x = random.nextFloat() * width
+      val y = random.nextFloat() * height
+      Sweep(x, y, x + (random.nextSignedFloat() * 6.0f), y + (random.nextSignedFloat() * 6.0f))
+    }
+  }
+
+  private fun hits(
+    block: Block,
+    sweep: Sweep
+  ): Boolean {
+    val center = block.circle.center
+    val radius = block.circle.radius + this.ballRadius
+    val dx = sweep.toX - sweep.fromX
+    val dy = sweep.toY - sweep.fromY
+    val length = (dx * dx) + (dy * dy)
+    val along = ((center.x - sweep.fromX) * dx) + ((center.y - sweep.fromY) * dy)
+    val t = if (length == 0.0f) 0.0f else Math.max(0.0f, Math.min(1.0f, along / length))
+    val px = (sweep.fromX + (t * dx)) - center.x
+    val py = (sweep.fromY + (t * dy)) - center.y
+    return (px * px) + (py * py) <= radius * radius
+  }
+
+  private fun scan(
+    blocks: List<Block>,
+    sweeps: Array<Sweep>
+  ): Long {
+    var hits = 0L
+    for (sweep in sweeps) {
+      for (index in blocks.indices) {
+        val block = blocks[index]
+        if (block.alive && this.hits(block, sweep)) {
+          hits += 1
+        }
+      }
+    }
+    return hits
+  }
+
+  private fun grid(
+    grid: BlockGrid,
+    sweeps: Array<Sweep>
+  ): Long {
+    val blocks = grid.blocks
+    val radius = this.ballRadius
+    var hits = 0L
+    for (sweep in sweeps) {
+      val count = grid.query(
+        Math.min(sweep.fromX, sweep.toX) - radius,
+        Math.min(sweep.fromY, sweep.toY) - radius,
+        Math.max(sweep.fromX, sweep.toX) + radius,
+        Math.max(sweep.fromY, sweep.toY) + radius)
+      for (index in 0 until count) {
+        if (this.hits(blocks[grid.result(index)], sweep)) {
+          hits += 1
+        }
+      }
+    }
+    return hits
+  }
+
+  private fun compare(
+    columns: Int,
+    rows: Int
+  ) {
+    val blocks = TestBlocks.grid(columns, rows, this.blockRadius)
+    val grid = BlockGrid.create(blocks, this.blockRadius * 2.0f)
+    val sweeps = this.sweeps(columns * this.blockRadius * 2.0f, rows * this.blockRadius * 2.0f)
+
+    val expected = this.scan(blocks, sweeps)
+    check(this.grid(grid, sweeps) == expected) { "Grid and scan disagree" }
+
+    val count = blocks.size
+    Benchmarks.measure("scan, $count blocks", this.sweeps) { this.scan(blocks, sweeps) }
+    Benchmarks.measure("grid, $count blocks", this.sweeps) { this.grid(grid, sweeps) }
+  }
+
+  @Test
+  fun benchmark72() {
+    this.compare(12, 6)
+  }
+
+  @Test
+  fun benchmark1000() {
+    this.compare(40, 25)
+  }
+
+  @Test
+  fun benchmark10000() {
+    this.compare(100, 100)
+  }
+}
@@ -0,0 +1,108 @@
+package org.librarysimplified.breakout.app
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+class BlockGridTest {
+
+  private fun overlaps(
+    block: Block,
+    minX: Float,
+    minY: Float,
+    maxX: Float,
+    maxY: Float
+  ): Boolean {
+    val center = block.circle.center
+    val radius = block.circle.radius
+    val x = Math.max(minX, Math.min(center.x, maxX))
+    val y = Math.max(minY, Math.min(center.y, maxY))
+    val dx = center.x - x
+    val dy = center.y - y
+    return (dx * dx) + (dy * dy) <= radius * radius
+  }
+
+  @Test
+  fun testQueriesFindEveryOverlappingLiveBlock() {
+    val random = GameRandom(0x6e1dL)
+    val blocks = ArrayList<Block>()
+    for (index in 0 until 500) {
+      blocks.add(
+        TestBlocks.block(
+          index = index,
+          x = random.nextFloat() * 400.0f,
+          y = random.nextFloat() * 300.0f,
+          radius = 2.0f + (random.nextFloat() * 10.0f)))
+    }
+    val grid = BlockGrid.create(blocks, 16.0f)
+    val all = IntArray(blocks.size)
+
+    for (query in 0 until 2000) {
+      if (query % 10 == 0) {
+        grid.kill((random.nextFloat() * blocks.size).toInt())
+      }
+
+      val minX = (random.nextFloat() * 440.0f) - 20.0f
+      val minY = (random.nextFloat() * 340.0f) - 20.0f
+      val maxX = minX + (random.nextFloat() * 30.0f)
+      val maxY = minY + (random.nextFloat() * 30.0f)
+
+      val found = HashSet<Int>()
+      val count = grid.query(minX, minY, maxX, maxY)
+      for (index in 0 until count) {
+        val block = blocks[grid.result(index)]
+        assertTrue("Dead block ${block.index} returned", block.alive)
+        assertTrue("Block ${block.index} returned twice", found.add(block.index))
+      }
+
+      val foundAll = HashSet<Int>()
+      val countAll = grid.queryAll(minX, minY, maxX, maxY, all)
+      for (index in 0 until countAll) {
+        foundAll.add(all[index])
+      }
+
+      for (block in blocks) {
+        if (this.overlaps(block, minX, minY, maxX, maxY)) {
+          assertTrue("Block ${block.index} missing from queryAll", foundAll.contains(block.index))
+          if (block.alive) {
+            assertTrue("Block ${block.index} missing from query", found.contains(block.index))
+          }
+        }
+      }
+    }
+  }
+
+  @Test
+  fun testKillsAreLogged() {
+    val blocks = TestBlocks.grid(12, 6, 8.0f)
+    blocks[3].alive = false
+    val grid = BlockGrid.create(blocks, 16.0f)
+
+    assertEquals(71, grid.liveCount)
+    assertEquals(1, grid.killCount)
+    assertEquals(3, grid.killed(0))
+
+    grid.kill(40)
+    grid.kill(40)
+    grid.kill(7)
+
+    assertFalse(blocks[40].alive)
+    assertEquals(69, grid.liveCount)
+    assertEquals(3, grid.killCount)
+    assertEquals(40, grid.killed(1))
+    assertEquals(7, grid.killed(2))
+  }
+
+  @Test
+  fun testQueriesAreEmptyOnceAllBlocksAreDead() {
+    val blocks = TestBlocks.grid(4, 4, 8.0f)
+    val grid = BlockGrid.create(blocks, 16.0f)
+    for (block in blocks) {
+      grid.kill(block.index)
+    }
+
+    assertEquals(0, grid.liveCount)
+    assertEquals(0, grid.query(-100.0f, -100.0f, 100.0f, 100.0f))
+  }
+}
@@ -0,0 +1,139 @@
+package org.librarysimplified.breakout.app
+
+import android.graphics.Bitmap
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNotEquals
+import org.junit.Assert.assertTrue
+import org.junit.Assume.assumeTrue
+import org.junit.Test
+import org.objenesis.ObjenesisStd
+
+class DisplayListTest {
+
+  private val objenesis = ObjenesisStd()
+  private val bitmap0 = this.objenesis.newInstance(Bitmap::class.java)
+  private val bitmap1 = this.objenesis.newInstance(Bitmap::class.java)
+  private val sprite0 = Sprite(this.bitmap0, 0, 0, 8, 8)
+  private val sprite1 = Sprite(this.bitmap1, 8, 0, 8, 8)
+
+  private fun replay(list: DisplayList): List<String> {
+    val trace = StringBuilder()
+    HeadlessDisplayListBackend(trace).render(list)
+    return trace.lines().filter { line -> line.isNotEmpty() }
+  }
+
+  @Test
+  fun testStylesAreInterned() {
+    val list = DisplayList()
+    val red = list.style(0xffff0000.toInt(), DisplayList.STYLE_FILL, 0.0f)
+    val redStroke = list.style(0xffff0000.toInt(), DisplayList.STYLE_STROKE, 0.0f)
+
+    assertEquals(red, list.style(0xffff0000.toInt(), DisplayList.STYLE_FILL, 0.0f))
+    assertNotEquals(red, redStroke)
+  }
+
+  @Test
+  fun testLayersAreReplayedInOrderAndGroupedByStyle() {
+    val list = DisplayList()
+    val a = list.style(0xff00ff00.toInt(), DisplayList.STYLE_FILL, 0.0f)
+    val b = list.style(0xff0000ff.toInt(), DisplayList.STYLE_FILL, 0.0f)
+
+    list.rect(0.0f, 0.0f, 1.0f, 1.0f, a)
+    list.circle(5.0f, 5.0f, 2.0f, b)
+    list.rect(2.0f, 2.0f, 3.0f, 3.0f, a)
+    list.nextLayer()
+    list.line(0.0f, 0.0f, 4.0f, 4.0f, a)
+
+    assertEquals(
+      listOf(
+        "style ff00ff00 0 0.0",
+        "rect 0.0 0.0 1.0 1.0",
+        "rect 2.0 2.0 3.0 3.0",
+        "style ff0000ff 0 0.0",
+        "circle 5.0 5.0 2.0",
+        "style ff00ff00 0 0.0",
+        "line 0.0 0.0 4.0 4.0"),
+      this.replay(list))
+  }
+
+  @Test
+  fun testSpritesAreGroupedByBitmap() {
+    val list = DisplayList()
+    list.sprite(this.sprite0, 0.0f, 0.0f)
+    list.sprite(this.sprite1, 10.0f, 0.0f)
+    list.sprite(this.sprite0, 20.0f, 0.0f)
+    list.sprite(this.sprite1, 30.0f, 0.0f)
+
+    val backend = HeadlessDisplayListBackend()
+    backend.render(list)
+
+    assertEquals(4L, backend.commands)
+    assertEquals(2L, backend.bitmapChanges)
+    assertEquals(4.0 * 64.0, backend.pixels, 0.0)
+  }
+
+  @Test
+  fun testPixelEstimates() {
+    val list = DisplayList()
+    list.rect(0.0f, 0.0f, 10.0f, 20.0f, list.style(0, DisplayList.STYLE_FILL, 0.0f))
+    list.nextLayer()
+    list.rect(0.0f, 0.0f, 10.0f, 20.0f, list.style(0, DisplayList.STYLE_STROKE, 2.0f))
+
+    val backend = HeadlessDisplayListBackend()
+    backend.render(list)
+
+    assertEquals(2L, backend.commands)
+    assertEquals(2L, backend.styleChanges)
+    assertEquals(200.0 + 120.0, backend.pixels, 0.0001)
+  }
+
+  @Test
+  fun testResetReplaysTheSameFrame() {
+    val list = DisplayList()
+    this.record(list, 0)
+    val first = this.replay(list)
+
+    list.reset()
+    this.record(list, 0)
+    assertEquals(first, this.replay(list))
+  }
+
+  private fun record(
+    list: DisplayList,
+    frame: Int
+  ) {
+    list.clear(0xff202020.toInt())
+    list.nextLayer()
+    val white = list.style(-1, DisplayList.STYLE_STROKE, 0.0f)
+    for (index in 0 until 100) {
+      val x = ((index * 7) + frame) % 500
+      list.sprite(if (index % 2 == 0) this.sprite0 else this.sprite1, x.toFloat(), 10.0f)
+      list.circle(x.toFloat(), 50.0f, 4.0f, white)
+    }
+    list.nextLayer()
+    list.text("SCORE", 10.0f, 10.0f, 24.0f, false, white)
+  }
+
+  @Test
+  fun testSteadyStateFramesDoNotAllocate() {
+    assumeTrue("Thread allocation counting is unavailable", Allocations.isSupported)
+
+    val list = DisplayList()
+    val backend = HeadlessDisplayListBackend()
+    var frame = 0
+    val render = {
+      list.reset()
+      this.record(list, frame)
+      backend.render(list)
+      frame += 1
+    }
+
+    for (warmup in 0 until 5_000) {
+      render.invoke()
+    }
+    val bytes = Allocations.perCall(5_000, render)
+
+    assertEquals(202L * 10_000L, backend.commands)
+    assertTrue("$bytes bytes allocated per frame", bytes < 1.0)
+  }
+}
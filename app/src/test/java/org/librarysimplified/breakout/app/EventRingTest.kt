@@ -0,0 +1,86 @@
+package org.librarysimplified.breakout.app
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertSame
+import org.junit.Assert.assertTrue
+import org.junit.Assume.assumeTrue
+import org.junit.Test
+
+class EventRingTest {
+
+  private val block = TestBlocks.block(0, 10.0f, 10.0f, 5.0f)
+  private val broke = BreakoutEvent.BallBrokeBlock()
+  private val bounced = BreakoutEvent.BallBouncedPaddle()
+
+  init {
+    this.broke.block = this.block
+  }
+
+  /**
+   * Publish and consume the events of one busy frame.
+   *
+   * @return The number of events consumed
+   */
+
+  private fun frame(ring: EventRing): Int {
+    ring.offer(this.bounced)
+    ring.offer(this.broke)
+    ring.offer(BreakoutEvent.BallBouncedWall)
+    ring.offer(this.broke)
+
+    var count = 0
+    while (true) {
+      ring.poll() ?: break
+      ring.release()
+      count += 1
+    }
+    return count
+  }
+
+  @Test
+  fun testEventsAreCopiedInOrder() {
+    val ring = EventRing(4)
+    assertTrue(ring.offer(BreakoutEvent.GetReady))
+    assertTrue(ring.offer(this.broke))
+
+    assertSame(BreakoutEvent.GetReady, ring.poll())
+    ring.release()
+
+    val event = ring.poll() as BreakoutEvent.BallBrokeBlock
+    assertSame(this.block, event.block)
+    assertFalse(event === this.broke)
+    ring.release()
+
+    assertNull(ring.poll())
+  }
+
+  @Test
+  fun testFullRingDropsEvents() {
+    val ring = EventRing(2)
+    assertTrue(ring.offer(BreakoutEvent.Go))
+    assertTrue(ring.offer(BreakoutEvent.Go))
+    assertFalse(ring.offer(BreakoutEvent.Go))
+
+    ring.poll()
+    ring.release()
+    assertTrue(ring.offer(BreakoutEvent.Go))
+  }
+
+  @Test
+  fun testSteadyStateFramesDoNotAllocate() {
+    assumeTrue("Thread allocation counting is unavailable", Allocations.isSupported)
+
+    val ring = EventRing(64)
+    for (warmup in 0 until 100_000) {
+      this.frame(ring)
+    }
+
+    var consumed = 0
+    val bytes = Allocations.perCall(10_000) { consumed += this.frame(ring) }
+
+    assertEquals(40_000, consumed)
+    assertTrue("$bytes bytes allocated per frame", bytes < 1.0)
+  }
+}
@@ -0,0 +1,25 @@
+package org.librarysimplified.breakout.app
+
+/**
+ * A frame clock whose time only moves when told to. Each sleep advances the clock by the
+ * requested time plus [oversleepNanos].
+ */
+
+class FakeFrameClock : FrameClockType {
+
+  var time: Long = 1_000_000_000L
+  var oversleepNanos: Long = 0L
+  var sleeps: Int = 0
+
+  fun advance(nanos: Long) {
+    this.time += nanos
+  }
+
+  override fun nanoTime(): Long =
+    this.time
+
+  override fun sleepNanos(nanos: Long) {
+    this.sleeps += 1
+    this.time += nanos + this.oversleepNanos
+  }
+}
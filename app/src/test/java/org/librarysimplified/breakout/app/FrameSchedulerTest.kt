@@ -0,0 +1,102 @@
+package org.librarysimplified.breakout.app
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+
+class FrameSchedulerTest {
+
+  private val stepNanos = 16_666_667L
+  private val millis = 1_000_000L
+
+  private lateinit var clock: FakeFrameClock
+  private lateinit var scheduler: FrameScheduler
+
+  @Before
+  fun setup() {
+    this.clock = FakeFrameClock()
+    this.scheduler = FrameScheduler(this.clock, this.stepNanos, 4)
+  }
+
+  /**
+   * Run `frames` frames, each taking `work` nanoseconds of work per frame.
+   *
+   * @return The total number of steps run
+   */
+
+  private fun run(
+    frames: Int,
+    work: (Int) -> Long
+  ): Long {
+    var steps = 0L
+    for (frame in 0 until frames) {
+      steps += this.scheduler.beginFrame()
+      this.clock.advance(work(frame))
+      this.scheduler.endFrame()
+    }
+    return steps
+  }
+
+  @Test
+  fun testFirstFrameRunsOneStep() {
+    assertEquals(1, this.scheduler.beginFrame())
+  }
+
+  @Test
+  fun testSteadyFramesRunOneStepAndDoNotDrift() {
+    val start = this.clock.time
+    val steps = this.run(6000) { 3L * this.millis }
+
+    assertEquals(6000L, steps)
+    assertEquals(6000L * this.stepNanos, this.clock.time - start)
+    assertEquals(6000, this.clock.sleeps)
+    assertEquals(0L, this.scheduler.stepsDropped)
+  }
+
+  @Test
+  fun testOversleepDoesNotAccumulate() {
+    this.clock.oversleepNanos = 2L * this.millis
+
+    val start = this.clock.time
+    val steps = this.run(6000) { 3L * this.millis }
+
+    assertEquals(6000L, steps)
+    assertEquals(2L * this.millis, this.scheduler.oversleepNanos)
+    assertEquals(6000L * this.stepNanos + 2L * this.millis, this.clock.time - start)
+  }
+
+  @Test
+  fun testSlowFramesAreCaughtUp() {
+    val start = this.clock.time
+    val steps = this.run(6000) { frame -> if (frame % 5 == 0) 25L * this.millis else 2L * this.millis }
+    val elapsedSteps = (this.clock.time - start) / this.stepNanos
+
+    assertEquals(0L, this.scheduler.stepsDropped)
+    assertTrue("$steps steps for $elapsedSteps elapsed", Math.abs(steps - elapsedSteps) <= 1L)
+  }
+
+  @Test
+  fun testStallDropsSteps() {
+    this.run(10) { 3L * this.millis }
+    this.clock.advance(10L * this.stepNanos)
+
+    assertEquals(4, this.scheduler.beginFrame())
+    assertEquals(7L, this.scheduler.stepsDropped)
+    this.scheduler.endFrame()
+
+    val steps = this.run(100) { 3L * this.millis }
+    assertTrue("$steps steps", steps == 99L || steps == 100L)
+    assertEquals(7L, this.scheduler.stepsDropped)
+  }
+
+  @Test
+  fun testResetForgetsElapsedTime() {
+    this.run(10) { 3L * this.millis }
+    this.scheduler.reset()
+    this.clock.advance(100L * this.stepNanos)
+
+    assertEquals(1, this.scheduler.beginFrame())
+    assertEquals(0L, this.scheduler.stepsDropped)
+  }
+}
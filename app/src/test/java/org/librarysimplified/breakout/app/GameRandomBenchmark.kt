@@ -0,0 +1,63 @@
+package org.librarysimplified.breakout.app
+
+import org.junit.Test
+import java.util.Random
+
+/**
+ * The cost of the game's random numbers, compared to the `Math.random()` calls they
+ * replaced. `Math.random()` goes through a single shared `java.util.Random`, which pays for
+ * an atomic update on every call.
+ */
+
+class GameRandomBenchmark {
+
+  private val operations = 1_000_000
+
+  @Test
+  fun benchmarkDouble() {
+    val random = GameRandom(0x5eedL)
+    val shared = Random(0x5eedL)
+
+    Benchmarks.measure("Math.random()", this.operations) {
+      var sum = 0.0
+      for (index in 0 until this.operations) {
+        sum += Math.random()
+      }
+      sum.toLong()
+    }
+    Benchmarks.measure("Random.nextDouble()", this.operations) {
+      var sum = 0.0
+      for (index in 0 until this.operations) {
+        sum += shared.nextDouble()
+      }
+      sum.toLong()
+    }
+    Benchmarks.measure("GameRandom.nextDouble()", this.operations) {
+      var sum = 0.0
+      for (index in 0 until this.operations) {
+        sum += random.nextDouble()
+      }
+      sum.toLong()
+    }
+  }
+
+  @Test
+  fun benchmarkSignedFloat() {
+    val random = GameRandom(0x5eedL)
+
+    Benchmarks.measure("(Math.random() * 2.0 - 1.0).toFloat()", this.operations) {
+      var sum = 0.0f
+      for (index in 0 until this.operations) {
+        sum += ((Math.random() * 2.0) - 1.0).toFloat()
+      }
+      sum.toLong()
+    }
+    Benchmarks.measure("GameRandom.nextSignedFloat()", this.operations) {
+      var sum = 0.0f
+      for (index in 0 until this.operations) {
+        sum += random.nextSignedFloat()
+      }
+      sum.toLong()
+    }
+  }
+}
@@ -0,0 +1,54 @@
+package org.librarysimplified.breakout.app
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.util.SplittableRandom
+
+class GameRandomTest {
+
+  private val seeds =
+    longArrayOf(0L, 1L, -1L, 0x2545f4914f6cdd1dL, Long.MIN_VALUE, Long.MAX_VALUE)
+
+  @Test
+  fun testMatchesSplittableRandom() {
+    for (seed in this.seeds) {
+      val game = GameRandom(seed)
+      val reference = SplittableRandom(seed)
+      for (index in 0 until 1000) {
+        assertEquals("seed $seed, long $index", reference.nextLong(), game.nextLong())
+        assertEquals("seed $seed, int $index", reference.nextInt(), game.nextInt())
+        assertEquals("seed $seed, double $index", reference.nextDouble(), game.nextDouble(), 0.0)
+      }
+    }
+  }
+
+  @Test
+  fun testSplitMatchesSplittableRandom() {
+    for (seed in this.seeds) {
+      var game = GameRandom(seed)
+      var reference = SplittableRandom(seed)
+      for (generation in 0 until 8) {
+        game = game.split()
+        reference = reference.split()
+        for (index in 0 until 100) {
+          assertEquals("seed $seed, split $generation", reference.nextLong(), game.nextLong())
+          assertEquals("seed $seed, split $generation", reference.nextInt(), game.nextInt())
+        }
+      }
+    }
+  }
+
+  @Test
+  fun testRanges() {
+    val random = GameRandom(0x5eedL)
+    for (index in 0 until 100_000) {
+      val d = random.nextDouble()
+      assertTrue(d >= 0.0 && d < 1.0)
+      val f = random.nextFloat()
+      assertTrue(f >= 0.0f && f < 1.0f)
+      val s = random.nextSignedFloat()
+      assertTrue(s >= -1.0f && s < 1.0f)
+    }
+  }
+}
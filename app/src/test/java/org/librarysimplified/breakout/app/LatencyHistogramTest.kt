@@ -0,0 +1,104 @@
+package org.librarysimplified.breakout.app
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+class LatencyHistogramTest {
+
+  @Test
+  fun testSmallValuesHaveTheirOwnBuckets() {
+    for (nanos in 0L until 8L) {
+      val bucket = LatencyHistogram.bucketOf(nanos)
+      assertEquals(nanos.toInt(), bucket)
+      assertEquals(nanos, LatencyHistogram.upperBoundOf(bucket))
+    }
+    assertEquals(0, LatencyHistogram.bucketOf(-1L))
+  }
+
+  @Test
+  fun testPowersOfTwoStartNewBuckets() {
+    for (power in 3 until 33) {
+      val nanos = 1L shl power
+      val bucket = LatencyHistogram.bucketOf(nanos)
+      assertEquals("2^$power", (power - 2) * 8, bucket)
+      assertEquals("2^$power", bucket - 1, LatencyHistogram.bucketOf(nanos - 1L))
+      assertEquals("2^$power", nanos - 1L, LatencyHistogram.upperBoundOf(bucket - 1))
+      assertEquals("2^$power", nanos + (nanos / 8L) - 1L, LatencyHistogram.upperBoundOf(bucket))
+    }
+  }
+
+  @Test
+  fun testBucketsBoundValuesToWithinAnEighth() {
+    val random = GameRandom(0x4157L)
+    for (index in 0 until 100_000) {
+      val nanos = random.nextLong() ushr (31 + (index % 31))
+      val bucket = LatencyHistogram.bucketOf(nanos)
+      if (bucket == LatencyHistogram.BUCKETS - 1) {
+        continue
+      }
+      val upper = LatencyHistogram.upperBoundOf(bucket)
+      assertTrue("$nanos <= $upper", nanos <= upper)
+      assertTrue("$nanos within an eighth of $upper", upper - nanos <= nanos / 8L)
+      if (bucket > 0) {
+        assertTrue(LatencyHistogram.upperBoundOf(bucket - 1) < nanos)
+      }
+    }
+  }
+
+  @Test
+  fun testLargeValuesAreClamped() {
+    assertEquals(LatencyHistogram.BUCKETS - 1, LatencyHistogram.bucketOf(Long.MAX_VALUE))
+    assertEquals(LatencyHistogram.BUCKETS - 1, LatencyHistogram.bucketOf(1L shl 40))
+  }
+
+  @Test
+  fun testPercentilesOfAUniformDistribution() {
+    val histogram = LatencyHistogram()
+    for (nanos in 1L..100L) {
+      histogram.record(nanos)
+    }
+
+    assertEquals(100L, histogram.count)
+    assertEquals(1L, histogram.percentileNanos(0.0))
+    assertEquals(51L, histogram.percentileNanos(0.5))
+    assertEquals(95L, histogram.percentileNanos(0.9))
+    assertEquals(100L, histogram.percentileNanos(0.99))
+    assertEquals(100L, histogram.percentileNanos(1.0))
+  }
+
+  @Test
+  fun testPercentilesOfABimodalDistribution() {
+    val histogram = LatencyHistogram()
+    for (index in 0 until 99) {
+      histogram.record(1_000L)
+    }
+    histogram.record(16_000_000L)
+
+    assertEquals(1_023L, histogram.percentileNanos(0.5))
+    assertEquals(1_023L, histogram.percentileNanos(0.99))
+    assertEquals(16_000_000L, histogram.percentileNanos(0.999))
+    assertEquals(16_000_000L, histogram.maxNanos)
+  }
+
+  @Test
+  fun testPercentilesAreClampedToTheMaximum() {
+    val histogram = LatencyHistogram()
+    for (index in 0 until 1000) {
+      histogram.record(1_000_000L)
+    }
+    assertEquals(1_000_000L, histogram.percentileNanos(0.5))
+    assertEquals(1_000_000L, histogram.percentileNanos(1.0))
+  }
+
+  @Test
+  fun testResetForgetsEverything() {
+    val histogram = LatencyHistogram()
+    histogram.record(5_000L)
+    histogram.reset()
+
+    assertEquals(0L, histogram.count)
+    assertEquals(0L, histogram.maxNanos)
+    assertEquals(0L, histogram.percentileNanos(0.5))
+  }
+}
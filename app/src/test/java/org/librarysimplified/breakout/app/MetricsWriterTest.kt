@@ -0,0 +1,59 @@
+package org.librarysimplified.breakout.app
+
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.io.File
+
+class MetricsWriterTest {
+
+  private val file = File.createTempFile("breakout-metrics", ".json")
+
+  @After
+  fun tearDown() {
+    this.file.delete()
+  }
+
+  /*
+   * Each stop writes a final snapshot on the writer's own thread.
+   */
+
+  private fun awaitLines(count: Int): List<String> {
+    val deadline = System.currentTimeMillis() + 5_000L
+    while (System.currentTimeMillis() < deadline) {
+      val lines = this.file.readLines()
+      if (lines.size >= count) {
+        return lines
+      }
+      Thread.sleep(10L)
+    }
+    throw AssertionError("Timed out waiting for $count lines in ${this.file}")
+  }
+
+  @Test
+  fun testHistogramMaximumIsPerWindow() {
+    this.file.delete()
+    val registry = MetricsRegistry()
+    val histogram = registry.histogram("frameTime")
+    val writer = MetricsWriter(registry, this.file, periodMillis = 60_000L)
+
+    histogram.record(16_000_000L)
+    histogram.record(1_000L)
+    writer.start()
+    writer.stop()
+    val first = this.awaitLines(1)[0]
+    assertTrue(first, first.contains("\"frameTime\":{\"count\":2,"))
+    assertTrue(first, first.contains("\"max\":16000000}"))
+
+    for (index in 0 until 10) {
+      histogram.record(1_000L)
+    }
+    writer.start()
+    writer.stop()
+    val lines = this.awaitLines(2)
+    assertEquals(2, lines.size)
+    assertTrue(lines[1], lines[1].contains("\"frameTime\":{\"count\":10,"))
+    assertTrue(lines[1], lines[1].contains("\"max\":1000}"))
+  }
+}
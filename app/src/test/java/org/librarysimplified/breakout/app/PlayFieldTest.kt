@@ -0,0 +1,101 @@
+package org.librarysimplified.breakout.app
+
+import android.util.Size
+import org.junit.Assert.assertTrue
+import org.junit.Assume.assumeTrue
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.annotation.Config
+
+/**
+ * The play field's physics depend on working framework classes (points, sizes), so these
+ * tests run under Robolectric rather than against the stubbed framework.
+ */
+
+@RunWith(RobolectricTestRunner::class)
+@Config(sdk = [28], manifest = Config.NONE)
+class PlayFieldTest {
+
+  private val stepMs = 1000.0 / 60.0
+  private val events = EventRing(64)
+
+  private var blocksBroken = 0
+  private var paddleBounces = 0
+  private var wallBounces = 0
+  private var fellOut = 0
+
+  private fun playField(): PlayField {
+    val blocks = TestBlocks.grid(12, 6, 45.0f)
+    val ballDirection = TestBlocks.point(0.3f, -1.0f)
+    Vectors.normalize(ballDirection)
+
+    val ball =
+      Ball(
+        isAlive = true,
+        circle = CircleF(TestBlocks.point(540.0f, 1500.0f), 20.0f),
+        direction = ballDirection,
+        defaultDirection = TestBlocks.point(ballDirection.x, ballDirection.y),
+        speedDefault = 1.0f,
+        speed = 1.0f,
+        sprite = TestBlocks.sprite)
+
+    val paddle =
+      Paddle(
+        center = TestBlocks.point(540.0f, 1800.0f),
+        height = 40.0f,
+        radius = 120.0f)
+
+    return PlayField(
+      publishEvent = { event -> this.events.offer(event) },
+      input = InputLatch(),
+      random = GameRandom(0x91a7L),
+      screenSize = Size(1080, 1920),
+      grid = BlockGrid.create(blocks, 90.0f),
+      ball = ball,
+      paddle = paddle)
+  }
+
+  /**
+   * Run one step of the play field and deliver the events it published, putting the ball
+   * back in play if it fell out.
+   */
+
+  private fun step(field: PlayField) {
+    field.onLogic(this.stepMs)
+
+    while (true) {
+      val event = this.events.poll() ?: break
+      when (event) {
+        is BreakoutEvent.BallBrokeBlock -> this.blocksBroken += 1
+        is BreakoutEvent.BallBouncedPaddle -> this.paddleBounces += 1
+        BreakoutEvent.BallBouncedWall -> this.wallBounces += 1
+        BreakoutEvent.BallFellOut -> this.fellOut += 1
+        else -> Unit
+      }
+      field.onEvent(event, this.stepMs)
+      if (event == BreakoutEvent.BallFellOut) {
+        field.onEvent(BreakoutEvent.GetReady, this.stepMs)
+      }
+      this.events.release()
+    }
+  }
+
+  @Test
+  fun testStepsDoNotAllocate() {
+    assumeTrue("Thread allocation counting is unavailable", Allocations.isSupported)
+
+    val field = this.playField()
+    for (warmup in 0 until 20_000) {
+      this.step(field)
+    }
+
+    val bytes = Allocations.perCall(20_000) { this.step(field) }
+
+    assertTrue("Blocks were broken", this.blocksBroken > 0)
+    assertTrue("The paddle was hit", this.paddleBounces > 0)
+    assertTrue("Walls were hit", this.wallBounces > 0)
+    assertTrue("The ball fell out", this.fellOut > 0)
+    assertTrue("$bytes bytes allocated per step", bytes < 1.0)
+  }
+}
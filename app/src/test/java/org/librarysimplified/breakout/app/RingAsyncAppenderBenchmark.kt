@@ -0,0 +1,86 @@
+package org.librarysimplified.breakout.app
+
+import ch.qos.logback.classic.Level
+import ch.qos.logback.classic.LoggerContext
+import ch.qos.logback.classic.encoder.PatternLayoutEncoder
+import ch.qos.logback.classic.spi.ILoggingEvent
+import ch.qos.logback.core.Appender
+import ch.qos.logback.core.FileAppender
+import org.junit.Test
+import java.io.File
+
+/**
+ * The cost to the logging thread of a log call written straight to a file, as the game
+ * did before, and of the same call passed through [RingAsyncAppender]. Calls are made in
+ * bursts with pauses between them, as the game logs, so that the ring never fills.
+ */
+
+class RingAsyncAppenderBenchmark {
+
+  private val burst = 200
+  private val bursts = 50
+
+  private fun file(context: LoggerContext): FileAppender<ILoggingEvent> {
+    val file = File.createTempFile("breakout-log", ".txt")
+    file.deleteOnExit()
+
+    val encoder = PatternLayoutEncoder()
+    encoder.context = context
+    encoder.pattern = "%d{\"yyyy-MM-dd'T'HH:mm:ss,SSS\"} %level %logger{128} - %msg%n"
+    encoder.start()
+
+    val appender = FileAppender<ILoggingEvent>()
+    appender.context = context
+    appender.file = file.absolutePath
+    appender.encoder = encoder
+    appender.start()
+    return appender
+  }
+
+  private fun run(
+    name: String,
+    context: LoggerContext,
+    appender: Appender<ILoggingEvent>
+  ) {
+    val logger = context.getLogger(name)
+    logger.level = Level.DEBUG
+    logger.isAdditive = false
+    logger.addAppender(appender)
+
+    val times = LongArray(this.bursts)
+    for (burst in 0 until this.bursts * 2) {
+      val start = System.nanoTime()
+      for (index in 0 until this.burst) {
+        logger.debug("block {} broken at {}", index, burst)
+      }
+      val time = System.nanoTime() - start
+      if (burst >= this.bursts) {
+        times[burst - this.bursts] = time
+      }
+      Thread.sleep(25L)
+    }
+    times.sort()
+
+    val nanos = times[this.bursts / 2].toDouble() / this.burst
+    println(String.format("%-48s %12.2f ns/op", name, nanos))
+    appender.stop()
+  }
+
+  @Test
+  fun benchmarkSynchronous() {
+    val context = LoggerContext()
+    this.run("log to a file", context, this.file(context))
+    context.stop()
+  }
+
+  @Test
+  fun benchmarkRing() {
+    val context = LoggerContext()
+    val ring = RingAsyncAppender()
+    ring.context = context
+    ring.addAppender(this.file(context))
+    ring.start()
+    this.run("log to a file through the ring", context, ring)
+    context.stop()
+  }
+}
@@ -0,0 +1,105 @@
+package org.librarysimplified.breakout.app
+
+import ch.qos.logback.classic.Level
+import ch.qos.logback.classic.LoggerContext
+import ch.qos.logback.classic.spi.ILoggingEvent
+import ch.qos.logback.core.AppenderBase
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+class RingAsyncAppenderTest {
+
+  private class ListAppender : AppenderBase<ILoggingEvent>() {
+    val list = ArrayList<ILoggingEvent>()
+
+    override fun append(event: ILoggingEvent) {
+      this.list.add(event)
+    }
+  }
+
+  private val context = LoggerContext()
+  private val logger = this.context.getLogger("test")
+  private val target = ListAppender()
+  private val ring = RingAsyncAppender()
+
+  private fun start(queueSize: Int) {
+    this.target.context = this.context
+    this.target.start()
+
+    this.ring.context = this.context
+    this.ring.queueSize = queueSize
+    this.ring.addAppender(this.target)
+    this.ring.start()
+
+    this.logger.level = Level.DEBUG
+    this.logger.isAdditive = false
+    this.logger.addAppender(this.ring)
+  }
+
+  @After
+  fun tearDown() {
+    this.ring.stop()
+    this.context.stop()
+  }
+
+  @Test
+  fun testStartRequiresAnAppender() {
+    this.ring.context = this.context
+    this.ring.start()
+    assertFalse(this.ring.isStarted)
+  }
+
+  @Test
+  fun testEventsAreDeliveredInOrderByStop() {
+    this.start(1024)
+    for (index in 0 until 500) {
+      this.logger.info("event {}", index)
+    }
+    this.ring.stop()
+
+    assertEquals(500, this.target.list.size)
+    for (index in 0 until 500) {
+      assertEquals("event $index", this.target.list[index].formattedMessage)
+    }
+  }
+
+  @Test
+  fun testMutableArgumentsAreFormattedWhenLogged() {
+    this.start(16)
+    val text = StringBuilder("before")
+    this.logger.info("text {}", text)
+    this.logger.info("number {} {}", 23, Level.WARN)
+    text.setLength(0)
+    text.append("after")
+    this.ring.stop()
+
+    assertEquals("text before", this.target.list[0].formattedMessage)
+    assertEquals("number 23 WARN", this.target.list[1].formattedMessage)
+  }
+
+  @Test
+  fun testThreadNameIsTheLoggingThread() {
+    this.start(16)
+    val thread = Thread({ this.logger.info("x {}", 1) }, "logging-thread")
+    thread.start()
+    thread.join()
+    this.ring.stop()
+
+    assertEquals("logging-thread", this.target.list[0].threadName)
+  }
+
+  @Test
+  fun testDroppedEventsAreReported() {
+    this.start(64)
+    for (index in 0 until 10_000) {
+      this.logger.debug("debug {}", index)
+    }
+    this.ring.stop()
+    assertTrue(this.context.statusManager.copyOfStatusList.any { status ->
+      status.message.startsWith("Dropped ")
+    })
+  }
+}
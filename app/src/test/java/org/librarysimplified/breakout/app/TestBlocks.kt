@@ -0,0 +1,62 @@
+package org.librarysimplified.breakout.app
+
+import android.graphics.Bitmap
+import android.graphics.PointF
+import org.objenesis.ObjenesisStd
+
+/**
+ * Construction of blocks for tests. Framework classes do nothing off-device, so points are
+ * built by assigning their fields, and the bitmap behind the shared sprite is instantiated
+ * without running any constructor. (A mock would do, but inline mocking instruments classes
+ * in a way that allocates, which would spoil allocation counts.)
+ */
+
+object TestBlocks {
+
+  val sprite: Sprite =
+    Sprite(ObjenesisStd().newInstance(Bitmap::class.java), 0, 0, 16, 16)
+
+  fun point(
+    x: Float,
+    y: Float
+  ): PointF {
+    val point = PointF()
+    point.x = x
+    point.y = y
+    return point
+  }
+
+  fun block(
+    index: Int,
+    x: Float,
+    y: Float,
+    radius: Float
+  ): Block =
+    Block(
+      index = index,
+      circle = CircleF(this.point(x, y), radius),
+      sprite = this.sprite,
+      type = 1,
+      hitPoints = 1,
+      alive = true)
+
+  /**
+   * @return `columns × rows` blocks of the given radius, packed edge to edge
+   */
+
+  fun grid(
+    columns: Int,
+    rows: Int,
+    radius: Float
+  ): List<Block> {
+    val blocks = ArrayList<Block>(columns * rows)
+    for (row in 0 until rows) {
+      for (column in 0 until columns) {
+        val x = radius + (column * radius * 2.0f)
+        val y = radius + (row * radius * 2.0f)
+        blocks.add(this.block(blocks.size, x, y, radius))
+      }
+    }
+    return blocks
+  }
+}
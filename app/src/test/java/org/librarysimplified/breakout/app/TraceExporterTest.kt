@@ -0,0 +1,147 @@
+package org.librarysimplified.breakout.app
+
+import org.junit.Assert.assertArrayEquals
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.io.StringWriter
+import java.util.concurrent.atomic.AtomicBoolean
+
+class TraceExporterTest {
+
+  private val names = listOf("frame", "logic")
+
+  private fun export(
+    ring: TraceRing,
+    threadNames: Map<Long, String> = emptyMap()
+  ): String {
+    val writer = StringWriter()
+    TraceExporter(this.names, threadNames).write(ring.read(), writer)
+    return writer.toString()
+  }
+
+  @Test
+  fun testRingKeepsTheMostRecentEvents() {
+    val ring = TraceRing(4)
+    for (index in 0 until 6) {
+      ring.write(index.toLong(), 1L, index, index % 2 == 0)
+    }
+
+    val events = ring.read()
+    assertEquals(4, events.count)
+    assertArrayEquals(longArrayOf(2L, 3L, 4L, 5L), events.timesNanos.copyOf(events.count))
+    assertArrayEquals(intArrayOf(2, 3, 4, 5), events.spans.copyOf(events.count))
+    assertArrayEquals(
+      booleanArrayOf(true, false, true, false), events.begins.copyOf(events.count))
+
+    ring.clear()
+    assertEquals(0, ring.read().count)
+  }
+
+  @Test
+  fun testSpansAreExported() {
+    val ring = TraceRing(16)
+    ring.write(1_000_000L, 7L, 0, true)
+    ring.write(1_250_500L, 7L, 1, true)
+    ring.write(1_500_001L, 7L, 1, false)
+    ring.write(2_000_000L, 7L, 0, false)
+
+    assertEquals(
+      "{\"displayTimeUnit\":\"ms\",\"traceEvents\":[" +
+        "{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":1,\"tid\":7,\"args\":{\"name\":\"game\"}}," +
+        "{\"name\":\"frame\",\"ph\":\"B\",\"ts\":1000.000,\"pid\":1,\"tid\":7}," +
+        "{\"name\":\"logic\",\"ph\":\"B\",\"ts\":1250.500,\"pid\":1,\"tid\":7}," +
+        "{\"name\":\"logic\",\"ph\":\"E\",\"ts\":1500.001,\"pid\":1,\"tid\":7}," +
+        "{\"name\":\"frame\",\"ph\":\"E\",\"ts\":2000.000,\"pid\":1,\"tid\":7}" +
+        "]}",
+      this.export(ring, mapOf(7L to "game")))
+  }
+
+  @Test
+  fun testUnmatchedEndsAreDropped() {
+    val ring = TraceRing(16)
+    ring.write(1_000L, 1L, 1, false)
+    ring.write(2_000L, 2L, 0, true)
+    ring.write(3_000L, 1L, 0, false)
+
+    assertEquals(
+      "{\"displayTimeUnit\":\"ms\",\"traceEvents\":[" +
+        "{\"name\":\"frame\",\"ph\":\"B\",\"ts\":2.000,\"pid\":1,\"tid\":2}" +
+        "]}",
+      this.export(ring))
+  }
+
+  @Test
+  fun testNamesAndTimesAreEncoded() {
+    val ring = TraceRing(16)
+    ring.write(-1_500L, 3L, 5, true)
+
+    assertEquals(
+      "{\"displayTimeUnit\":\"ms\",\"traceEvents\":[" +
+        "{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":1,\"tid\":3," +
+        "\"args\":{\"name\":\"a \\\"quoted\\\" \\\\ name\\u0009\"}}," +
+        "{\"name\":\"span5\",\"ph\":\"B\",\"ts\":-1.500,\"pid\":1,\"tid\":3}" +
+        "]}",
+      this.export(ring, mapOf(3L to "a \"quoted\" \\ name\t")))
+  }
+
+  @Test
+  fun testConcurrentWritersAreAllRecorded() {
+    val ring = TraceRing(1 shl 16)
+    val threads = (0 until 4).map { thread ->
+      Thread {
+        for (index in 0 until 5000) {
+          ring.write(index.toLong(), thread.toLong(), 0, true)
+        }
+      }
+    }
+    threads.forEach { thread -> thread.start() }
+    threads.forEach { thread -> thread.join() }
+
+    val events = ring.read()
+    assertEquals(20_000, events.count)
+    for (thread in 0 until 4) {
+      var expected = 0L
+      for (index in 0 until events.count) {
+        if (events.threads[index] == thread.toLong()) {
+          assertEquals(expected, events.timesNanos[index])
+          expected += 1L
+        }
+      }
+      assertEquals(5000L, expected)
+    }
+  }
+
+  @Test
+  fun testEventsAreNeverTornWhenWritersWrap() {
+    val ring = TraceRing(4)
+    val done = AtomicBoolean(false)
+    val threads = (1 until 5).map { thread ->
+      Thread {
+        var index = 0L
+        while (!done.get()) {
+          ring.write((thread * 1_000_000_000L) + index, thread.toLong(), thread, true)
+          index += 1L
+        }
+      }
+    }
+    threads.forEach { thread -> thread.start() }
+
+    try {
+      var seen = 0
+      for (read in 0 until 20_000) {
+        val events = ring.read()
+        for (index in 0 until events.count) {
+          val thread = events.threads[index]
+          assertEquals(thread, events.timesNanos[index] / 1_000_000_000L)
+          assertEquals(thread, events.spans[index].toLong())
+        }
+        seen += events.count
+      }
+      assertTrue(seen > 0)
+    } finally {
+      done.set(true)
+      threads.forEach { thread -> thread.join() }
+    }
+  }
+}
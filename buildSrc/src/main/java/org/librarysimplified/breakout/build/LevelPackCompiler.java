@@ -0,0 +1,261 @@
+package org.librarysimplified.breakout.build;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Compiles level source files into the level pack format read by the game's
+ * {@code LevelPack} class.
+ *
+ * A source file describes one level. Lines starting with {@code #} are comments. The file
+ * starts with two settings, followed by a blank line and then one line of cells per row:
+ *
+ * <pre>
+ * paddle 0.5
+ * ball 0.5 1
+ *
+ * 11 11 .. 21
+ * .. 31 31 ..
+ * </pre>
+ *
+ * {@code paddle} gives the paddle's starting position, and {@code ball} the ball's starting
+ * position and its height above the paddle in ball diameters. Positions are fractions of the
+ * screen width. Each cell is two hexadecimal digits giving the block's hit points and then its
+ * type, or {@code ..} for an empty cell. Every row must have the same number of cells.
+ *
+ * Levels are written to the pack in the order of their file names.
+ */
+
+public final class LevelPackCompiler {
+
+  private static final int MAGIC = 0x42524b4c;
+  private static final int VERSION = 1;
+  private static final int HEADER_SIZE = 4 * 3;
+  private static final int INDEX_ENTRY_SIZE = 4 * 2;
+
+  private LevelPackCompiler() {
+
+  }
+
+  /**
+   * Compile the levels in a directory.
+   *
+   * Usage: {@code LevelPackCompiler <source directory> <output file>}
+   */
+
+  public static void main(String[] args) throws IOException {
+    if (args.length != 2) {
+      System.err.println("usage: <source directory> <output file>");
+      System.exit(1);
+    }
+    compile(new File(args[0]), new File(args[1]));
+  }
+
+  /**
+   * Compile every {@code .level} file in {@code directory} into a pack at {@code output}.
+   *
+   * @throws IOException If a file cannot be read, or a level is malformed
+   */
+
+  public static void compile(
+    File directory,
+    File output)
+    throws IOException {
+    final File[] files = directory.listFiles((dir, name) -> name.endsWith(".level"));
+    if (files == null || files.length == 0) {
+      throw new IOException("No levels found in " + directory);
+    }
+    Arrays.sort(files);
+
+    final List<byte[]> levels = new ArrayList<>(files.length);
+    for (final File file : files) {
+      levels.add(compileLevel(file));
+    }
+
+    final File parent = output.getParentFile();
+    if (parent != null) {
+      parent.mkdirs();
+    }
+    try (OutputStream stream = new FileOutputStream(output)) {
+      writePack(levels, stream);
+    }
+  }
+
+  private static void writePack(
+    List<byte[]> levels,
+    OutputStream stream)
+    throws IOException {
+    final DataOutputStream data = new DataOutputStream(stream);
+    data.writeInt(MAGIC);
+    data.writeInt(VERSION);
+    data.writeInt(levels.size());
+
+    int offset = HEADER_SIZE + (INDEX_ENTRY_SIZE * levels.size());
+    for (final byte[] level : levels) {
+      data.writeInt(offset);
+      data.writeInt(level.length);
+      offset += level.length;
+    }
+    for (final byte[] level : levels) {
+      data.write(level);
+    }
+    data.flush();
+  }
+
+  private static byte[] compileLevel(File file)
+    throws IOException {
+    final List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+
+    Double paddleX = null;
+    Double ballX = null;
+    Integer ballHeight = null;
+    final List<int[]> rows = new ArrayList<>();
+
+    for (int index = 0; index < lines.size(); ++index) {
+      final String line = lines.get(index).trim();
+      final int lineNumber = index + 1;
+      if (line.isEmpty() || line.startsWith("#")) {
+        continue;
+      }
+
+      final String[] words = line.split("\\s+");
+      switch (words[0]) {
+        case "paddle":
+          expectWords(file, lineNumber, words, 2);
+          paddleX = parsePosition(file, lineNumber, words[1]);
+          break;
+        case "ball":
+          expectWords(file, lineNumber, words, 3);
+          ballX = parsePosition(file, lineNumber, words[1]);
+          ballHeight = parseByte(file, lineNumber, words[2], 10);
+          break;
+        default:
+          rows.add(parseRow(file, lineNumber, words));
+          break;
+      }
+    }
+
+    if (paddleX == null || ballX == null || ballHeight == null) {
+      throw error(file, 0, "Both 'paddle' and 'ball' must be given");
+    }
+    if (rows.isEmpty()) {
+      throw error(file, 0, "The level has no rows");
+    }
+
+    final int columns = rows.get(0).length;
+    for (final int[] row : rows) {
+      if (row.length != columns) {
+        throw error(file, 0, "Every row must have " + columns + " cells");
+      }
+    }
+    if (columns > 255 || rows.size() > 255) {
+      throw error(file, 0, "A level may have at most 255 columns and 255 rows");
+    }
+
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    final DataOutputStream data = new DataOutputStream(bytes);
+    data.writeByte(columns);
+    data.writeByte(rows.size());
+    data.writeShort(scalePosition(paddleX));
+    data.writeShort(scalePosition(ballX));
+    data.writeByte(ballHeight);
+    for (final int[] row : rows) {
+      for (final int cell : row) {
+        data.writeByte(cell);
+      }
+    }
+    data.flush();
+    return bytes.toByteArray();
+  }
+
+  private static int[] parseRow(
+    File file,
+    int lineNumber,
+    String[] words)
+    throws IOException {
+    final int[] row = new int[words.length];
+    for (int index = 0; index < words.length; ++index) {
+      final String word = words[index];
+      if ("..".equals(word)) {
+        row[index] = 0;
+        continue;
+      }
+      if (word.length() != 2) {
+        throw error(file, lineNumber, "Cells must be '..' or two hexadecimal digits: " + word);
+      }
+      final int cell = parseByte(file, lineNumber, word, 16);
+      if ((cell & 0xf) == 0 || (cell >>> 4) == 0) {
+        throw error(file, lineNumber, "A block needs a nonzero type and hit points: " + word);
+      }
+      row[index] = cell;
+    }
+    return row;
+  }
+
+  private static double parsePosition(
+    File file,
+    int lineNumber,
+    String word)
+    throws IOException {
+    try {
+      final double value = Double.parseDouble(word);
+      if (!(value >= 0.0 && value <= 1.0)) {
+        throw error(file, lineNumber, "Positions must be in the range [0, 1]: " + word);
+      }
+      return value;
+    } catch (NumberFormatException e) {
+      throw error(file, lineNumber, "Unparseable position: " + word);
+    }
+  }
+
+  private static int parseByte(
+    File file,
+    int lineNumber,
+    String word,
+    int radix)
+    throws IOException {
+    try {
+      final int value = Integer.parseInt(word, radix);
+      if (value < 0 || value > 255) {
+        throw error(file, lineNumber, "Values must be in the range [0, 255]: " + word);
+      }
+      return value;
+    } catch (NumberFormatException e) {
+      throw error(file, lineNumber, "Unparseable value: " + word);
+    }
+  }
+
+  private static int scalePosition(double position) {
+    return (int) Math.round(position * 65535.0);
+  }
+
+  private static void expectWords(
+    File file,
+    int lineNumber,
+    String[] words,
+    int count)
+    throws IOException {
+    if (words.length != count) {
+      throw error(file, lineNumber, "'" + words[0] + "' takes " + (count - 1) + " values");
+    }
+  }
+
+  private static IOException error(
+    File file,
+    int lineNumber,
+    String message) {
+    if (lineNumber > 0) {
+      return new IOException(file + ":" + lineNumber + ": " + message);
+    }
+    return new IOException(file + ": " + message);
+  }
+}
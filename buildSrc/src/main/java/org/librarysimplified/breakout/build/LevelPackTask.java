@@ -0,0 +1,44 @@
+package org.librarysimplified.breakout.build;
+
+import org.gradle.api.DefaultTask;
+import org.gradle.api.tasks.InputDirectory;
+import org.gradle.api.tasks.OutputFile;
+import org.gradle.api.tasks.TaskAction;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * A task that compiles a directory of level sources into a level pack.
+ *
+ * @see LevelPackCompiler
+ */
+
+public class LevelPackTask extends DefaultTask {
+
+  private File sourceDirectory;
+  private File outputFile;
+
+  @InputDirectory
+  public File getSourceDirectory() {
+    return this.sourceDirectory;
+  }
+
+  public void setSourceDirectory(File sourceDirectory) {
+    this.sourceDirectory = sourceDirectory;
+  }
+
+  @OutputFile
+  public File getOutputFile() {
+    return this.outputFile;
+  }
+
+  public void setOutputFile(File outputFile) {
+    this.outputFile = outputFile;
+  }
+
+  @TaskAction
+  public void compile() throws IOException {
+    LevelPackCompiler.compile(this.sourceDirectory, this.outputFile);
+  }
+}